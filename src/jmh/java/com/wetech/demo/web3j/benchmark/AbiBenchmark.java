@@ -0,0 +1,136 @@
+package com.wetech.demo.web3j.benchmark;
+
+import com.wetech.demo.web3j.abi.ContractCodec;
+import com.wetech.demo.web3j.abi.ContractSignatures;
+import com.wetech.demo.web3j.contracts.simplestorage.SimpleStorage;
+import com.wetech.demo.web3j.contracts.zhx.ZHX;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.FunctionReturnDecoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.crypto.Credentials;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.protocol.http.HttpService;
+import org.web3j.tx.gas.DefaultGasProvider;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ABI encoding and decoding on the paths the services run: calldata for ZHX
+ * {@code transfer}/{@code mint} and SimpleStorage {@code set} built through the generated
+ * wrappers and {@link FunctionEncoder}, {@code balanceOf} results through
+ * {@link FunctionReturnDecoder}, and {@code Transfer} logs through
+ * {@link ZHX#getTransferEventFromLog}; each next to the same work through
+ * {@link ContractCodec}. Run with {@code -prof gc} to compare allocation per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AbiBenchmark {
+
+    private static final String TOKEN = "0x5fbdb2315678afecb367f032d93f642f64180aa3";
+    private static final String HOLDER = "0x70997970c51812dc3a010c7d01b50e0d17dc79c8";
+    private static final String RECIPIENT = "0x3c44cdddb6a900fa2b585dd299e03d12fa4293bc";
+
+    private final BigInteger amount = new BigInteger("1000000000000000000000");
+
+    private ZHX zhx;
+    private SimpleStorage storage;
+    private Function balanceOf;
+    private String balanceOfResult;
+    private Log transferLog;
+    private final ContractCodec codec = new ContractCodec();
+    private final ContractCodec.Event event = new ContractCodec.Event();
+    private final long[] limbs = new long[ContractCodec.LIMBS];
+
+    @Setup
+    public void setUp() {
+        // the wrappers never reach the node here
+        Web3j web3j = Web3j.build(new HttpService("http://127.0.0.1:1"));
+        Credentials credentials = Credentials.create("0x" + "11".repeat(32));
+        zhx = ZHX.load(TOKEN, web3j, credentials, new DefaultGasProvider());
+        storage = SimpleStorage.load(TOKEN, web3j, credentials, new DefaultGasProvider());
+        balanceOf = new Function(ZHX.FUNC_BALANCEOF, List.of(new Address(HOLDER)),
+                List.of(new TypeReference<Uint256>() {
+                }));
+        balanceOfResult = Numeric.toHexStringWithPrefixZeroPadded(amount, 64);
+        transferLog = new Log();
+        transferLog.setAddress(TOKEN);
+        transferLog.setTopics(List.of(ContractSignatures.TRANSFER_TOPIC,
+                Numeric.toHexStringWithPrefixZeroPadded(Numeric.toBigInt(HOLDER), 64),
+                Numeric.toHexStringWithPrefixZeroPadded(Numeric.toBigInt(RECIPIENT), 64)));
+        transferLog.setData(balanceOfResult);
+    }
+
+    @Benchmark
+    public String encodeTransfer() {
+        return zhx.transfer(RECIPIENT, amount).encodeFunctionCall();
+    }
+
+    @Benchmark
+    public String encodeMint() {
+        return zhx.mint(RECIPIENT, amount).encodeFunctionCall();
+    }
+
+    @Benchmark
+    public String encodeSet() {
+        return storage.set(amount).encodeFunctionCall();
+    }
+
+    @Benchmark
+    @SuppressWarnings("rawtypes")
+    public List<Type> decodeBalanceOf() {
+        return FunctionReturnDecoder.decode(balanceOfResult, balanceOf.getOutputParameters());
+    }
+
+    @Benchmark
+    public ZHX.TransferEventResponse decodeTransferEvent() {
+        return ZHX.getTransferEventFromLog(transferLog);
+    }
+
+    @Benchmark
+    public String codecEncodeTransfer() {
+        return codec.transfer(RECIPIENT, amount).toHex();
+    }
+
+    @Benchmark
+    public String codecEncodeMint() {
+        return codec.mint(RECIPIENT, amount).toHex();
+    }
+
+    @Benchmark
+    public String codecEncodeSet() {
+        return codec.set(amount).toHex();
+    }
+
+    @Benchmark
+    public int codecEncodeTransferToBuffer() {
+        return codec.transfer(RECIPIENT, amount).length();
+    }
+
+    @Benchmark
+    public long[] codecDecodeBalanceOf() {
+        ContractCodec.decodeUint256(balanceOfResult, 0, limbs);
+        return limbs;
+    }
+
+    @Benchmark
+    public ContractCodec.Event codecDecodeTransferEvent() {
+        ContractCodec.decodeEvent(transferLog, event);
+        return event;
+    }
+}
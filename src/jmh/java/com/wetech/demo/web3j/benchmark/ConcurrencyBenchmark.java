@@ -0,0 +1,117 @@
+package com.wetech.demo.web3j.benchmark;
+
+import com.wetech.demo.web3j.abi.ContractSignatures;
+import com.wetech.demo.web3j.rpc.BatchingWeb3jService;
+import com.wetech.demo.web3j.rpc.LimitedWeb3jService;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.http.HttpService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends many concurrent {@code get()} view calls through the different web3j execution
+ * models against a {@link FakeJsonRpcNode} with fixed latency, and prints throughput and
+ * latency percentiles for each.
+ *
+ * <p>The async models issue every call with {@code sendAsync} at once. The blocking models
+ * give each call its own task that blocks in {@code send}, as a servlet request thread
+ * does: once on a 200-thread pool (Tomcat's default maximum) and once on virtual threads.
+ *
+ * <p>Run with {@code ./gradlew concurrencyBenchmark}; {@code -Prequests}, {@code -Platency}
+ * (milliseconds) and {@code -PmaxConcurrency} override the defaults.
+ */
+public class ConcurrencyBenchmark {
+
+    private static final String CONTRACT = "0x5fbdb2315678afecb367f032d93f642f64180aa3";
+
+    public static void main(String[] args) throws Exception {
+        int requests = Integer.getInteger("requests", 10_000);
+        long latency = Long.getLong("latency", 20);
+        int maxConcurrency = Integer.getInteger("maxConcurrency", 64);
+        System.out.printf("%d concurrent requests, %d ms node latency, %d in flight to the node%n%n",
+                requests, latency, maxConcurrency);
+        System.out.printf("%-28s %10s %10s %10s %10s %8s%n", "model", "req/s", "p50 ms", "p99 ms", "max ms", "http");
+        try (FakeJsonRpcNode node = new FakeJsonRpcNode(latency)) {
+            ExecutorService platformIo = Executors.newFixedThreadPool(maxConcurrency, daemon());
+            ExecutorService virtualIo = Executors.newVirtualThreadPerTaskExecutor();
+            ExecutorService tomcat = Executors.newFixedThreadPool(200, daemon());
+            ExecutorService virtualRequests = Executors.newVirtualThreadPerTaskExecutor();
+
+            run("web3j Async pool", node, requests, Web3j.build(new HttpService(node.getUrl())), null);
+            run("platform I/O, async", node, requests, stack(node, platformIo, maxConcurrency), null);
+            run("virtual I/O, async", node, requests, stack(node, virtualIo, maxConcurrency), null);
+            run("platform I/O, 200 blocking", node, requests, stack(node, platformIo, maxConcurrency), tomcat);
+            run("virtual I/O, virtual blocking", node, requests, stack(node, virtualIo, maxConcurrency),
+                    virtualRequests);
+
+            platformIo.shutdownNow();
+            virtualIo.shutdownNow();
+            tomcat.shutdownNow();
+            virtualRequests.shutdownNow();
+        }
+    }
+
+    private static Web3j stack(FakeJsonRpcNode node, ExecutorService io, int maxConcurrency) {
+        Web3jService service = new LimitedWeb3jService(new HttpService(node.getUrl()), io, maxConcurrency);
+        return Web3j.build(new BatchingWeb3jService(service, 200, 100));
+    }
+
+    private static void run(String model, FakeJsonRpcNode node, int requests, Web3j web3j,
+                            ExecutorService blockingCallers) throws Exception {
+        // warm up connections and JIT before measuring
+        execute(web3j, Math.min(requests, 1000), blockingCallers);
+        long httpBefore = node.getRequestCount();
+        long start = System.nanoTime();
+        long[] latencies = execute(web3j, requests, blockingCallers);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Arrays.sort(latencies);
+        System.out.printf("%-28s %10.0f %10.1f %10.1f %10.1f %8d%n", model, requests / seconds,
+                percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6,
+                node.getRequestCount() - httpBefore);
+        web3j.shutdown();
+    }
+
+    private static long[] execute(Web3j web3j, int requests, ExecutorService blockingCallers) throws Exception {
+        Transaction call = Transaction.createEthCallTransaction(null, CONTRACT, ContractSignatures.GET);
+        long[] latencies = new long[requests];
+        List<CompletableFuture<?>> futures = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            int index = i;
+            long issued = System.nanoTime();
+            CompletableFuture<?> future = blockingCallers == null
+                    ? web3j.ethCall(call, DefaultBlockParameterName.LATEST).sendAsync()
+                    : CompletableFuture.runAsync(() -> {
+                        try {
+                            web3j.ethCall(call, DefaultBlockParameterName.LATEST).send();
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }, blockingCallers);
+            futures.add(future.whenComplete((result, error) -> latencies[index] = System.nanoTime() - issued));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.MINUTES);
+        return latencies;
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+    }
+
+    private static ThreadFactory daemon() {
+        return runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,87 @@
+package com.wetech.demo.web3j.benchmark;
+
+import com.wetech.demo.web3j.rpc.FailoverWeb3jService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.http.HttpService;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads ({@code eth_call}) and primary-bound requests ({@code eth_blockNumber}) through a
+ * {@link FailoverWeb3jService} over two {@link FakeJsonRpcNode}s answering in 1 ms, with the
+ * primary healthy, answering in 20 ms, stalling one request in 50 by 50 ms, or down. Compare
+ * the percentiles of the {@code tail} case with {@code hedge=false} to see what hedging buys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FailoverBenchmark {
+
+    private static final String CONTRACT = "0x5fbdb2315678afecb367f032d93f642f64180aa3";
+
+    @Param({"healthy", "slow", "tail", "down"})
+    public String primary;
+
+    @Param({"true"})
+    public boolean hedge;
+
+    private FakeJsonRpcNode primaryNode;
+    private FakeJsonRpcNode secondaryNode;
+    private ExecutorService executor;
+    private Web3j web3j;
+    private Transaction call;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        primaryNode = new FakeJsonRpcNode(primary.equals("slow") ? 20 : 1);
+        secondaryNode = new FakeJsonRpcNode(1);
+        if (primary.equals("tail")) {
+            primaryNode.setOutliers(50, 50);
+        }
+        executor = Executors.newCachedThreadPool(Thread.ofPlatform().daemon().factory());
+        FailoverWeb3jService service = new FailoverWeb3jService(executor, new SimpleMeterRegistry(), hedge, 2, 3,
+                1000)
+                .addEndpoint("primary", new HttpService(primaryNode.getUrl()))
+                .addEndpoint("secondary", new HttpService(secondaryNode.getUrl()));
+        if (primary.equals("down")) {
+            primaryNode.close();
+        }
+        web3j = Web3j.build(service);
+        call = Transaction.createEthCallTransaction(null, CONTRACT, "0x6d4ce63c");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        web3j.shutdown();
+        executor.shutdownNow();
+        primaryNode.close();
+        secondaryNode.close();
+    }
+
+    @Benchmark
+    public String read() throws IOException {
+        return web3j.ethCall(call, DefaultBlockParameterName.LATEST).send().getValue();
+    }
+
+    @Benchmark
+    public BigInteger head() throws IOException {
+        return web3j.ethBlockNumber().send().getBlockNumber();
+    }
+}
@@ -0,0 +1,209 @@
+package com.wetech.demo.web3j.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.web3j.crypto.Hash;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A minimal in-process JSON-RPC endpoint that answers the calls the service makes with
+ * canned results after a fixed delay, so benchmarks measure the client stack rather than
+ * a real node. Single requests and batches are both supported. Every raw transaction is
+ * "mined" at once into a block of its own with a successful receipt, and empty blocks are
+ * produced at a fixed interval in between, as on a real chain.
+ */
+public class FakeJsonRpcNode implements AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String WORD = "0x" + "0".repeat(62) + "2a";
+    private static final String GWEI = "0x3b9aca00";
+
+    static {
+        // without TCP_NODELAY small responses stall on delayed ACKs for ~40 ms per request
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ScheduledExecutorService blockProducer;
+    private final long latencyMillis;
+    private final AtomicLong requests = new AtomicLong();
+    private volatile int outlierEvery;
+    private volatile long outlierMillis;
+    private final AtomicLong blockNumber = new AtomicLong(1);
+    private final Map<Long, String> transactionsByBlock = new ConcurrentHashMap<>();
+    private final Map<String, Long> blocksByTransaction = new ConcurrentHashMap<>();
+
+    /**
+     * Start a node on a free local port that produces an empty block every second
+     * @param latencyMillis the delay before each HTTP response
+     * @throws IOException if the server cannot bind
+     */
+    public FakeJsonRpcNode(long latencyMillis) throws IOException {
+        this(latencyMillis, 1000);
+    }
+
+    /**
+     * Start a node on a free local port
+     * @param latencyMillis the delay before each HTTP response
+     * @param blockIntervalMillis the interval between empty blocks
+     * @throws IOException if the server cannot bind
+     */
+    public FakeJsonRpcNode(long latencyMillis, long blockIntervalMillis) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.blockProducer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().factory());
+        blockProducer.scheduleAtFixedRate(blockNumber::incrementAndGet, blockIntervalMillis, blockIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Stall some responses, as a node does on garbage collection or a cold cache
+     * @param every delay one in this many requests, or 0 for none
+     * @param millis the delay added to those requests
+     */
+    public void setOutliers(int every, long millis) {
+        this.outlierMillis = millis;
+        this.outlierEvery = every;
+    }
+
+    @Override
+    public void close() {
+        blockProducer.shutdownNow();
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            JsonNode body = MAPPER.readTree(exchange.getRequestBody());
+            JsonNode response;
+            if (body.isArray()) {
+                ArrayNode responses = JsonNodeFactory.instance.arrayNode();
+                body.forEach(request -> responses.add(respond(request)));
+                response = responses;
+            } else {
+                response = respond(body);
+            }
+            long count = requests.incrementAndGet();
+            long delay = latencyMillis;
+            int every = outlierEvery;
+            if (every > 0 && count % every == 0) {
+                delay += outlierMillis;
+            }
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            byte[] bytes = MAPPER.writeValueAsBytes(response);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Build the response to one request
+     * @param request the JSON-RPC request
+     * @return the JSON-RPC response
+     */
+    protected ObjectNode respond(JsonNode request) {
+        ObjectNode response = JsonNodeFactory.instance.objectNode();
+        response.put("jsonrpc", "2.0");
+        response.set("id", request.get("id"));
+        String method = request.path("method").asText();
+        switch (method) {
+            case "eth_call" -> response.put("result", WORD);
+            case "eth_blockNumber" -> response.put("result", quantity(blockNumber.get()));
+            case "eth_getTransactionCount" -> response.put("result", "0x0");
+            case "eth_chainId", "net_version" -> response.put("result", "0x539");
+            case "eth_getLogs" -> response.putArray("result");
+            case "eth_gasPrice" -> response.put("result", GWEI);
+            case "eth_estimateGas" -> response.put("result", "0x6d60");
+            case "eth_feeHistory" -> {
+                ObjectNode feeHistory = response.putObject("result");
+                feeHistory.put("oldestBlock", quantity(blockNumber.get()));
+                feeHistory.putArray("baseFeePerGas").add(GWEI).add(GWEI);
+                feeHistory.putArray("gasUsedRatio").add(0.5);
+                feeHistory.putArray("reward").addArray().add(GWEI);
+            }
+            case "eth_sendRawTransaction" -> response.put("result", mine(request.path("params").path(0).asText()));
+            case "eth_getTransactionReceipt" -> {
+                Long block = blocksByTransaction.get(request.path("params").path(0).asText());
+                response.set("result", block == null ? null : receipt(transactionsByBlock.get(block), block));
+            }
+            case "eth_getBlockReceipts" -> {
+                long block = Numeric.toBigInt(request.path("params").path(0).asText()).longValueExact();
+                ArrayNode receipts = response.putArray("result");
+                String transactionHash = transactionsByBlock.get(block);
+                if (transactionHash != null) {
+                    receipts.add(receipt(transactionHash, block));
+                }
+            }
+            default -> {
+                ObjectNode error = response.putObject("error");
+                error.put("code", -32601);
+                error.put("message", "Method not found: " + method);
+            }
+        }
+        return response;
+    }
+
+    private String mine(String rawTransaction) {
+        String transactionHash = Hash.sha3(rawTransaction);
+        blocksByTransaction.computeIfAbsent(transactionHash, hash -> {
+            long block = blockNumber.incrementAndGet();
+            transactionsByBlock.put(block, hash);
+            return block;
+        });
+        return transactionHash;
+    }
+
+    private static ObjectNode receipt(String transactionHash, long block) {
+        ObjectNode receipt = JsonNodeFactory.instance.objectNode();
+        receipt.put("transactionHash", transactionHash);
+        receipt.put("transactionIndex", "0x0");
+        receipt.put("blockHash", Hash.sha3(quantity(block)));
+        receipt.put("blockNumber", quantity(block));
+        receipt.put("cumulativeGasUsed", "0x6d60");
+        receipt.put("gasUsed", "0x6d60");
+        receipt.put("effectiveGasPrice", "0x4a817c800");
+        receipt.put("status", "0x1");
+        receipt.put("type", "0x0");
+        receipt.putArray("logs");
+        receipt.put("logsBloom", "0x" + "0".repeat(512));
+        return receipt;
+    }
+
+    private static String quantity(long value) {
+        return Numeric.encodeQuantity(BigInteger.valueOf(value));
+    }
+}
@@ -0,0 +1,75 @@
+package com.wetech.demo.web3j.benchmark;
+
+import com.wetech.demo.web3j.Application;
+import com.wetech.demo.web3j.service.SimpleStorageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full {@link SimpleStorageService#setValue} round trip through the application context:
+ * calldata encoding, nonce allocation, signing, JSON-RPC batching, broadcast, and the
+ * receipt arriving through the chain head monitor. The node is a {@link FakeJsonRpcNode}
+ * that mines every transaction at once, so the figure is the client-side cost plus up to
+ * one head poll interval and one block interval.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SetValueRoundTripBenchmark {
+
+    private static final String CONTRACT = "0x5fbdb2315678afecb367f032d93f642f64180aa3";
+
+    @Param({"0"})
+    public long nodeLatencyMillis;
+
+    @Param({"1"})
+    public long headPollMillis;
+
+    @Param({"5"})
+    public long blockIntervalMillis;
+
+    private FakeJsonRpcNode node;
+    private ConfigurableApplicationContext context;
+    private SimpleStorageService storageService;
+    private long value;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        node = new FakeJsonRpcNode(nodeLatencyMillis, blockIntervalMillis);
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "web3j.client-address=" + node.getUrl(),
+                        "web3j.chain-id=1337",
+                        "web3j.head.poll-interval=" + headPollMillis,
+                        "logging.level.root=WARN")
+                .run();
+        storageService = context.getBean(SimpleStorageService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        node.close();
+    }
+
+    @Benchmark
+    public TransactionReceipt setValue() {
+        return storageService.setValue(CONTRACT, BigInteger.valueOf(value++)).join();
+    }
+}
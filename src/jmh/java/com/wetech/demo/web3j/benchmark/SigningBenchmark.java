@@ -0,0 +1,92 @@
+package com.wetech.demo.web3j.benchmark;
+
+import com.wetech.demo.web3j.abi.ContractSignatures;
+import com.wetech.demo.web3j.tx.TransactionSigner;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.TransactionEncoder;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signing a {@code set} transaction in the legacy and EIP-1559 formats, with web3j's
+ * {@link TransactionEncoder} and with the {@link TransactionSigner} on the calling thread,
+ * plus a batch of {@value #BATCH} spread over the signer's worker pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SigningBenchmark {
+
+    private static final long CHAIN_ID = 1337;
+    private static final String CONTRACT = "0x5fbdb2315678afecb367f032d93f642f64180aa3";
+    private static final int BATCH = 256;
+
+    private Credentials credentials;
+    private RawTransaction legacy;
+    private RawTransaction eip1559;
+    private TransactionSigner signer;
+    private List<RawTransaction> batch;
+
+    @Setup
+    public void setUp() {
+        credentials = Credentials.create("0xac0974bec39a17e36ba4a6b4d238ff944bacb478cbed5efcae784d7bf4f2ff80");
+        String data = ContractSignatures.SET + "0".repeat(62) + "2a";
+        legacy = RawTransaction.createTransaction(BigInteger.valueOf(42), BigInteger.valueOf(20_000_000_000L),
+                BigInteger.valueOf(6_721_975), CONTRACT, BigInteger.ZERO, data);
+        eip1559 = RawTransaction.createTransaction(CHAIN_ID, BigInteger.valueOf(42),
+                BigInteger.valueOf(6_721_975), CONTRACT, BigInteger.ZERO, data,
+                BigInteger.valueOf(1_000_000_000L), BigInteger.valueOf(30_000_000_000L));
+        // the chain id is configured, so the signer never asks a node for it
+        signer = new TransactionSigner(credentials, null, new SimpleMeterRegistry(), CHAIN_ID, 0);
+        batch = new ArrayList<>(BATCH);
+        for (int nonce = 0; nonce < BATCH; nonce++) {
+            batch.add(RawTransaction.createTransaction(BigInteger.valueOf(nonce), BigInteger.valueOf(20_000_000_000L),
+                    BigInteger.valueOf(6_721_975), CONTRACT, BigInteger.ZERO, data));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        signer.destroy();
+    }
+
+    @Benchmark
+    public byte[] signLegacy() {
+        return TransactionEncoder.signMessage(legacy, CHAIN_ID, credentials);
+    }
+
+    @Benchmark
+    public byte[] signEip1559() {
+        return TransactionEncoder.signMessage(eip1559, credentials);
+    }
+
+    @Benchmark
+    public String signerLegacy() {
+        return signer.sign(legacy);
+    }
+
+    @Benchmark
+    public String signerEip1559() {
+        return signer.sign(eip1559);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<String> signerBatch() {
+        return signer.signAll(batch).join();
+    }
+}
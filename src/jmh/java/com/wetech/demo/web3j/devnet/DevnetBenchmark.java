@@ -0,0 +1,84 @@
+package com.wetech.demo.web3j.devnet;
+
+import com.wetech.demo.web3j.Application;
+import com.wetech.demo.web3j.service.SimpleStorageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SimpleStorageService} against a {@link DevnetNode} executing the real contract: the
+ * contract is deployed through the service, then every write is estimated, signed, mined in a
+ * block and confirmed by its receipt, and reads are {@code eth_call}s run by the devnet, cached
+ * until the contract's next {@code DataChanged} event.
+ * Node latency and reorgs can be injected to see how the pipeline copes with them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DevnetBenchmark {
+
+    @Param({"0"})
+    public long nodeLatencyMillis;
+
+    @Param({"100"})
+    public long blockIntervalMillis;
+
+    @Param({"0"})
+    public int reorgEveryBlocks;
+
+    private DevnetNode node;
+    private ConfigurableApplicationContext context;
+    private SimpleStorageService storageService;
+    private String contract;
+    private long value;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        node = new DevnetNode(blockIntervalMillis);
+        node.setLatency(nodeLatencyMillis, nodeLatencyMillis / 2);
+        node.setReorgs(reorgEveryBlocks, 2);
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                // as arguments, so they take precedence over application.properties
+                .run(
+                        "--web3j.client-address=" + node.getUrl(),
+                        "--web3j.chain-id=" + DevnetNode.CHAIN_ID,
+                        "--web3j.head.poll-interval=" + Math.max(1, blockIntervalMillis / 4),
+                        "--web3j.outbox.file=",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.wetech.demo.web3j=WARN");
+        storageService = context.getBean(SimpleStorageService.class);
+        contract = storageService.deployContract().join();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        node.close();
+    }
+
+    @Benchmark
+    public TransactionReceipt setValue() {
+        return storageService.setValue(contract, BigInteger.valueOf(value++)).join();
+    }
+
+    @Benchmark
+    public BigInteger getValue() {
+        return storageService.getValue(contract).join();
+    }
+}
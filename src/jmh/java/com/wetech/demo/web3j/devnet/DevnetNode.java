@@ -0,0 +1,923 @@
+package com.wetech.demo.web3j.devnet;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.web3j.crypto.ContractUtils;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.SignedRawTransaction;
+import org.web3j.crypto.TransactionDecoder;
+import org.web3j.crypto.transaction.type.Transaction1559;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * An in-process development chain behind a JSON-RPC endpoint, so the service can be load-tested
+ * end to end without an external node. Unlike {@link com.wetech.demo.web3j.benchmark.FakeJsonRpcNode}
+ * it keeps real state: signed transactions are checked (nonce, replacement price, chain id),
+ * pooled, and executed by a small {@link Evm} when a block is produced, so deploying
+ * {@code SimpleStorage.BINARY} or {@code ZHX.BINARY} and calling them behaves as on a real chain,
+ * including reverts, gas used, receipts and logs.
+ *
+ * <p>Blocks are produced every {@code blockIntervalMillis}, or one per transaction when it is 0.
+ * Faults can be injected for benchmarks: response latency with jitter and outliers, HTTP errors,
+ * a minimum gas price below which transactions stay pending, and reorgs that drop the latest
+ * blocks and mine their transactions again into blocks with new hashes. Randomness comes from
+ * a seed, so runs are reproducible. Every account starts with a million ether and fees are not
+ * charged; calls from code to other contracts are not supported.
+ */
+public class DevnetNode implements AutoCloseable {
+
+    public static final long CHAIN_ID = 1337;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long BLOCK_GAS_LIMIT = 30_000_000;
+    private static final BigInteger BASE_FEE = BigInteger.valueOf(1_000_000_000L);
+    private static final BigInteger INITIAL_BALANCE = BigInteger.TEN.pow(24);
+    private static final String ZERO_ADDRESS = "0x" + "0".repeat(40);
+    private static final String ZERO_HASH = "0x" + "0".repeat(64);
+    private static final String EMPTY_BLOOM = "0x" + "0".repeat(512);
+    private static final byte[] EMPTY = new byte[0];
+
+    static {
+        // without TCP_NODELAY small responses stall on delayed ACKs for ~40 ms per request
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ScheduledExecutorService blockProducer;
+    private final boolean automine;
+    private final Random random;
+    private final AtomicLong requests = new AtomicLong();
+    private volatile long latencyMillis;
+    private volatile long jitterMillis;
+    private volatile int outlierEvery;
+    private volatile long outlierMillis;
+    private volatile double errorRate;
+    private volatile BigInteger minGasPrice = BigInteger.ZERO;
+    private volatile int reorgEvery;
+    private volatile int reorgDepth;
+
+    // chain state, guarded by this
+    private final Map<String, Account> accounts = new HashMap<>();
+    private final List<Block> blocks = new ArrayList<>();
+    private final List<Pending> pool = new ArrayList<>();
+    private final Map<String, Mined> mined = new HashMap<>();
+    private List<Change> changes;
+    private long reorgs;
+
+    /**
+     * Start a devnet on a free local port
+     * @param blockIntervalMillis the interval between blocks, or 0 to mine every transaction at once
+     * @throws IOException if the server cannot bind
+     */
+    public DevnetNode(long blockIntervalMillis) throws IOException {
+        this(0, blockIntervalMillis, 1);
+    }
+
+    /**
+     * Start a devnet
+     * @param port the port to listen on, or 0 for a free one
+     * @param blockIntervalMillis the interval between blocks, or 0 to mine every transaction at once
+     * @param seed the seed of injected latency jitter and errors
+     * @throws IOException if the server cannot bind
+     */
+    public DevnetNode(int port, long blockIntervalMillis, long seed) throws IOException {
+        this.random = new Random(seed);
+        this.automine = blockIntervalMillis <= 0;
+        Block genesis = new Block(0, ZERO_HASH, Hash.sha3String("genesis"), System.currentTimeMillis() / 1000);
+        blocks.add(genesis);
+        this.blockProducer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().factory());
+        if (!automine) {
+            blockProducer.scheduleAtFixedRate(this::produce, blockIntervalMillis, blockIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Run a devnet until the process is stopped, e.g. to point the application at it with
+     * {@code web3j.client-address=http://127.0.0.1:8545} and {@code web3j.chain-id=1337}
+     * @param args {@code [port [blockIntervalMillis [latencyMillis [errorRate [seed]]]]]}
+     * @throws Exception if the server cannot start
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8545;
+        long blockInterval = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+        DevnetNode node = new DevnetNode(port, blockInterval, seed);
+        node.setLatency(args.length > 2 ? Long.parseLong(args[2]) : 0, 0);
+        node.setErrorRate(args.length > 3 ? Double.parseDouble(args[3]) : 0);
+        System.out.println("Devnet (chain id " + CHAIN_ID + ") listening on " + node.getUrl());
+        Thread.currentThread().join();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public synchronized long getBlockNumber() {
+        return head().number;
+    }
+
+    /**
+     * Delay every response
+     * @param millis the fixed delay
+     * @param jitterMillis the bound of an extra uniformly distributed delay
+     */
+    public void setLatency(long millis, long jitterMillis) {
+        this.latencyMillis = millis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    /**
+     * Stall some responses, as a node does on garbage collection or a cold cache
+     * @param every delay one in this many requests, or 0 for none
+     * @param millis the delay added to those requests
+     */
+    public void setOutliers(int every, long millis) {
+        this.outlierMillis = millis;
+        this.outlierEvery = every;
+    }
+
+    /**
+     * Fail a share of HTTP requests with a 503 before they are processed
+     * @param rate the probability of failing a request, from 0 to 1
+     */
+    public void setErrorRate(double rate) {
+        this.errorRate = rate;
+    }
+
+    /**
+     * Leave transactions paying less than a price in the pool, as a congested chain does
+     * @param price the minimum gas price (or max fee) in wei that gets mined
+     */
+    public void setMinGasPrice(BigInteger price) {
+        this.minGasPrice = price;
+    }
+
+    /**
+     * Reorganize the chain periodically
+     * @param everyBlocks reorganize when the head is a multiple of this, or 0 for never
+     * @param depth the number of blocks replaced each time
+     */
+    public void setReorgs(int everyBlocks, int depth) {
+        this.reorgDepth = depth;
+        this.reorgEvery = everyBlocks;
+    }
+
+    /**
+     * Replace the latest blocks: their transactions go back to the pool and are mined again,
+     * into as many new blocks with different hashes
+     * @param depth the number of blocks to replace
+     */
+    public synchronized void reorg(int depth) {
+        int dropped = (int) Math.min(depth, head().number);
+        List<Pending> requeued = new ArrayList<>();
+        for (int i = 0; i < dropped; i++) {
+            Block block = blocks.remove(blocks.size() - 1);
+            for (int c = block.changes.size() - 1; c >= 0; c--) {
+                block.changes.get(c).undo.run();
+            }
+            List<Pending> fromBlock = new ArrayList<>();
+            for (Mined transaction : block.transactions) {
+                mined.remove(transaction.pending.hash);
+                fromBlock.add(transaction.pending);
+            }
+            requeued.addAll(0, fromBlock);
+        }
+        pool.addAll(0, requeued);
+        reorgs++;
+        for (int i = 0; i < dropped; i++) {
+            mine();
+        }
+    }
+
+    @Override
+    public void close() {
+        blockProducer.shutdownNow();
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            long count = requests.incrementAndGet();
+            long delay = latencyMillis;
+            double failure;
+            synchronized (random) {
+                if (jitterMillis > 0) {
+                    delay += random.nextLong(jitterMillis + 1);
+                }
+                failure = random.nextDouble();
+            }
+            int every = outlierEvery;
+            if (every > 0 && count % every == 0) {
+                delay += outlierMillis;
+            }
+            if (failure < errorRate) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            JsonNode body = MAPPER.readTree(exchange.getRequestBody());
+            JsonNode response;
+            if (body.isArray()) {
+                ArrayNode responses = JsonNodeFactory.instance.arrayNode();
+                body.forEach(request -> responses.add(respond(request)));
+                response = responses;
+            } else {
+                response = respond(body);
+            }
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            byte[] bytes = MAPPER.writeValueAsBytes(response);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ObjectNode respond(JsonNode request) {
+        ObjectNode response = JsonNodeFactory.instance.objectNode();
+        response.put("jsonrpc", "2.0");
+        response.set("id", request.get("id"));
+        try {
+            response.set("result", dispatch(request.path("method").asText(), request.path("params")));
+        } catch (RpcException e) {
+            ObjectNode error = response.putObject("error");
+            error.put("code", e.code);
+            error.put("message", e.getMessage());
+            if (e.data != null) {
+                error.put("data", e.data);
+            }
+        } catch (RuntimeException e) {
+            ObjectNode error = response.putObject("error");
+            error.put("code", -32602);
+            error.put("message", "Invalid params: " + e);
+        }
+        return response;
+    }
+
+    private synchronized JsonNode dispatch(String method, JsonNode params) {
+        JsonNodeFactory json = JsonNodeFactory.instance;
+        return switch (method) {
+            case "eth_chainId" -> json.textNode(quantity(CHAIN_ID));
+            case "net_version" -> json.textNode(Long.toString(CHAIN_ID));
+            case "web3_clientVersion" -> json.textNode("devnet/1.0");
+            case "eth_syncing" -> json.booleanNode(false);
+            case "eth_accounts" -> json.arrayNode();
+            case "eth_blockNumber" -> json.textNode(quantity(head().number));
+            case "eth_gasPrice" -> json.textNode(quantity(BASE_FEE.shiftLeft(1)));
+            case "eth_maxPriorityFeePerGas" -> json.textNode(quantity(BASE_FEE));
+            case "eth_feeHistory" -> feeHistory(params.path(0).asInt(1));
+            case "eth_getBalance" -> atBlock(params.path(1),
+                    () -> json.textNode(quantity(account(address(params.path(0))).balance)));
+            case "eth_getCode" -> atBlock(params.path(1),
+                    () -> json.textNode(Numeric.toHexString(account(address(params.path(0))).code)));
+            case "eth_getStorageAt" -> atBlock(params.path(2), () -> json.textNode(
+                    Numeric.toHexStringWithPrefixZeroPadded(account(address(params.path(0))).storage
+                            .getOrDefault(Numeric.toBigInt(params.path(1).asText()), BigInteger.ZERO), 64)));
+            case "eth_getTransactionCount" -> "pending".equals(params.path(1).asText())
+                    ? json.textNode(quantity(pendingNonce(address(params.path(0)))))
+                    : atBlock(params.path(1), () -> json.textNode(quantity(account(address(params.path(0))).nonce)));
+            case "eth_call" -> atBlock(params.path(1), () -> json.textNode(Numeric.toHexString(call(params.path(0)))));
+            case "eth_estimateGas" -> json.textNode(quantity(estimateGas(params.path(0))));
+            case "eth_sendRawTransaction" -> json.textNode(send(params.path(0).asText()));
+            case "eth_getTransactionReceipt" -> {
+                Mined transaction = mined.get(params.path(0).asText().toLowerCase(Locale.ROOT));
+                yield transaction == null ? json.nullNode() : receipt(transaction);
+            }
+            case "eth_getTransactionByHash" -> transactionByHash(params.path(0).asText().toLowerCase(Locale.ROOT));
+            case "eth_getBlockByNumber" -> {
+                long number = blockNumber(params.path(0));
+                yield number > head().number ? json.nullNode() : block(blocks.get((int) number),
+                        params.path(1).asBoolean());
+            }
+            case "eth_getBlockByHash" -> blocks.stream()
+                    .filter(block -> block.hash.equalsIgnoreCase(params.path(0).asText()))
+                    .findFirst()
+                    .<JsonNode>map(block -> block(block, params.path(1).asBoolean()))
+                    .orElse(json.nullNode());
+            case "eth_getBlockReceipts" -> {
+                long number = blockNumber(params.path(0));
+                if (number > head().number) {
+                    yield json.nullNode();
+                }
+                ArrayNode receipts = json.arrayNode();
+                blocks.get((int) number).transactions.forEach(transaction -> receipts.add(receipt(transaction)));
+                yield receipts;
+            }
+            case "eth_getLogs" -> logs(params.path(0));
+            default -> throw new RpcException(-32601, "Method not found: " + method);
+        };
+    }
+
+    private String send(String raw) {
+        String hash = Hash.sha3(raw).toLowerCase(Locale.ROOT);
+        if (mined.containsKey(hash) || pool.stream().anyMatch(pending -> pending.hash.equals(hash))) {
+            throw new RpcException(-32000, "already known");
+        }
+        SignedRawTransaction transaction;
+        String from;
+        try {
+            transaction = (SignedRawTransaction) TransactionDecoder.decode(raw);
+            from = transaction.getFrom().toLowerCase(Locale.ROOT);
+        } catch (SignatureException | RuntimeException e) {
+            throw new RpcException(-32000, "invalid transaction: " + e.getMessage());
+        }
+        Long chainId = transaction.getChainId();
+        if (chainId != null && chainId != CHAIN_ID) {
+            throw new RpcException(-32000, "invalid chain id " + chainId);
+        }
+        long nonce = transaction.getNonce().longValueExact();
+        if (nonce < account(from).nonce) {
+            throw new RpcException(-32000, "nonce too low: next nonce " + account(from).nonce + ", tx nonce " + nonce);
+        }
+        byte[] input = Numeric.hexStringToByteArray(transaction.getData());
+        long gasLimit = transaction.getGasLimit().longValueExact();
+        if (gasLimit < Evm.intrinsicGas(input, isCreation(transaction.getTo()))) {
+            throw new RpcException(-32000, "intrinsic gas too low");
+        }
+        if (gasLimit > BLOCK_GAS_LIMIT) {
+            throw new RpcException(-32000, "exceeds block gas limit");
+        }
+        Pending pending = new Pending(hash, from, nonce, transaction, price(transaction), input);
+        for (Iterator<Pending> iterator = pool.iterator(); iterator.hasNext(); ) {
+            Pending existing = iterator.next();
+            if (existing.from.equals(from) && existing.nonce == nonce) {
+                BigInteger required = existing.price.multiply(BigInteger.valueOf(110)).divide(BigInteger.valueOf(100));
+                if (pending.price.compareTo(required) < 0) {
+                    throw new RpcException(-32000, "replacement transaction underpriced");
+                }
+                iterator.remove();
+            }
+        }
+        pool.add(pending);
+        if (automine) {
+            produce();
+        }
+        return hash;
+    }
+
+    private synchronized void produce() {
+        mine();
+        int every = reorgEvery;
+        if (every > 0 && reorgDepth > 0 && head().number % every == 0) {
+            reorg(reorgDepth);
+        }
+    }
+
+    private void mine() {
+        Block parent = head();
+        Block block = new Block(parent.number + 1, parent.hash,
+                Hash.sha3String(parent.hash + ":" + (parent.number + 1) + ":" + reorgs),
+                Math.max(parent.timestamp + 1, System.currentTimeMillis() / 1000));
+        changes = block.changes;
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (Iterator<Pending> iterator = pool.iterator(); iterator.hasNext(); ) {
+                Pending pending = iterator.next();
+                long next = account(pending.from).nonce;
+                if (pending.nonce < next) {
+                    iterator.remove();
+                } else if (pending.nonce == next && pending.price.compareTo(minGasPrice) >= 0
+                        && block.gasUsed + pending.gasLimit() <= BLOCK_GAS_LIMIT) {
+                    iterator.remove();
+                    execute(block, pending);
+                    progress = true;
+                }
+            }
+        }
+        changes = null;
+        blocks.add(block);
+        block.transactions.forEach(transaction -> mined.put(transaction.pending.hash, transaction));
+    }
+
+    private void execute(Block block, Pending pending) {
+        SignedRawTransaction transaction = pending.transaction;
+        Account sender = account(pending.from);
+        boolean creation = isCreation(transaction.getTo());
+        String target = creation ? ContractUtils.generateContractAddress(pending.from, transaction.getNonce())
+                : transaction.getTo().toLowerCase(Locale.ROOT);
+        long intrinsic = Evm.intrinsicGas(pending.input, creation);
+        int mark = changes.size();
+        Account account = account(target);
+        setBalance(sender, sender.balance.subtract(transaction.getValue()));
+        setBalance(account, account.balance.add(transaction.getValue()));
+        Evm.Result result = run(creation ? pending.input : account.code, creation ? EMPTY : pending.input, target,
+                pending.from, transaction.getValue(), pending.gasLimit() - intrinsic, block, journaled(account));
+        if (result.success() && creation) {
+            long deposit = 200L * result.output().length;
+            if (result.gasUsed() + deposit > pending.gasLimit() - intrinsic) {
+                result = new Evm.Result(false, EMPTY, pending.gasLimit() - intrinsic, List.of(), "out of gas");
+            } else {
+                setCode(account, result.output());
+                result = new Evm.Result(true, result.output(), result.gasUsed() + deposit, result.logs(), null);
+            }
+        }
+        if (!result.success()) {
+            while (changes.size() > mark) {
+                changes.remove(changes.size() - 1).undo.run();
+            }
+        }
+        setNonce(sender, pending.nonce + 1);
+        long gasUsed = intrinsic + result.gasUsed();
+        block.gasUsed += gasUsed;
+        Mined minedTransaction = new Mined(pending, block, block.transactions.size(),
+                creation && result.success() ? target : null, result.success(), gasUsed, block.gasUsed,
+                block.logCount, result.logs());
+        block.logCount += result.logs().size();
+        block.transactions.add(minedTransaction);
+    }
+
+    private byte[] call(JsonNode request) {
+        String from = request.hasNonNull("from") ? address(request.get("from")) : ZERO_ADDRESS;
+        String to = request.hasNonNull("to") ? address(request.get("to")) : null;
+        byte[] input = input(request);
+        BigInteger value = request.hasNonNull("value") ? Numeric.toBigInt(request.get("value").asText())
+                : BigInteger.ZERO;
+        long gas = request.hasNonNull("gas") ? Numeric.toBigInt(request.get("gas").asText()).longValueExact()
+                : BLOCK_GAS_LIMIT;
+        Evm.Result result = to == null
+                ? run(input, EMPTY, ContractUtils.generateContractAddress(from, BigInteger.valueOf(account(from).nonce)),
+                        from, value, gas, head(), overlay(new Account()))
+                : run(account(to).code, input, to, from, value, gas, head(), overlay(account(to)));
+        if (!result.success()) {
+            throw reverted(result);
+        }
+        return result.output();
+    }
+
+    private long estimateGas(JsonNode request) {
+        String from = request.hasNonNull("from") ? address(request.get("from")) : ZERO_ADDRESS;
+        String to = request.hasNonNull("to") ? address(request.get("to")) : null;
+        byte[] input = input(request);
+        BigInteger value = request.hasNonNull("value") ? Numeric.toBigInt(request.get("value").asText())
+                : BigInteger.ZERO;
+        long intrinsic = Evm.intrinsicGas(input, to == null);
+        Evm.Result result = to == null
+                ? run(input, EMPTY, ZERO_ADDRESS, from, value, BLOCK_GAS_LIMIT - intrinsic, head(),
+                        overlay(new Account()))
+                : run(account(to).code, input, to, from, value, BLOCK_GAS_LIMIT - intrinsic, head(),
+                        overlay(account(to)));
+        if (!result.success()) {
+            throw reverted(result);
+        }
+        return intrinsic + result.gasUsed() + (to == null ? 200L * result.output().length : 0);
+    }
+
+    private Evm.Result run(byte[] code, byte[] input, String address, String caller, BigInteger value, long gas,
+                           Block block, Evm.Host host) {
+        if (code.length == 0) {
+            return new Evm.Result(true, EMPTY, 0, List.of(), null);
+        }
+        return Evm.execute(new Evm.Call(code, input, address, caller, caller, value, gas,
+                new Evm.Block(block.number, block.timestamp, BLOCK_GAS_LIMIT, BASE_FEE, CHAIN_ID, ZERO_ADDRESS)), host);
+    }
+
+    private Evm.Host journaled(Account account) {
+        return new StateHost() {
+            @Override
+            public BigInteger load(BigInteger key) {
+                return account.storage.getOrDefault(key, BigInteger.ZERO);
+            }
+
+            @Override
+            public void store(BigInteger key, BigInteger value) {
+                setStorage(account, key, value);
+            }
+        };
+    }
+
+    private Evm.Host overlay(Account account) {
+        Map<BigInteger, BigInteger> written = new HashMap<>();
+        return new StateHost() {
+            @Override
+            public BigInteger load(BigInteger key) {
+                BigInteger value = written.get(key);
+                return value != null ? value : account.storage.getOrDefault(key, BigInteger.ZERO);
+            }
+
+            @Override
+            public void store(BigInteger key, BigInteger value) {
+                written.put(key, value);
+            }
+        };
+    }
+
+    private abstract class StateHost implements Evm.Host {
+        @Override
+        public BigInteger balance(String address) {
+            return account(address).balance;
+        }
+
+        @Override
+        public byte[] code(String address) {
+            return account(address).code;
+        }
+    }
+
+    private JsonNode atBlock(JsonNode tag, Supplier<JsonNode> read) {
+        long number = blockNumber(tag);
+        long head = head().number;
+        if (number >= head) {
+            return read.get();
+        }
+        // roll the state back to the block, read, and roll it forward again
+        for (long n = head; n > number; n--) {
+            List<Change> blockChanges = blocks.get((int) n).changes;
+            for (int c = blockChanges.size() - 1; c >= 0; c--) {
+                blockChanges.get(c).undo.run();
+            }
+        }
+        try {
+            return read.get();
+        } finally {
+            for (long n = number + 1; n <= head; n++) {
+                blocks.get((int) n).changes.forEach(change -> change.redo.run());
+            }
+        }
+    }
+
+    private JsonNode logs(JsonNode filter) {
+        long from;
+        long to;
+        if (filter.hasNonNull("blockHash")) {
+            Block block = blocks.stream().filter(b -> b.hash.equalsIgnoreCase(filter.get("blockHash").asText()))
+                    .findFirst().orElseThrow(() -> new RpcException(-32000, "unknown block"));
+            from = block.number;
+            to = block.number;
+        } else {
+            from = blockNumber(filter.path("fromBlock"));
+            to = Math.min(blockNumber(filter.path("toBlock")), head().number);
+        }
+        Set<String> addresses = new HashSet<>();
+        JsonNode address = filter.path("address");
+        if (address.isArray()) {
+            address.forEach(node -> addresses.add(node.asText().toLowerCase(Locale.ROOT)));
+        } else if (address.isTextual()) {
+            addresses.add(address.asText().toLowerCase(Locale.ROOT));
+        }
+        List<Set<String>> topics = new ArrayList<>();
+        for (JsonNode position : filter.path("topics")) {
+            Set<String> accepted = new HashSet<>();
+            if (position.isArray()) {
+                position.forEach(node -> accepted.add(node.asText().toLowerCase(Locale.ROOT)));
+            } else if (position.isTextual()) {
+                accepted.add(position.asText().toLowerCase(Locale.ROOT));
+            }
+            topics.add(accepted);
+        }
+        ArrayNode logs = JsonNodeFactory.instance.arrayNode();
+        for (long number = Math.max(from, 0); number <= to; number++) {
+            for (Mined transaction : blocks.get((int) number).transactions) {
+                for (int i = 0; i < transaction.logs.size(); i++) {
+                    Evm.LogEntry entry = transaction.logs.get(i);
+                    if (matches(entry, addresses, topics)) {
+                        logs.add(log(transaction, i));
+                    }
+                }
+            }
+        }
+        return logs;
+    }
+
+    private static boolean matches(Evm.LogEntry entry, Set<String> addresses, List<Set<String>> topics) {
+        if (!addresses.isEmpty() && !addresses.contains(entry.address())) {
+            return false;
+        }
+        for (int i = 0; i < topics.size(); i++) {
+            if (topics.get(i).isEmpty()) {
+                continue;
+            }
+            if (i >= entry.topics().size() || !topics.get(i).contains(entry.topics().get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ObjectNode receipt(Mined transaction) {
+        ObjectNode receipt = JsonNodeFactory.instance.objectNode();
+        receipt.put("transactionHash", transaction.pending.hash);
+        receipt.put("transactionIndex", quantity(transaction.index));
+        receipt.put("blockHash", transaction.block.hash);
+        receipt.put("blockNumber", quantity(transaction.block.number));
+        receipt.put("from", transaction.pending.from);
+        receipt.put("to", transaction.pending.transaction.getTo() == null || transaction.contractAddress != null
+                ? null : transaction.pending.transaction.getTo().toLowerCase(Locale.ROOT));
+        receipt.put("contractAddress", transaction.contractAddress);
+        receipt.put("cumulativeGasUsed", quantity(transaction.cumulativeGasUsed));
+        receipt.put("gasUsed", quantity(transaction.gasUsed));
+        receipt.put("effectiveGasPrice", quantity(effectivePrice(transaction.pending.transaction)));
+        receipt.put("status", transaction.success ? "0x1" : "0x0");
+        receipt.put("type", quantity(type(transaction.pending.transaction)));
+        ArrayNode logs = receipt.putArray("logs");
+        for (int i = 0; i < transaction.logs.size(); i++) {
+            logs.add(log(transaction, i));
+        }
+        receipt.put("logsBloom", EMPTY_BLOOM);
+        return receipt;
+    }
+
+    private static ObjectNode log(Mined transaction, int index) {
+        Evm.LogEntry entry = transaction.logs.get(index);
+        ObjectNode log = JsonNodeFactory.instance.objectNode();
+        log.put("removed", false);
+        log.put("logIndex", quantity(transaction.firstLogIndex + index));
+        log.put("transactionIndex", quantity(transaction.index));
+        log.put("transactionHash", transaction.pending.hash);
+        log.put("blockHash", transaction.block.hash);
+        log.put("blockNumber", quantity(transaction.block.number));
+        log.put("address", entry.address());
+        log.put("data", Numeric.toHexString(entry.data()));
+        ArrayNode topics = log.putArray("topics");
+        entry.topics().forEach(topics::add);
+        return log;
+    }
+
+    private ObjectNode block(Block block, boolean fullTransactions) {
+        ObjectNode node = JsonNodeFactory.instance.objectNode();
+        node.put("number", quantity(block.number));
+        node.put("hash", block.hash);
+        node.put("parentHash", block.parentHash);
+        node.put("nonce", "0x0000000000000000");
+        node.put("sha3Uncles", ZERO_HASH);
+        node.put("logsBloom", EMPTY_BLOOM);
+        node.put("transactionsRoot", ZERO_HASH);
+        node.put("stateRoot", ZERO_HASH);
+        node.put("receiptsRoot", ZERO_HASH);
+        node.put("miner", ZERO_ADDRESS);
+        node.put("difficulty", "0x0");
+        node.put("totalDifficulty", "0x0");
+        node.put("extraData", "0x");
+        node.put("size", "0x0");
+        node.put("gasLimit", quantity(BLOCK_GAS_LIMIT));
+        node.put("gasUsed", quantity(block.gasUsed));
+        node.put("timestamp", quantity(block.timestamp));
+        node.put("baseFeePerGas", quantity(BASE_FEE));
+        ArrayNode transactions = node.putArray("transactions");
+        for (Mined transaction : block.transactions) {
+            if (fullTransactions) {
+                transactions.add(transaction(transaction.pending, transaction));
+            } else {
+                transactions.add(transaction.pending.hash);
+            }
+        }
+        node.putArray("uncles");
+        return node;
+    }
+
+    private JsonNode transactionByHash(String hash) {
+        Mined transaction = mined.get(hash);
+        if (transaction != null) {
+            return transaction(transaction.pending, transaction);
+        }
+        return pool.stream().filter(pending -> pending.hash.equals(hash)).findFirst()
+                .<JsonNode>map(pending -> transaction(pending, null))
+                .orElse(JsonNodeFactory.instance.nullNode());
+    }
+
+    private static ObjectNode transaction(Pending pending, Mined mined) {
+        SignedRawTransaction transaction = pending.transaction;
+        ObjectNode node = JsonNodeFactory.instance.objectNode();
+        node.put("hash", pending.hash);
+        node.put("nonce", quantity(pending.nonce));
+        node.put("blockHash", mined == null ? null : mined.block.hash);
+        node.put("blockNumber", mined == null ? null : quantity(mined.block.number));
+        node.put("transactionIndex", mined == null ? null : quantity(mined.index));
+        node.put("from", pending.from);
+        node.put("to", isCreation(transaction.getTo()) ? null : transaction.getTo().toLowerCase(Locale.ROOT));
+        node.put("value", quantity(transaction.getValue()));
+        node.put("gas", quantity(transaction.getGasLimit()));
+        node.put("gasPrice", quantity(effectivePrice(transaction)));
+        node.put("input", Numeric.toHexString(pending.input));
+        node.put("type", quantity(type(transaction)));
+        return node;
+    }
+
+    private JsonNode feeHistory(int count) {
+        ObjectNode feeHistory = JsonNodeFactory.instance.objectNode();
+        int blocksCount = Math.max(1, Math.min(count, 1024));
+        feeHistory.put("oldestBlock", quantity(Math.max(0, head().number - blocksCount + 1)));
+        ArrayNode baseFees = feeHistory.putArray("baseFeePerGas");
+        ArrayNode ratios = feeHistory.putArray("gasUsedRatio");
+        ArrayNode rewards = feeHistory.putArray("reward");
+        for (int i = 0; i < blocksCount; i++) {
+            baseFees.add(quantity(BASE_FEE));
+            ratios.add(0.5);
+            rewards.addArray().add(quantity(BASE_FEE));
+        }
+        baseFees.add(quantity(BASE_FEE));
+        return feeHistory;
+    }
+
+    private long pendingNonce(String address) {
+        long nonce = account(address).nonce;
+        boolean found = true;
+        while (found) {
+            found = false;
+            for (Pending pending : pool) {
+                if (pending.from.equals(address) && pending.nonce == nonce) {
+                    nonce++;
+                    found = true;
+                }
+            }
+        }
+        return nonce;
+    }
+
+    private long blockNumber(JsonNode tag) {
+        String text = tag.isMissingNode() || tag.isNull() ? "latest" : tag.asText();
+        return switch (text) {
+            case "latest", "pending", "safe", "finalized" -> head().number;
+            case "earliest" -> 0;
+            default -> Numeric.toBigInt(text).longValueExact();
+        };
+    }
+
+    private Block head() {
+        return blocks.get(blocks.size() - 1);
+    }
+
+    private Account account(String address) {
+        return accounts.computeIfAbsent(address.toLowerCase(Locale.ROOT), key -> new Account());
+    }
+
+    private void setNonce(Account account, long nonce) {
+        long previous = account.nonce;
+        account.nonce = nonce;
+        changes.add(new Change(() -> account.nonce = previous, () -> account.nonce = nonce));
+    }
+
+    private void setBalance(Account account, BigInteger balance) {
+        BigInteger previous = account.balance;
+        account.balance = balance;
+        changes.add(new Change(() -> account.balance = previous, () -> account.balance = balance));
+    }
+
+    private void setCode(Account account, byte[] code) {
+        byte[] previous = account.code;
+        account.code = code;
+        changes.add(new Change(() -> account.code = previous, () -> account.code = code));
+    }
+
+    private void setStorage(Account account, BigInteger key, BigInteger value) {
+        BigInteger previous = account.storage.getOrDefault(key, BigInteger.ZERO);
+        Runnable apply = () -> put(account.storage, key, value);
+        apply.run();
+        changes.add(new Change(() -> put(account.storage, key, previous), apply));
+    }
+
+    private static void put(Map<BigInteger, BigInteger> storage, BigInteger key, BigInteger value) {
+        if (value.signum() == 0) {
+            storage.remove(key);
+        } else {
+            storage.put(key, value);
+        }
+    }
+
+    private static RpcException reverted(Evm.Result result) {
+        if (!"execution reverted".equals(result.error())) {
+            return new RpcException(-32000, result.error());
+        }
+        byte[] output = result.output();
+        String message = "execution reverted";
+        // Error(string)
+        if (output.length >= 68 && (output[0] & 0xff) == 0x08 && (output[1] & 0xff) == 0xc3
+                && (output[2] & 0xff) == 0x79 && (output[3] & 0xff) == 0xa0) {
+            int length = new BigInteger(1, java.util.Arrays.copyOfRange(output, 36, 68)).intValue();
+            if (68 + length <= output.length) {
+                message += ": " + new String(output, 68, length, StandardCharsets.UTF_8);
+            }
+        }
+        return new RpcException(3, message, Numeric.toHexString(output));
+    }
+
+    private static byte[] input(JsonNode request) {
+        JsonNode data = request.hasNonNull("input") ? request.get("input") : request.get("data");
+        return data == null || data.isNull() ? EMPTY : Numeric.hexStringToByteArray(data.asText());
+    }
+
+    private static String address(JsonNode node) {
+        return node.asText().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isCreation(String to) {
+        return to == null || Numeric.cleanHexPrefix(to).isEmpty();
+    }
+
+    private static BigInteger price(SignedRawTransaction transaction) {
+        return transaction.getTransaction() instanceof Transaction1559 eip1559
+                ? eip1559.getMaxFeePerGas() : transaction.getGasPrice();
+    }
+
+    private static BigInteger effectivePrice(SignedRawTransaction transaction) {
+        return transaction.getTransaction() instanceof Transaction1559 eip1559
+                ? eip1559.getMaxFeePerGas().min(BASE_FEE.add(eip1559.getMaxPriorityFeePerGas()))
+                : transaction.getGasPrice();
+    }
+
+    private static long type(SignedRawTransaction transaction) {
+        return transaction.getType().isLegacy() ? 0 : transaction.getType().getRlpType() & 0xff;
+    }
+
+    private static String quantity(long value) {
+        return Numeric.encodeQuantity(BigInteger.valueOf(value));
+    }
+
+    private static String quantity(BigInteger value) {
+        return Numeric.encodeQuantity(value);
+    }
+
+    private static final class Account {
+        private long nonce;
+        private BigInteger balance = INITIAL_BALANCE;
+        private byte[] code = EMPTY;
+        private final Map<BigInteger, BigInteger> storage = new HashMap<>();
+    }
+
+    private static final class Block {
+        private final long number;
+        private final String parentHash;
+        private final String hash;
+        private final long timestamp;
+        private final List<Mined> transactions = new ArrayList<>();
+        private final List<Change> changes = new ArrayList<>();
+        private long gasUsed;
+        private int logCount;
+
+        private Block(long number, String parentHash, String hash, long timestamp) {
+            this.number = number;
+            this.parentHash = parentHash;
+            this.hash = hash;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private record Pending(String hash, String from, long nonce, SignedRawTransaction transaction, BigInteger price,
+                           byte[] input) {
+
+        private long gasLimit() {
+            return transaction.getGasLimit().longValueExact();
+        }
+    }
+
+    private record Mined(Pending pending, Block block, int index, String contractAddress, boolean success,
+                         long gasUsed, long cumulativeGasUsed, int firstLogIndex, List<Evm.LogEntry> logs) {
+    }
+
+    private record Change(Runnable undo, Runnable redo) {
+    }
+
+    private static final class RpcException extends RuntimeException {
+        private final int code;
+        private final String data;
+
+        private RpcException(int code, String message) {
+            this(code, message, null);
+        }
+
+        private RpcException(int code, String message, String data) {
+            super(message, null, false, false);
+            this.code = code;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,536 @@
+package com.wetech.demo.web3j.devnet;
+
+import org.web3j.crypto.Hash;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A small EVM interpreter for the {@link DevnetNode}: it runs contract bytecode with storage,
+ * memory, logs and an approximation of post-Berlin gas costs, enough for self-contained
+ * contracts such as SimpleStorage and ZHX. Calls to other contracts, contract creation from
+ * code and precompiles are not supported and fail the execution.
+ */
+final class Evm {
+
+    static final BigInteger WORD_MODULUS = BigInteger.ONE.shiftLeft(256);
+    private static final BigInteger MAX_WORD = WORD_MODULUS.subtract(BigInteger.ONE);
+    private static final int MAX_STACK = 1024;
+    private static final long MAX_MEMORY = 16 * 1024 * 1024;
+
+    private Evm() {
+    }
+
+    /**
+     * The state a call can read and write
+     */
+    interface Host {
+
+        BigInteger load(BigInteger key);
+
+        void store(BigInteger key, BigInteger value);
+
+        BigInteger balance(String address);
+
+        byte[] code(String address);
+    }
+
+    /**
+     * One execution
+     * @param code the code to run: init code for a deployment, runtime code otherwise
+     * @param input the call data, empty for a deployment
+     * @param address the executing contract
+     * @param caller the sender of the call
+     * @param origin the sender of the transaction
+     * @param value the wei sent with the call
+     * @param gas the gas available after the intrinsic cost
+     * @param block the block the call executes in
+     */
+    record Call(byte[] code, byte[] input, String address, String caller, String origin, BigInteger value,
+                long gas, Block block) {
+    }
+
+    /**
+     * The block environment
+     */
+    record Block(long number, long timestamp, long gasLimit, BigInteger baseFee, long chainId, String coinbase) {
+    }
+
+    /**
+     * A log emitted by the execution
+     */
+    record LogEntry(String address, List<String> topics, byte[] data) {
+    }
+
+    /**
+     * The outcome of an execution
+     * @param success false if it reverted or failed
+     * @param output the returned data, or the revert data
+     * @param gasUsed the gas spent, excluding the intrinsic cost
+     * @param logs the logs, empty unless it succeeded
+     * @param error the reason it failed, or null
+     */
+    record Result(boolean success, byte[] output, long gasUsed, List<LogEntry> logs, String error) {
+    }
+
+    /**
+     * Run code to completion
+     * @param call the call
+     * @param host the state
+     * @return the outcome
+     */
+    static Result execute(Call call, Host host) {
+        return new Frame(call, host).run();
+    }
+
+    /**
+     * Compute the gas a transaction pays before any code runs
+     * @param data the call data or init code
+     * @param creation whether it deploys a contract
+     * @return the intrinsic gas
+     */
+    static long intrinsicGas(byte[] data, boolean creation) {
+        long gas = 21000;
+        for (byte b : data) {
+            gas += b == 0 ? 4 : 16;
+        }
+        if (creation) {
+            gas += 32000 + 2L * ((data.length + 31) / 32);
+        }
+        return gas;
+    }
+
+    private static final class Frame {
+        private final Call call;
+        private final Host host;
+        private final byte[] code;
+        private final BitSet jumpDests;
+        private final BigInteger[] stack = new BigInteger[MAX_STACK];
+        private final List<LogEntry> logs = new ArrayList<>();
+        private final Set<BigInteger> warmSlots = new HashSet<>();
+        private byte[] memory = new byte[1024];
+        private long memoryWords;
+        private int sp;
+        private long gas;
+
+        private Frame(Call call, Host host) {
+            this.call = call;
+            this.host = host;
+            this.code = call.code();
+            this.jumpDests = jumpDests(code);
+            this.gas = call.gas();
+        }
+
+        private Result run() {
+            try {
+                int pc = 0;
+                while (pc < code.length) {
+                    int op = code[pc] & 0xff;
+                    if (op >= 0x60 && op <= 0x7f) {
+                        int size = op - 0x5f;
+                        charge(3);
+                        byte[] word = new byte[size];
+                        System.arraycopy(code, pc + 1, word, 0, Math.max(0, Math.min(size, code.length - pc - 1)));
+                        push(new BigInteger(1, word));
+                        pc += 1 + size;
+                        continue;
+                    }
+                    if (op >= 0x80 && op <= 0x8f) {
+                        charge(3);
+                        int depth = op - 0x7f;
+                        require(depth);
+                        push(stack[sp - depth]);
+                        pc++;
+                        continue;
+                    }
+                    if (op >= 0x90 && op <= 0x9f) {
+                        charge(3);
+                        int depth = op - 0x8f;
+                        require(depth + 1);
+                        BigInteger top = stack[sp - 1];
+                        stack[sp - 1] = stack[sp - 1 - depth];
+                        stack[sp - 1 - depth] = top;
+                        pc++;
+                        continue;
+                    }
+                    if (op >= 0xa0 && op <= 0xa4) {
+                        int topicCount = op - 0xa0;
+                        long offset = offset(pop());
+                        long size = offset(pop());
+                        List<String> topics = new ArrayList<>(topicCount);
+                        for (int i = 0; i < topicCount; i++) {
+                            topics.add(Numeric.toHexStringWithPrefixZeroPadded(pop(), 64));
+                        }
+                        charge(375 + 375L * topicCount + 8 * size);
+                        logs.add(new LogEntry(call.address(), topics, read(offset, size)));
+                        pc++;
+                        continue;
+                    }
+                    switch (op) {
+                        case 0x00 -> {
+                            return success(new byte[0]);
+                        }
+                        case 0x01 -> binary(3, (a, b) -> a.add(b));
+                        case 0x02 -> binary(5, (a, b) -> a.multiply(b));
+                        case 0x03 -> binary(3, (a, b) -> a.subtract(b));
+                        case 0x04 -> binary(5, (a, b) -> b.signum() == 0 ? BigInteger.ZERO : a.divide(b));
+                        case 0x05 -> binary(5, (a, b) -> b.signum() == 0 ? BigInteger.ZERO
+                                : signed(a).divide(signed(b)));
+                        case 0x06 -> binary(5, (a, b) -> b.signum() == 0 ? BigInteger.ZERO : a.mod(b));
+                        case 0x07 -> binary(5, (a, b) -> {
+                            if (b.signum() == 0) {
+                                return BigInteger.ZERO;
+                            }
+                            BigInteger remainder = signed(a).abs().mod(signed(b).abs());
+                            return signed(a).signum() < 0 ? remainder.negate() : remainder;
+                        });
+                        case 0x08 -> ternary(8, (a, b, n) -> n.signum() == 0 ? BigInteger.ZERO : a.add(b).mod(n));
+                        case 0x09 -> ternary(8, (a, b, n) -> n.signum() == 0 ? BigInteger.ZERO
+                                : a.multiply(b).mod(n));
+                        case 0x0a -> {
+                            BigInteger base = pop();
+                            BigInteger exponent = pop();
+                            charge(10 + 50L * ((exponent.bitLength() + 7) / 8));
+                            push(base.modPow(exponent, WORD_MODULUS));
+                        }
+                        case 0x0b -> binary(5, (b, x) -> {
+                            if (b.compareTo(BigInteger.valueOf(31)) >= 0) {
+                                return x;
+                            }
+                            int bit = b.intValue() * 8 + 7;
+                            BigInteger mask = BigInteger.ONE.shiftLeft(bit + 1).subtract(BigInteger.ONE);
+                            return x.testBit(bit) ? x.or(MAX_WORD.xor(mask)) : x.and(mask);
+                        });
+                        case 0x10 -> binary(3, (a, b) -> bool(a.compareTo(b) < 0));
+                        case 0x11 -> binary(3, (a, b) -> bool(a.compareTo(b) > 0));
+                        case 0x12 -> binary(3, (a, b) -> bool(signed(a).compareTo(signed(b)) < 0));
+                        case 0x13 -> binary(3, (a, b) -> bool(signed(a).compareTo(signed(b)) > 0));
+                        case 0x14 -> binary(3, (a, b) -> bool(a.equals(b)));
+                        case 0x15 -> {
+                            charge(3);
+                            push(bool(pop().signum() == 0));
+                        }
+                        case 0x16 -> binary(3, BigInteger::and);
+                        case 0x17 -> binary(3, BigInteger::or);
+                        case 0x18 -> binary(3, BigInteger::xor);
+                        case 0x19 -> {
+                            charge(3);
+                            push(MAX_WORD.xor(pop()));
+                        }
+                        case 0x1a -> binary(3, (i, x) -> i.compareTo(BigInteger.valueOf(32)) >= 0 ? BigInteger.ZERO
+                                : x.shiftRight(8 * (31 - i.intValue())).and(BigInteger.valueOf(0xff)));
+                        case 0x1b -> binary(3, (shift, x) -> shift.compareTo(BigInteger.valueOf(256)) >= 0
+                                ? BigInteger.ZERO : x.shiftLeft(shift.intValue()));
+                        case 0x1c -> binary(3, (shift, x) -> shift.compareTo(BigInteger.valueOf(256)) >= 0
+                                ? BigInteger.ZERO : x.shiftRight(shift.intValue()));
+                        case 0x1d -> binary(3, (shift, x) -> signed(x).shiftRight(
+                                shift.compareTo(BigInteger.valueOf(256)) >= 0 ? 256 : shift.intValue()));
+                        case 0x20 -> {
+                            long offset = offset(pop());
+                            long size = offset(pop());
+                            charge(30 + 6 * words(size));
+                            push(new BigInteger(1, Hash.sha3(read(offset, size))));
+                        }
+                        case 0x30 -> env(address(call.address()));
+                        case 0x31 -> {
+                            charge(2600);
+                            push(host.balance(address(pop())));
+                        }
+                        case 0x32 -> env(address(call.origin()));
+                        case 0x33 -> env(address(call.caller()));
+                        case 0x34 -> env(call.value());
+                        case 0x35 -> {
+                            charge(3);
+                            push(new BigInteger(1, slice(call.input(), pop(), 32)));
+                        }
+                        case 0x36 -> env(BigInteger.valueOf(call.input().length));
+                        case 0x37 -> copy(call.input());
+                        case 0x38 -> env(BigInteger.valueOf(code.length));
+                        case 0x39 -> copy(code);
+                        case 0x3a -> env(call.block().baseFee());
+                        case 0x3b -> {
+                            charge(2600);
+                            push(BigInteger.valueOf(host.code(address(pop())).length));
+                        }
+                        case 0x3d -> env(BigInteger.ZERO);
+                        case 0x3e -> {
+                            pop();
+                            pop();
+                            if (pop().signum() != 0) {
+                                throw new ExecutionException("return data out of bounds");
+                            }
+                            charge(3);
+                        }
+                        case 0x3f -> {
+                            charge(2600);
+                            byte[] target = host.code(address(pop()));
+                            push(target.length == 0 ? BigInteger.ZERO : new BigInteger(1, Hash.sha3(target)));
+                        }
+                        case 0x40 -> {
+                            charge(20);
+                            push(new BigInteger(1, Hash.sha3(pop().toByteArray())));
+                        }
+                        case 0x41 -> env(address(call.block().coinbase()));
+                        case 0x42 -> env(BigInteger.valueOf(call.block().timestamp()));
+                        case 0x43 -> env(BigInteger.valueOf(call.block().number()));
+                        case 0x44 -> env(new BigInteger(1, Hash.sha3(Numeric.toBytesPadded(
+                                BigInteger.valueOf(call.block().number()), 32))));
+                        case 0x45 -> env(BigInteger.valueOf(call.block().gasLimit()));
+                        case 0x46 -> env(BigInteger.valueOf(call.block().chainId()));
+                        case 0x47 -> {
+                            charge(5);
+                            push(host.balance(call.address()));
+                        }
+                        case 0x48 -> env(call.block().baseFee());
+                        case 0x50 -> {
+                            charge(2);
+                            pop();
+                        }
+                        case 0x51 -> {
+                            charge(3);
+                            long offset = offset(pop());
+                            push(new BigInteger(1, read(offset, 32)));
+                        }
+                        case 0x52 -> {
+                            charge(3);
+                            long offset = offset(pop());
+                            write(offset, Numeric.toBytesPadded(pop(), 32));
+                        }
+                        case 0x53 -> {
+                            charge(3);
+                            long offset = offset(pop());
+                            write(offset, new byte[]{pop().byteValue()});
+                        }
+                        case 0x54 -> {
+                            BigInteger key = pop();
+                            charge(warmSlots.add(key) ? 2100 : 100);
+                            push(host.load(key));
+                        }
+                        case 0x55 -> {
+                            BigInteger key = pop();
+                            BigInteger value = pop();
+                            long cost = warmSlots.add(key) ? 2100 : 0;
+                            BigInteger current = host.load(key);
+                            cost += current.equals(value) ? 100 : current.signum() == 0 ? 20000 : 2900;
+                            charge(cost);
+                            host.store(key, value);
+                        }
+                        case 0x56 -> {
+                            charge(8);
+                            pc = jump(pop());
+                            continue;
+                        }
+                        case 0x57 -> {
+                            charge(10);
+                            BigInteger destination = pop();
+                            if (pop().signum() != 0) {
+                                pc = jump(destination);
+                                continue;
+                            }
+                        }
+                        case 0x58 -> env(BigInteger.valueOf(pc));
+                        case 0x59 -> env(BigInteger.valueOf(memoryWords * 32));
+                        case 0x5a -> {
+                            charge(2);
+                            push(BigInteger.valueOf(gas));
+                        }
+                        case 0x5b -> charge(1);
+                        case 0x5e -> {
+                            long destination = offset(pop());
+                            long source = offset(pop());
+                            long size = offset(pop());
+                            charge(3 + 3 * words(size));
+                            write(destination, read(source, size));
+                        }
+                        case 0x5f -> env(BigInteger.ZERO);
+                        case 0xf3 -> {
+                            long offset = offset(pop());
+                            long size = offset(pop());
+                            return success(read(offset, size));
+                        }
+                        case 0xfd -> {
+                            long offset = offset(pop());
+                            long size = offset(pop());
+                            return new Result(false, read(offset, size), call.gas() - gas, List.of(),
+                                    "execution reverted");
+                        }
+                        default -> throw new ExecutionException(String.format("unsupported opcode 0x%02x", op));
+                    }
+                    pc++;
+                }
+                return success(new byte[0]);
+            } catch (ExecutionException e) {
+                return new Result(false, new byte[0], call.gas(), List.of(), e.getMessage());
+            }
+        }
+
+        private Result success(byte[] output) {
+            return new Result(true, output, call.gas() - gas, logs, null);
+        }
+
+        private void charge(long cost) {
+            gas -= cost;
+            if (gas < 0) {
+                throw new ExecutionException("out of gas");
+            }
+        }
+
+        private void push(BigInteger value) {
+            if (sp == MAX_STACK) {
+                throw new ExecutionException("stack overflow");
+            }
+            stack[sp++] = value;
+        }
+
+        private BigInteger pop() {
+            require(1);
+            return stack[--sp];
+        }
+
+        private void require(int items) {
+            if (sp < items) {
+                throw new ExecutionException("stack underflow");
+            }
+        }
+
+        private void env(BigInteger value) {
+            charge(2);
+            push(value);
+        }
+
+        private void binary(long cost, Binary operation) {
+            charge(cost);
+            BigInteger a = pop();
+            BigInteger b = pop();
+            push(operation.apply(a, b).mod(WORD_MODULUS));
+        }
+
+        private void ternary(long cost, Ternary operation) {
+            charge(cost);
+            BigInteger a = pop();
+            BigInteger b = pop();
+            BigInteger c = pop();
+            push(operation.apply(a, b, c).mod(WORD_MODULUS));
+        }
+
+        private void copy(byte[] source) {
+            long destination = offset(pop());
+            BigInteger sourceOffset = pop();
+            long size = offset(pop());
+            charge(3 + 3 * words(size));
+            write(destination, slice(source, sourceOffset, size));
+        }
+
+        private int jump(BigInteger destination) {
+            if (destination.bitLength() > 31 || !jumpDests.get(destination.intValue())) {
+                throw new ExecutionException("invalid jump destination");
+            }
+            return destination.intValue();
+        }
+
+        private byte[] read(long offset, long size) {
+            if (size == 0) {
+                return new byte[0];
+            }
+            expand(offset + size);
+            return Arrays.copyOfRange(memory, (int) offset, (int) (offset + size));
+        }
+
+        private void write(long offset, byte[] data) {
+            if (data.length == 0) {
+                return;
+            }
+            expand(offset + data.length);
+            System.arraycopy(data, 0, memory, (int) offset, data.length);
+        }
+
+        private void expand(long end) {
+            if (end > MAX_MEMORY) {
+                throw new ExecutionException("out of gas");
+            }
+            long words = words(end);
+            if (words > memoryWords) {
+                charge(memoryCost(words) - memoryCost(memoryWords));
+                memoryWords = words;
+                if (words * 32 > memory.length) {
+                    memory = Arrays.copyOf(memory, (int) Math.max(words * 32, memory.length * 2L));
+                }
+            }
+        }
+
+        private static long memoryCost(long words) {
+            return 3 * words + words * words / 512;
+        }
+
+        private static long offset(BigInteger value) {
+            if (value.bitLength() > 32) {
+                throw new ExecutionException("out of gas");
+            }
+            return value.longValue();
+        }
+
+        private static BitSet jumpDests(byte[] code) {
+            BitSet dests = new BitSet(code.length);
+            for (int pc = 0; pc < code.length; pc++) {
+                int op = code[pc] & 0xff;
+                if (op == 0x5b) {
+                    dests.set(pc);
+                } else if (op >= 0x60 && op <= 0x7f) {
+                    pc += op - 0x5f;
+                }
+            }
+            return dests;
+        }
+    }
+
+    private static byte[] slice(byte[] source, BigInteger offset, long size) {
+        byte[] result = new byte[(int) size];
+        if (offset.bitLength() <= 31 && offset.intValue() < source.length) {
+            int start = offset.intValue();
+            System.arraycopy(source, start, result, 0, (int) Math.min(size, source.length - start));
+        }
+        return result;
+    }
+
+    private static long words(long bytes) {
+        return (bytes + 31) / 32;
+    }
+
+    private static BigInteger signed(BigInteger value) {
+        return value.testBit(255) ? value.subtract(WORD_MODULUS) : value;
+    }
+
+    private static BigInteger bool(boolean value) {
+        return value ? BigInteger.ONE : BigInteger.ZERO;
+    }
+
+    private static BigInteger address(String address) {
+        return address == null ? BigInteger.ZERO : Numeric.toBigInt(address);
+    }
+
+    static String address(BigInteger word) {
+        return Numeric.toHexStringWithPrefixZeroPadded(word.mod(BigInteger.ONE.shiftLeft(160)), 40);
+    }
+
+    @FunctionalInterface
+    private interface Binary {
+        BigInteger apply(BigInteger a, BigInteger b);
+    }
+
+    @FunctionalInterface
+    private interface Ternary {
+        BigInteger apply(BigInteger a, BigInteger b, BigInteger c);
+    }
+
+    private static final class ExecutionException extends RuntimeException {
+        private ExecutionException(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.wetech.demo.web3j.loadgen;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies of one endpoint or transaction phase, in microseconds. Response times are measured
+ * from when a request was due under the arrival schedule rather than from when it was actually
+ * sent, so a stalled server or generator shows up as latency instead of as fewer samples
+ * (coordinated omission); service times are measured from the send for comparison.
+ */
+final class LatencyRecorder {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final Recorder responseTimes = new Recorder(SIGNIFICANT_DIGITS);
+    private final Recorder serviceTimes = new Recorder(SIGNIFICANT_DIGITS);
+    private final LongAdder errors = new LongAdder();
+    private Histogram responseInterval;
+    private Histogram serviceInterval;
+
+    /**
+     * Record a completed request
+     * @param dueAt when the request was due, from {@link System#nanoTime()}
+     * @param sentAt when it was sent
+     * @param doneAt when its response arrived
+     */
+    void record(long dueAt, long sentAt, long doneAt) {
+        responseTimes.recordValue(micros(doneAt - dueAt));
+        serviceTimes.recordValue(micros(doneAt - sentAt));
+    }
+
+    /**
+     * Record a duration that has no arrival schedule, such as a transaction phase
+     * @param nanos the duration
+     */
+    void record(long nanos) {
+        long micros = micros(nanos);
+        responseTimes.recordValue(micros);
+        serviceTimes.recordValue(micros);
+    }
+
+    void error() {
+        errors.increment();
+    }
+
+    /**
+     * Start a new measurement interval, discarding what was recorded so far
+     */
+    void reset() {
+        responseInterval = responseTimes.getIntervalHistogram(responseInterval);
+        serviceInterval = serviceTimes.getIntervalHistogram(serviceInterval);
+        errors.reset();
+    }
+
+    /**
+     * End the measurement interval
+     * @param scheduled whether the samples have due times, so service times differ from response times
+     * @return the summary and the encoded response time histogram
+     */
+    ObjectNode report(boolean scheduled) {
+        responseInterval = responseTimes.getIntervalHistogram(responseInterval);
+        serviceInterval = serviceTimes.getIntervalHistogram(serviceInterval);
+        ObjectNode node = JsonNodeFactory.instance.objectNode();
+        node.put("count", responseInterval.getTotalCount());
+        node.put("errors", errors.sumThenReset());
+        node.set(scheduled ? "responseTimeMillis" : "durationMillis", summary(responseInterval));
+        if (scheduled) {
+            node.set("serviceTimeMillis", summary(serviceInterval));
+        }
+        // HdrHistogram's compressed form, for merging runs or plotting full distributions
+        ByteBuffer buffer = ByteBuffer.allocate(responseInterval.getNeededByteBufferCapacity());
+        int length = responseInterval.encodeIntoCompressedByteBuffer(buffer);
+        node.put("histogram", Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length)));
+        return node;
+    }
+
+    /**
+     * Get a percentile of the last reported interval
+     * @param percentile the percentile, from 0 to 100
+     * @return the response time in milliseconds
+     */
+    double percentileMillis(double percentile) {
+        return responseInterval.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    long count() {
+        return responseInterval.getTotalCount();
+    }
+
+    private static ObjectNode summary(Histogram histogram) {
+        ObjectNode node = JsonNodeFactory.instance.objectNode();
+        node.put("mean", histogram.getTotalCount() == 0 ? 0 : histogram.getMean() / 1000.0);
+        for (double percentile : PERCENTILES) {
+            node.put("p" + (percentile == Math.rint(percentile) ? Long.toString((long) percentile)
+                    : Double.toString(percentile)), histogram.getValueAtPercentile(percentile) / 1000.0);
+        }
+        node.put("max", histogram.getMaxValue() / 1000.0);
+        return node;
+    }
+
+    private static long micros(long nanos) {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+}
@@ -0,0 +1,366 @@
+package com.wetech.demo.web3j.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.wetech.demo.web3j.Application;
+import com.wetech.demo.web3j.contracts.zhx.ZHX;
+import com.wetech.demo.web3j.devnet.DevnetNode;
+import com.wetech.demo.web3j.tx.PipelinedTransactionManager;
+import com.wetech.demo.web3j.tx.TransactionPhase;
+import com.wetech.demo.web3j.tx.TransactionPhaseListener;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.web3j.protocol.Web3j;
+import org.web3j.tx.gas.ContractGasProvider;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An open-loop load generator for the REST API. Requests are issued on a fixed arrival schedule
+ * (evenly spaced, or Poisson) whatever the server does, and their latency is measured from when
+ * they were due, so queueing in a saturated server is reported instead of hidden by the
+ * generator slowing down. Each rate in {@code rates} is run for {@code duration} seconds with
+ * the operation mix, and latencies per endpoint (and, in-process, per {@link TransactionPhase})
+ * are written as a JSON report to compare builds.
+ *
+ * <p>Without a {@code target} the application is started in-process against a
+ * {@link DevnetNode}, and the SimpleStorage and ZHX contracts are deployed on it; with one, a
+ * SimpleStorage contract is deployed through the API unless {@code contract} is given, and the
+ * ZHX operations need {@code token}.
+ *
+ * <p>Run with {@code ./gradlew loadTest}; {@code -Prates}, {@code -Pduration}, {@code -Pwarmup}
+ * (seconds), {@code -Pmix} (e.g. {@code get=60,set=20,balances=10,allowances=5,mint=5}),
+ * {@code -Parrival} ({@code uniform} or {@code poisson}), {@code -Ptarget}, {@code -Pcontract},
+ * {@code -Ptoken}, {@code -PblockInterval}, {@code -PnodeLatency} and {@code -PreportDir}
+ * override the defaults, and {@code web3j.*} properties configure the in-process application.
+ */
+public class LoadGenerator {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int HOLDERS = 16;
+    private static final long DRAIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    enum Operation {
+        GET, SET, BALANCES, ALLOWANCES, MINT;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final String contract;
+    private final String token;
+    private final Map<Operation, Integer> mix;
+    private final boolean poisson;
+    private final Random random;
+    private final Duration timeout;
+    private final Map<Operation, LatencyRecorder> endpoints = new EnumMap<>(Operation.class);
+    private final Map<TransactionPhase, LatencyRecorder> phases;
+    private final AtomicLong outstanding = new AtomicLong();
+    private final AtomicLong values = new AtomicLong();
+    private final List<String> holders = new ArrayList<>();
+    private final String holdersJson;
+
+    LoadGenerator(HttpClient client, String baseUrl, String contract, String token, Map<Operation, Integer> mix,
+                  boolean poisson, long seed, Duration timeout, Map<TransactionPhase, LatencyRecorder> phases) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.contract = contract;
+        this.token = token;
+        this.mix = mix;
+        this.poisson = poisson;
+        this.random = new Random(seed);
+        this.timeout = timeout;
+        this.phases = phases;
+        mix.keySet().forEach(operation -> endpoints.put(operation, new LatencyRecorder()));
+        for (int i = 1; i <= HOLDERS; i++) {
+            holders.add(String.format("0x%040x", 0x1000 + i));
+        }
+        this.holdersJson = json(holders);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String target = System.getProperty("target", "");
+        long[] rates = parseRates(System.getProperty("rates", "1000,5000,10000"));
+        long duration = Long.getLong("duration", 30);
+        long warmup = Long.getLong("warmup", 10);
+        Map<Operation, Integer> mix = parseMix(System.getProperty("mix", "get=60,set=20,balances=10,allowances=5,mint=5"));
+        boolean poisson = "poisson".equalsIgnoreCase(System.getProperty("arrival", "uniform"));
+        long seed = Long.getLong("seed", 1);
+        Path reportDir = Path.of(System.getProperty("reportDir", "build/reports/loadgen"));
+        Duration timeout = Duration.ofMillis(Long.getLong("timeoutMillis", 30_000));
+
+        ExecutorService io = Executors.newVirtualThreadPerTaskExecutor();
+        HttpClient client = HttpClient.newBuilder().executor(io).version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout).build();
+        DevnetNode node = null;
+        ConfigurableApplicationContext context = null;
+        try {
+            String baseUrl = target;
+            String contract = System.getProperty("contract", "");
+            String token = System.getProperty("token", "");
+            Map<TransactionPhase, LatencyRecorder> phases = new EnumMap<>(TransactionPhase.class);
+            if (target.isBlank()) {
+                node = new DevnetNode(0, Long.getLong("blockInterval", 1000), seed);
+                long nodeLatency = Long.getLong("nodeLatency", 0);
+                node.setLatency(nodeLatency, nodeLatency / 2);
+                context = startApplication(node, phases);
+                baseUrl = "http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port");
+                token = ZHX.deploy(context.getBean(Web3j.class), context.getBean(PipelinedTransactionManager.class),
+                        context.getBean(ContractGasProvider.class)).send().getContractAddress();
+            }
+            if (contract.isBlank()) {
+                contract = deploy(client, baseUrl, timeout);
+            }
+            if (token.isBlank()) {
+                System.out.println("No ZHX token given, leaving ZHX operations out of the mix");
+                mix.keySet().removeIf(operation -> operation != Operation.GET && operation != Operation.SET);
+            }
+            LoadGenerator generator = new LoadGenerator(client, baseUrl, contract, token, mix, poisson, seed,
+                    timeout, phases);
+            ObjectNode report = MAPPER.createObjectNode();
+            report.put("startedAt", Instant.now().toString());
+            report.put("target", target.isBlank() ? "in-process devnet" : target);
+            report.put("arrival", poisson ? "poisson" : "uniform");
+            report.put("durationSeconds", duration);
+            report.put("warmupSeconds", warmup);
+            ObjectNode mixNode = report.putObject("mix");
+            mix.forEach((operation, weight) -> mixNode.put(operation.tag(), weight));
+            ArrayNode steps = report.putArray("steps");
+            System.out.printf("%-10s %8s %10s %8s %10s %10s %10s %10s%n",
+                    "endpoint", "rate", "achieved", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+            for (int i = 0; i < rates.length; i++) {
+                steps.add(generator.step(rates[i], i == 0 ? warmup : 0, duration));
+            }
+            Files.createDirectories(reportDir);
+            Path file = reportDir.resolve("loadgen-"
+                    + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+            MAPPER.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), report);
+            System.out.println("Report written to " + file.toAbsolutePath());
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+            if (node != null) {
+                node.close();
+            }
+            io.shutdownNow();
+        }
+    }
+
+    /**
+     * Run one rate step, with an optional warm-up at the same rate whose samples are discarded
+     * @param rate the target requests per second
+     * @param warmupSeconds the warm-up time
+     * @param durationSeconds the measured time
+     * @return the step's report
+     */
+    ObjectNode step(long rate, long warmupSeconds, long durationSeconds) throws InterruptedException {
+        if (warmupSeconds > 0) {
+            run(rate, TimeUnit.SECONDS.toNanos(warmupSeconds));
+        }
+        endpoints.values().forEach(LatencyRecorder::reset);
+        phases.values().forEach(LatencyRecorder::reset);
+        long start = System.nanoTime();
+        Run run = run(rate, TimeUnit.SECONDS.toNanos(durationSeconds));
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        ObjectNode step = MAPPER.createObjectNode();
+        step.put("rate", rate);
+        step.put("sent", run.sent);
+        step.put("unfinished", run.unfinished);
+        // if the generator itself fell behind the schedule, the server was not offered the full rate
+        step.put("maxSendLagMillis", run.maxLagNanos / 1e6);
+        ObjectNode endpointNodes = step.putObject("endpoints");
+        long completed = 0;
+        for (Map.Entry<Operation, LatencyRecorder> entry : endpoints.entrySet()) {
+            LatencyRecorder recorder = entry.getValue();
+            ObjectNode node = recorder.report(true);
+            endpointNodes.set(entry.getKey().tag(), node);
+            completed += recorder.count();
+            System.out.printf("%-10s %8d %10.0f %8d %10.1f %10.1f %10.1f %10.1f%n", entry.getKey().tag(), rate,
+                    recorder.count() / seconds, node.get("errors").asLong(), recorder.percentileMillis(50),
+                    recorder.percentileMillis(99), recorder.percentileMillis(99.9), recorder.percentileMillis(100));
+        }
+        step.put("completed", completed);
+        step.put("achievedRate", completed / seconds);
+        if (!phases.isEmpty()) {
+            ObjectNode phaseNodes = step.putObject("phases");
+            for (Map.Entry<TransactionPhase, LatencyRecorder> entry : phases.entrySet()) {
+                LatencyRecorder recorder = entry.getValue();
+                phaseNodes.set(entry.getKey().tag(), recorder.report(false));
+                System.out.printf("%-10s %8s %10d %8s %10.1f %10.1f %10.1f %10.1f%n", entry.getKey().tag(), "",
+                        recorder.count(), "", recorder.percentileMillis(50), recorder.percentileMillis(99),
+                        recorder.percentileMillis(99.9), recorder.percentileMillis(100));
+            }
+        }
+        return step;
+    }
+
+    private Run run(long rate, long durationNanos) throws InterruptedException {
+        List<Operation> operations = new ArrayList<>();
+        mix.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                operations.add(operation);
+            }
+        });
+        double meanIntervalNanos = 1e9 / rate;
+        long start = System.nanoTime();
+        long end = start + durationNanos;
+        double due = start;
+        long sent = 0;
+        long maxLag = 0;
+        while (due < end) {
+            long dueAt = (long) due;
+            long now = System.nanoTime();
+            if (dueAt > now) {
+                LockSupport.parkNanos(dueAt - now);
+            } else {
+                maxLag = Math.max(maxLag, now - dueAt);
+            }
+            send(operations.get(random.nextInt(operations.size())), dueAt);
+            sent++;
+            due += poisson ? -Math.log(1 - random.nextDouble()) * meanIntervalNanos : meanIntervalNanos;
+        }
+        long drainDeadline = System.nanoTime() + DRAIN_TIMEOUT_NANOS;
+        while (outstanding.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        return new Run(sent, outstanding.get(), maxLag);
+    }
+
+    private void send(Operation operation, long dueAt) {
+        HttpRequest request = request(operation);
+        LatencyRecorder recorder = endpoints.get(operation);
+        outstanding.incrementAndGet();
+        long sentAt = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            long doneAt = System.nanoTime();
+            if (error == null && response.statusCode() < 400) {
+                recorder.record(dueAt, sentAt, doneAt);
+            } else {
+                recorder.error();
+            }
+            outstanding.decrementAndGet();
+        });
+    }
+
+    private HttpRequest request(Operation operation) {
+        String holder = holders.get((int) (values.get() % HOLDERS));
+        return switch (operation) {
+            case GET -> get("/api/storage/" + contract + "/value");
+            case SET -> post("/api/storage/" + contract + "/value?value=" + values.incrementAndGet(),
+                    HttpRequest.BodyPublishers.noBody(), "application/x-www-form-urlencoded");
+            case BALANCES -> post("/api/zhx/" + token + "/balances",
+                    HttpRequest.BodyPublishers.ofString(holdersJson), "application/json");
+            case ALLOWANCES -> post("/api/zhx/" + token + "/allowances",
+                    HttpRequest.BodyPublishers.ofString(json(List.of(Map.of("owner", holder, "spender", holders.get(0))))),
+                    "application/json");
+            case MINT -> post("/api/zhx/" + token + "/jobs?operation=mint",
+                    HttpRequest.BodyPublishers.ofString(holder + "," + (values.incrementAndGet() % 1000 + 1) + "\n"),
+                    "text/csv");
+        };
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(timeout).GET().build();
+    }
+
+    private HttpRequest post(String path, HttpRequest.BodyPublisher body, String contentType) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(timeout)
+                .header("Content-Type", contentType).POST(body).build();
+    }
+
+    private static ConfigurableApplicationContext startApplication(DevnetNode node,
+                                                                   Map<TransactionPhase, LatencyRecorder> phases)
+            throws IOException {
+        for (TransactionPhase phase : TransactionPhase.values()) {
+            phases.put(phase, new LatencyRecorder());
+        }
+        TransactionPhaseListener listener = (phase, nanos) -> phases.get(phase).record(nanos);
+        Path data = Files.createTempDirectory("loadgen");
+        Map<String, String> settings = new LinkedHashMap<>();
+        settings.put("server.port", "0");
+        settings.put("web3j.client-address", node.getUrl());
+        settings.put("web3j.chain-id", Long.toString(DevnetNode.CHAIN_ID));
+        settings.put("web3j.head.poll-interval", "100");
+        // the devnet cannot run Multicall3, so view calls are sent one by one
+        settings.put("web3j.multicall.address", "");
+        settings.put("web3j.outbox.file", data.resolve("outbox.jsonl").toString());
+        settings.put("web3j.jobs.dir", data.resolve("jobs").toString());
+        settings.put("web3j.jobs.rate-limit", "100000");
+        settings.put("logging.level.root", "WARN");
+        settings.put("logging.level.com.wetech.demo.web3j", "WARN");
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith("web3j."))
+                .forEach(name -> settings.put(name, System.getProperty(name)));
+        // as arguments, so they take precedence over application.properties
+        return new SpringApplicationBuilder(Application.class)
+                .initializers(context -> context.getBeanFactory().registerSingleton("loadGeneratorPhases", listener))
+                .run(settings.entrySet().stream().map(e -> "--" + e.getKey() + "=" + e.getValue())
+                        .toArray(String[]::new));
+    }
+
+    private static String deploy(HttpClient client, String baseUrl, Duration timeout) throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/storage/deploy"))
+                .timeout(timeout).POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 400) {
+            throw new IOException("Deploying SimpleStorage failed with HTTP " + response.statusCode());
+        }
+        return MAPPER.readTree(response.body()).get("contractAddress").asText();
+    }
+
+    private static String json(Object value) {
+        try {
+            return MAPPER.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long[] parseRates(String rates) {
+        return Arrays.stream(rates.split(",")).map(String::trim).mapToLong(Long::parseLong).toArray();
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)), weight);
+            }
+        }
+        return weights;
+    }
+
+    private record Run(long sent, long unfinished, long maxLagNanos) {
+    }
+}
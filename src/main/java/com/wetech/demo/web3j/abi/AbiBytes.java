@@ -0,0 +1,102 @@
+package com.wetech.demo.web3j.abi;
+
+import org.web3j.crypto.WalletUtils;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * Low-level helpers for writing and reading 32-byte ABI words directly on byte arrays,
+ * for hot paths that should not build web3j {@code Type} objects per value.
+ */
+public final class AbiBytes {
+
+    public static final int WORD = 32;
+    public static final int ADDRESS_LENGTH = 20;
+
+    private AbiBytes() {
+    }
+
+    /**
+     * Parse a hex address into its 20 raw bytes
+     * @param address the {@code 0x}-prefixed address
+     * @return the address bytes
+     * @throws IllegalArgumentException if the address is not valid
+     */
+    public static byte[] address(String address) {
+        if (!WalletUtils.isValidAddress(address)) {
+            throw new IllegalArgumentException("Invalid address: " + address);
+        }
+        return Numeric.hexStringToByteArray(address);
+    }
+
+    /**
+     * Round a byte length up to a whole number of ABI words
+     * @param length the length in bytes
+     * @return the padded length
+     */
+    public static int padded(int length) {
+        return (length + WORD - 1) / WORD * WORD;
+    }
+
+    /**
+     * Write an address as a left-padded ABI word
+     * @param buffer the target buffer
+     * @param address the 20 address bytes
+     */
+    public static void putAddress(ByteBuffer buffer, byte[] address) {
+        buffer.position(buffer.position() + WORD - ADDRESS_LENGTH);
+        buffer.put(address);
+    }
+
+    /**
+     * Write a non-negative integer as an ABI word
+     * @param buffer the target buffer
+     * @param value the value
+     */
+    public static void putUint(ByteBuffer buffer, long value) {
+        buffer.position(buffer.position() + WORD - Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    /**
+     * Write an unsigned 256-bit integer as an ABI word
+     * @param buffer the target buffer
+     * @param value the value, between 0 and 2^256-1
+     */
+    public static void putUint256(ByteBuffer buffer, BigInteger value) {
+        if (value.signum() < 0 || value.bitLength() > 256) {
+            throw new IllegalArgumentException("Value out of uint256 range: " + value);
+        }
+        byte[] bytes = value.toByteArray();
+        int length = Math.min(bytes.length, WORD);
+        buffer.position(buffer.position() + WORD - length);
+        buffer.put(bytes, bytes.length - length, length);
+    }
+
+    /**
+     * Read an ABI word holding a small integer such as an offset or length
+     * @param data the encoded data
+     * @param offset the start of the word
+     * @return the integer value
+     */
+    public static int readInt(byte[] data, int offset) {
+        return ((data[offset + 28] & 0xff) << 24)
+                | ((data[offset + 29] & 0xff) << 16)
+                | ((data[offset + 30] & 0xff) << 8)
+                | (data[offset + 31] & 0xff);
+    }
+
+    /**
+     * Read an ABI word as an unsigned 256-bit integer
+     * @param data the encoded data
+     * @param offset the start of the word
+     * @return the integer value
+     */
+    public static BigInteger readUint256(byte[] data, int offset) {
+        byte[] word = new byte[WORD];
+        System.arraycopy(data, offset, word, 0, WORD);
+        return new BigInteger(1, word);
+    }
+}
@@ -0,0 +1,444 @@
+package com.wetech.demo.web3j.abi;
+
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hand-specialized ABI codec for the SimpleStorage and ZHX functions and events. Calls are
+ * encoded straight into a reusable buffer, and return data and logs are decoded from their
+ * hex strings without {@code Function}, {@code Type} or {@code TypeReference} objects.
+ * Apart from the hex string handed to web3j and the {@link BigInteger}s returned to callers,
+ * nothing is allocated per call once the codec exists.
+ *
+ * <p>An instance is not thread-safe; use one per thread, e.g. through {@link #local()}.
+ */
+public final class ContractCodec {
+
+    public static final int SELECTOR_LENGTH = 4;
+    public static final int LIMBS = 4;
+
+    private static final int MAX_LENGTH = SELECTOR_LENGTH + 3 * AbiBytes.WORD;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final ThreadLocal<ContractCodec> LOCAL = ThreadLocal.withInitial(ContractCodec::new);
+
+    private static final int GET = selector(ContractSignatures.GET);
+    private static final int SET = selector(ContractSignatures.SET);
+    private static final int BALANCE_OF = selector(ContractSignatures.BALANCE_OF);
+    private static final int ALLOWANCE = selector(ContractSignatures.ALLOWANCE);
+    private static final int TRANSFER = selector(ContractSignatures.TRANSFER);
+    private static final int TRANSFER_FROM = selector(ContractSignatures.TRANSFER_FROM);
+    private static final int APPROVE = selector(ContractSignatures.APPROVE);
+    private static final int MINT = selector(ContractSignatures.MINT);
+    private static final int BURN = selector(ContractSignatures.BURN);
+
+    private final byte[] buffer = new byte[MAX_LENGTH];
+    private final char[] hex = new char[2 + 2 * MAX_LENGTH];
+    private int length;
+
+    /**
+     * Get the codec of the current thread
+     * @return a codec reused by every call on this thread
+     */
+    public static ContractCodec local() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Encode {@code get()}
+     * @return this codec, holding the calldata
+     */
+    public ContractCodec get() {
+        start(GET);
+        return this;
+    }
+
+    /**
+     * Encode {@code set(uint256)}
+     * @param value the value to store
+     * @return this codec, holding the calldata
+     */
+    public ContractCodec set(BigInteger value) {
+        start(SET);
+        putUint256(value);
+        return this;
+    }
+
+    /**
+     * Encode {@code balanceOf(address)}
+     * @param holder the holder address
+     * @return this codec, holding the calldata
+     */
+    public ContractCodec balanceOf(CharSequence holder) {
+        start(BALANCE_OF);
+        putAddress(holder);
+        return this;
+    }
+
+    /**
+     * Encode {@code allowance(address,address)}
+     * @param owner the owner address
+     * @param spender the spender address
+     * @return this codec, holding the calldata
+     */
+    public ContractCodec allowance(CharSequence owner, CharSequence spender) {
+        start(ALLOWANCE);
+        putAddress(owner);
+        putAddress(spender);
+        return this;
+    }
+
+    /**
+     * Encode {@code transfer(address,uint256)}
+     * @param to the recipient address
+     * @param amount the amount to transfer
+     * @return this codec, holding the calldata
+     */
+    public ContractCodec transfer(CharSequence to, BigInteger amount) {
+        start(TRANSFER);
+        putAddress(to);
+        putUint256(amount);
+        return this;
+    }
+
+    /**
+     * Encode {@code transferFrom(address,address,uint256)}
+     * @param from the owner address
+     * @param to the recipient address
+     * @param amount the amount to transfer
+     * @return this codec, holding the calldata
+     */
+    public ContractCodec transferFrom(CharSequence from, CharSequence to, BigInteger amount) {
+        start(TRANSFER_FROM);
+        putAddress(from);
+        putAddress(to);
+        putUint256(amount);
+        return this;
+    }
+
+    /**
+     * Encode {@code approve(address,uint256)}
+     * @param spender the spender address
+     * @param amount the allowance
+     * @return this codec, holding the calldata
+     */
+    public ContractCodec approve(CharSequence spender, BigInteger amount) {
+        start(APPROVE);
+        putAddress(spender);
+        putUint256(amount);
+        return this;
+    }
+
+    /**
+     * Encode {@code mint(address,uint256)}
+     * @param to the recipient address
+     * @param amount the amount to mint
+     * @return this codec, holding the calldata
+     */
+    public ContractCodec mint(CharSequence to, BigInteger amount) {
+        start(MINT);
+        putAddress(to);
+        putUint256(amount);
+        return this;
+    }
+
+    /**
+     * Encode {@code burn(uint256)}
+     * @param amount the amount to burn
+     * @return this codec, holding the calldata
+     */
+    public ContractCodec burn(BigInteger amount) {
+        start(BURN);
+        putUint256(amount);
+        return this;
+    }
+
+    /**
+     * Get the buffer holding the last encoded call; only the first {@link #length()} bytes are valid
+     * and they are overwritten by the next call
+     * @return the internal buffer
+     */
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * Get the length of the last encoded call
+     * @return the length in bytes
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Copy the last encoded call
+     * @return the calldata bytes
+     */
+    public byte[] toBytes() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Get the last encoded call as hex, as web3j expects it in transactions and calls
+     * @return the {@code 0x}-prefixed calldata
+     */
+    public String toHex() {
+        hex[0] = '0';
+        hex[1] = 'x';
+        for (int i = 0; i < length; i++) {
+            hex[2 + 2 * i] = HEX[(buffer[i] >> 4) & 0xf];
+            hex[3 + 2 * i] = HEX[buffer[i] & 0xf];
+        }
+        return new String(hex, 0, 2 + 2 * length);
+    }
+
+    /**
+     * Decode a {@code uint256} return value such as that of {@code get}, {@code balanceOf} or
+     * {@code allowance}
+     * @param data the {@code 0x}-prefixed return data
+     * @return the value
+     */
+    public static BigInteger decodeUint256(CharSequence data) {
+        int start = wordStart(data, 0);
+        long high = 0;
+        for (int i = start; i < start + 48; i++) {
+            high |= nibble(data.charAt(i));
+        }
+        long low = parseLong(data, start + 48);
+        if (high == 0 && low >= 0) {
+            return BigInteger.valueOf(low);
+        }
+        byte[] bytes = new byte[AbiBytes.WORD];
+        for (int i = 0; i < AbiBytes.WORD; i++) {
+            bytes[i] = (byte) (nibble(data.charAt(start + 2 * i)) << 4 | nibble(data.charAt(start + 2 * i + 1)));
+        }
+        return new BigInteger(1, bytes);
+    }
+
+    /**
+     * Decode a {@code uint256} word into limbs without creating a {@link BigInteger}
+     * @param data the {@code 0x}-prefixed hex data
+     * @param word the index of the word
+     * @param limbs the four limbs to fill, most significant first
+     */
+    public static void decodeUint256(CharSequence data, int word, long[] limbs) {
+        int start = wordStart(data, word);
+        for (int i = 0; i < LIMBS; i++) {
+            limbs[i] = parseLong(data, start + 16 * i);
+        }
+    }
+
+    /**
+     * Decode a {@code bool} return value such as that of {@code transfer} or {@code approve}
+     * @param data the {@code 0x}-prefixed return data
+     * @return the value
+     */
+    public static boolean decodeBool(CharSequence data) {
+        int start = wordStart(data, 0);
+        return nibble(data.charAt(start + 63)) != 0;
+    }
+
+    /**
+     * Decode a SimpleStorage or ZHX log into a reusable holder
+     * @param log the log
+     * @param event the holder to fill
+     * @return {@code false} if the log is not a DataChanged, Transfer or Approval
+     */
+    public static boolean decodeEvent(Log log, Event event) {
+        List<String> topics = log.getTopics();
+        if (topics == null || topics.isEmpty()) {
+            return false;
+        }
+        String topic0 = topics.get(0);
+        if (topics.size() == 3 && equalsHex(topic0, ContractSignatures.TRANSFER_TOPIC)) {
+            event.kind = Event.Kind.TRANSFER;
+        } else if (topics.size() == 3 && equalsHex(topic0, ContractSignatures.APPROVAL_TOPIC)) {
+            event.kind = Event.Kind.APPROVAL;
+        } else if (topics.size() == 1 && equalsHex(topic0, ContractSignatures.DATA_CHANGED_TOPIC)) {
+            event.kind = Event.Kind.DATA_CHANGED;
+        } else {
+            return false;
+        }
+        parseAddress(log.getAddress(), event.contract, 0);
+        if (event.kind == Event.Kind.DATA_CHANGED) {
+            Arrays.fill(event.from, (byte) 0);
+            Arrays.fill(event.to, (byte) 0);
+        } else {
+            topicAddress(topics.get(1), event.from);
+            topicAddress(topics.get(2), event.to);
+        }
+        decodeUint256(log.getData(), 0, event.value);
+        return true;
+    }
+
+    private void start(int selector) {
+        buffer[0] = (byte) (selector >>> 24);
+        buffer[1] = (byte) (selector >>> 16);
+        buffer[2] = (byte) (selector >>> 8);
+        buffer[3] = (byte) selector;
+        length = SELECTOR_LENGTH;
+    }
+
+    private void putAddress(CharSequence address) {
+        int padding = AbiBytes.WORD - AbiBytes.ADDRESS_LENGTH;
+        Arrays.fill(buffer, length, length + padding, (byte) 0);
+        parseAddress(address, buffer, length + padding);
+        length += AbiBytes.WORD;
+    }
+
+    private void putUint256(BigInteger value) {
+        if (value.signum() < 0 || value.bitLength() > 256) {
+            throw new IllegalArgumentException("Value out of uint256 range: " + value);
+        }
+        int end = length + AbiBytes.WORD;
+        Arrays.fill(buffer, length, end - Long.BYTES, (byte) 0);
+        // longValue keeps the low 64 bits; the rest is read bit by bit to avoid toByteArray
+        long low = value.longValue();
+        for (int i = 1; i <= Long.BYTES; i++) {
+            buffer[end - i] = (byte) low;
+            low >>>= 8;
+        }
+        for (int bit = Long.SIZE; bit < value.bitLength(); bit++) {
+            if (value.testBit(bit)) {
+                buffer[end - 1 - bit / 8] |= (byte) (1 << (bit % 8));
+            }
+        }
+        length = end;
+    }
+
+    private static void parseAddress(CharSequence address, byte[] target, int offset) {
+        int start = hasPrefix(address) ? 2 : 0;
+        if (address.length() - start != 2 * AbiBytes.ADDRESS_LENGTH) {
+            throw new IllegalArgumentException("Invalid address: " + address);
+        }
+        for (int i = 0; i < AbiBytes.ADDRESS_LENGTH; i++) {
+            target[offset + i] = (byte) (nibble(address.charAt(start + 2 * i)) << 4
+                    | nibble(address.charAt(start + 2 * i + 1)));
+        }
+    }
+
+    private static void topicAddress(String topic, byte[] target) {
+        // an indexed address is left-padded to 32 bytes: keep the last 20
+        int start = topic.length() - 2 * AbiBytes.ADDRESS_LENGTH;
+        for (int i = 0; i < AbiBytes.ADDRESS_LENGTH; i++) {
+            target[i] = (byte) (nibble(topic.charAt(start + 2 * i)) << 4 | nibble(topic.charAt(start + 2 * i + 1)));
+        }
+    }
+
+    private static int wordStart(CharSequence data, int word) {
+        int start = (hasPrefix(data) ? 2 : 0) + 2 * AbiBytes.WORD * word;
+        if (data.length() < start + 2 * AbiBytes.WORD) {
+            throw new IllegalArgumentException("ABI data too short for word " + word + ": " + data);
+        }
+        return start;
+    }
+
+    private static long parseLong(CharSequence data, int start) {
+        long value = 0;
+        for (int i = start; i < start + 16; i++) {
+            value = value << 4 | nibble(data.charAt(i));
+        }
+        return value;
+    }
+
+    private static boolean hasPrefix(CharSequence hex) {
+        return hex.length() >= 2 && hex.charAt(0) == '0' && (hex.charAt(1) == 'x' || hex.charAt(1) == 'X');
+    }
+
+    private static boolean equalsHex(String hex, String expected) {
+        if (hex.length() != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < hex.length(); i++) {
+            if (Character.toLowerCase(hex.charAt(i)) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int nibble(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        throw new IllegalArgumentException("Invalid hex character: " + c);
+    }
+
+    private static int selector(String selector) {
+        return Integer.parseUnsignedInt(selector.substring(2), 16);
+    }
+
+    /**
+     * A decoded DataChanged, Transfer or Approval log, overwritten by each
+     * {@link #decodeEvent} call. For Approval, {@code from} is the owner and {@code to} the
+     * spender; for DataChanged both are zero and {@code value} is the new value.
+     */
+    public static final class Event {
+
+        public enum Kind {
+            DATA_CHANGED, TRANSFER, APPROVAL
+        }
+
+        private final byte[] contract = new byte[AbiBytes.ADDRESS_LENGTH];
+        private final byte[] from = new byte[AbiBytes.ADDRESS_LENGTH];
+        private final byte[] to = new byte[AbiBytes.ADDRESS_LENGTH];
+        private final long[] value = new long[LIMBS];
+        private Kind kind;
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * Get the emitting contract; the array is reused by the next decode
+         * @return the 20 address bytes
+         */
+        public byte[] getContract() {
+            return contract;
+        }
+
+        /**
+         * Get the sender or owner; the array is reused by the next decode
+         * @return the 20 address bytes
+         */
+        public byte[] getFrom() {
+            return from;
+        }
+
+        /**
+         * Get the recipient or spender; the array is reused by the next decode
+         * @return the 20 address bytes
+         */
+        public byte[] getTo() {
+            return to;
+        }
+
+        /**
+         * Get the value; the array is reused by the next decode
+         * @return the four limbs, most significant first
+         */
+        public long[] getValueLimbs() {
+            return value;
+        }
+
+        /**
+         * Get the value as a {@link BigInteger}, which allocates
+         * @return the value
+         */
+        public BigInteger getValue() {
+            byte[] bytes = new byte[AbiBytes.WORD];
+            for (int i = 0; i < AbiBytes.WORD; i++) {
+                bytes[i] = (byte) (value[i / Long.BYTES] >>> (8 * (Long.BYTES - 1 - i % Long.BYTES)));
+            }
+            return new BigInteger(1, bytes);
+        }
+    }
+}
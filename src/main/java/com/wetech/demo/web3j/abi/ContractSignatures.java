@@ -0,0 +1,60 @@
+package com.wetech.demo.web3j.abi;
+
+import com.wetech.demo.web3j.contracts.simplestorage.SimpleStorage;
+import com.wetech.demo.web3j.contracts.zhx.ZHX;
+import org.web3j.abi.EventEncoder;
+import org.web3j.crypto.Hash;
+import org.web3j.utils.Numeric;
+
+import java.util.Locale;
+
+/**
+ * Function selectors and event topics of the SimpleStorage and ZHX contracts,
+ * as lower-case {@code 0x}-prefixed hex strings.
+ */
+public final class ContractSignatures {
+
+    public static final String GET = selector("get()");
+    public static final String SET = selector("set(uint256)");
+
+    public static final String NAME = selector("name()");
+    public static final String SYMBOL = selector("symbol()");
+    public static final String DECIMALS = selector("decimals()");
+    public static final String TOTAL_SUPPLY = selector("totalSupply()");
+    public static final String BALANCE_OF = selector("balanceOf(address)");
+    public static final String ALLOWANCE = selector("allowance(address,address)");
+    public static final String TRANSFER = selector("transfer(address,uint256)");
+    public static final String TRANSFER_FROM = selector("transferFrom(address,address,uint256)");
+    public static final String APPROVE = selector("approve(address,uint256)");
+    public static final String MINT = selector("mint(address,uint256)");
+    public static final String BURN = selector("burn(uint256)");
+
+    public static final String DATA_CHANGED_TOPIC = EventEncoder.encode(SimpleStorage.DATACHANGED_EVENT);
+    public static final String TRANSFER_TOPIC = EventEncoder.encode(ZHX.TRANSFER_EVENT);
+    public static final String APPROVAL_TOPIC = EventEncoder.encode(ZHX.APPROVAL_EVENT);
+
+    private ContractSignatures() {
+    }
+
+    /**
+     * Compute the 4-byte selector of a canonical function signature
+     * @param signature the signature, e.g. {@code transfer(address,uint256)}
+     * @return the selector as {@code 0x}-prefixed hex
+     */
+    public static String selector(String signature) {
+        return Hash.sha3String(signature).substring(0, 10);
+    }
+
+    /**
+     * Get the selector a call's input starts with, e.g. to tag metrics by function
+     * @param data the call input as hex, with or without {@code 0x}, or null
+     * @return the lower-case selector, or {@code none} if the input is shorter than a selector
+     */
+    public static String selectorOf(String data) {
+        String hex = data == null ? "" : Numeric.cleanHexPrefix(data);
+        if (hex.length() < 8) {
+            return "none";
+        }
+        return "0x" + hex.substring(0, 8).toLowerCase(Locale.ROOT);
+    }
+}
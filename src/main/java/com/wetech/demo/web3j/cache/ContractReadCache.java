@@ -0,0 +1,323 @@
+package com.wetech.demo.web3j.cache;
+
+import com.wetech.demo.web3j.chain.BlockListener;
+import com.wetech.demo.web3j.rpc.CallCoalescer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthCall;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.protocol.exceptions.ClientConnectionException;
+import org.web3j.tx.exceptions.ContractCallException;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static com.wetech.demo.web3j.abi.ContractSignatures.ALLOWANCE;
+import static com.wetech.demo.web3j.abi.ContractSignatures.APPROVAL_TOPIC;
+import static com.wetech.demo.web3j.abi.ContractSignatures.BALANCE_OF;
+import static com.wetech.demo.web3j.abi.ContractSignatures.DATA_CHANGED_TOPIC;
+import static com.wetech.demo.web3j.abi.ContractSignatures.DECIMALS;
+import static com.wetech.demo.web3j.abi.ContractSignatures.GET;
+import static com.wetech.demo.web3j.abi.ContractSignatures.NAME;
+import static com.wetech.demo.web3j.abi.ContractSignatures.SYMBOL;
+import static com.wetech.demo.web3j.abi.ContractSignatures.TOTAL_SUPPLY;
+import static com.wetech.demo.web3j.abi.ContractSignatures.TRANSFER_TOPIC;
+
+/**
+ * Caches the results of contract view calls until the chain says they may have changed.
+ * Results of calls whose inputs are covered by a contract event ({@code get} through
+ * {@code DataChanged}, {@code balanceOf}/{@code totalSupply}/{@code allowance} through
+ * {@code Transfer} and {@code Approval}) survive new blocks and are evicted only when a
+ * matching log appears; any other call result is dropped on every new block. Results of
+ * {@code name}, {@code symbol} and {@code decimals} never change and are pinned: they are kept
+ * in a separate LRU of the same size that no block or log ever clears.
+ *
+ * <p>Calls are made at the last block the cache has processed rather than at {@code latest},
+ * so a node lagging behind cannot hand back a result older than the events it is checked
+ * against. Each new range of blocks is checked to extend the last one seen; after a reorg
+ * everything is dropped.
+ */
+@Slf4j
+@Component
+public class ContractReadCache implements BlockListener {
+
+    private static final Set<String> EVENT_COVERED = Set.of(GET, BALANCE_OF, ALLOWANCE, TOTAL_SUPPLY);
+    private static final Set<String> IMMUTABLE = Set.of(NAME, SYMBOL, DECIMALS);
+    private static final String ZERO_TOPIC = "0x" + "0".repeat(64);
+
+    private static final int MAX_LOG_RANGE = 64;
+
+    private final Web3j web3j;
+    private final CallCoalescer coalescer;
+    private final Map<Key, String> entries;
+    private final Map<Key, String> pinned;
+    private final Counter hits;
+    private final Counter misses;
+    private long epoch;
+    private long head = -1;
+    private String headHash;
+
+    public ContractReadCache(Web3j web3j, CallCoalescer coalescer, MeterRegistry meterRegistry,
+                             @Value("${web3j.cache.max-size:10000}") int maxSize) {
+        this.web3j = web3j;
+        this.coalescer = coalescer;
+        this.entries = lru(maxSize);
+        this.pinned = lru(maxSize);
+        this.hits = Counter.builder("web3j.cache.requests").tag("result", "hit")
+                .description("Contract view calls answered from the read cache").register(meterRegistry);
+        this.misses = Counter.builder("web3j.cache.requests").tag("result", "miss")
+                .description("Contract view calls sent to the node").register(meterRegistry);
+        Gauge.builder("web3j.cache.size", this, ContractReadCache::size)
+                .description("Cached contract view call results").register(meterRegistry);
+    }
+
+    /**
+     * Execute a view call at the last block the cache has processed, answering from the cache
+     * when possible
+     * @param contractAddress the contract to call
+     * @param data the encoded function call
+     * @return the raw hex encoded return data
+     */
+    public CompletableFuture<String> call(String contractAddress, String data) {
+        Key key = new Key(contractAddress, data);
+        boolean immutable = IMMUTABLE.contains(key.selector());
+        String cached = immutable ? pin(key, null) : lookup(key);
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+        misses.increment();
+        Snapshot snapshot = snapshot();
+        if (snapshot.block() < 0) {
+            // no block processed yet to pin the call to, so the result is not kept
+            return coalescer.call(contractAddress, data, DefaultBlockParameterName.LATEST)
+                    .thenApply(ContractReadCache::value);
+        }
+        DefaultBlockParameter block = DefaultBlockParameter.valueOf(BigInteger.valueOf(snapshot.block()));
+        return coalescer.call(contractAddress, data, block, () ->
+                        // only the call actually sent stores its result, against the epoch it started in
+                        web3j.ethCall(Transaction.createEthCallTransaction(null, contractAddress, data), block)
+                                .sendAsync()
+                                .whenComplete((ethCall, error) -> {
+                                    if (error != null || ethCall.hasError() || ethCall.isReverted()) {
+                                        return;
+                                    }
+                                    if (immutable) {
+                                        pin(key, ethCall.getValue());
+                                    } else {
+                                        store(key, ethCall.getValue(), snapshot.epoch());
+                                    }
+                                }))
+                .thenCompose(ethCall -> ethCall.hasError()
+                        // e.g. a node that has not seen the block yet: answer at its head without caching
+                        ? coalescer.call(contractAddress, data, DefaultBlockParameterName.LATEST)
+                        : CompletableFuture.completedFuture(ethCall))
+                .thenApply(ContractReadCache::value);
+    }
+
+    /**
+     * Get the number of cached results, pinned ones included
+     * @return the cache size
+     */
+    public int size() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        synchronized (pinned) {
+            return size + pinned.size();
+        }
+    }
+
+    @Override
+    public void onBlocks(long fromBlock, long toBlock) {
+        List<String> addresses;
+        String parentHash;
+        synchronized (entries) {
+            if (entries.isEmpty()) {
+                advance(toBlock, null);
+                return;
+            }
+            addresses = entries.keySet().stream().map(Key::address).distinct().toList();
+            parentHash = headHash;
+        }
+        if (toBlock - fromBlock >= MAX_LOG_RANGE) {
+            invalidateAll(toBlock, null);
+            return;
+        }
+        List<Log> logs = new ArrayList<>();
+        String hash;
+        try {
+            EthBlock.Block first = header(fromBlock);
+            hash = (toBlock == fromBlock ? first : header(toBlock)).getHash();
+            if (parentHash == null || !parentHash.equalsIgnoreCase(first.getParentHash())) {
+                log.debug("Blocks {}-{} do not extend the cached head, dropping read cache", fromBlock, toBlock);
+                invalidateAll(toBlock, hash);
+                return;
+            }
+            EthFilter filter = new EthFilter(
+                    DefaultBlockParameter.valueOf(BigInteger.valueOf(fromBlock)),
+                    DefaultBlockParameter.valueOf(BigInteger.valueOf(toBlock)),
+                    addresses);
+            filter.addOptionalTopics(DATA_CHANGED_TOPIC, TRANSFER_TOPIC, APPROVAL_TOPIC);
+            EthLog ethLog = web3j.ethGetLogs(filter).send();
+            if (ethLog.hasError()) {
+                throw new IOException(ethLog.getError().getMessage());
+            }
+            for (EthLog.LogResult<?> result : ethLog.getLogs()) {
+                logs.add((Log) result.get());
+            }
+        } catch (IOException | ClientConnectionException e) {
+            log.warn("Failed to fetch logs for blocks {}-{}, dropping read cache: {}", fromBlock, toBlock,
+                    e.getMessage());
+            invalidateAll(toBlock, null);
+            return;
+        }
+        invalidate(logs, toBlock, hash);
+    }
+
+    private void invalidate(List<Log> logs, long block, String hash) {
+        Set<Key> changed = new HashSet<>();
+        Set<Key> spentAllowances = new HashSet<>();
+        for (Log log : logs) {
+            List<String> topics = log.getTopics();
+            String address = log.getAddress();
+            String topic0 = topics.get(0).toLowerCase(Locale.ROOT);
+            if (topic0.equals(DATA_CHANGED_TOPIC)) {
+                changed.add(new Key(address, GET));
+            } else if (topic0.equals(TRANSFER_TOPIC)) {
+                String from = topics.get(1).toLowerCase(Locale.ROOT);
+                String to = topics.get(2).toLowerCase(Locale.ROOT);
+                changed.add(new Key(address, BALANCE_OF + from.substring(2)));
+                changed.add(new Key(address, BALANCE_OF + to.substring(2)));
+                if (from.equals(ZERO_TOPIC) || to.equals(ZERO_TOPIC)) {
+                    changed.add(new Key(address, TOTAL_SUPPLY));
+                }
+                // transferFrom spends an allowance without emitting Approval
+                spentAllowances.add(new Key(address, ALLOWANCE + from.substring(2)));
+            } else if (topic0.equals(APPROVAL_TOPIC)) {
+                changed.add(new Key(address, ALLOWANCE + topics.get(1).substring(2) + topics.get(2).substring(2)));
+            }
+        }
+        synchronized (entries) {
+            advance(block, hash);
+            Iterator<Key> iterator = entries.keySet().iterator();
+            while (iterator.hasNext()) {
+                Key key = iterator.next();
+                if (!EVENT_COVERED.contains(key.selector())
+                        || changed.contains(key)
+                        || (key.selector().equals(ALLOWANCE) && spentAllowances.contains(key.owner()))) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private void invalidateAll(long block, String hash) {
+        synchronized (entries) {
+            advance(block, hash);
+            entries.clear();
+        }
+    }
+
+    private void advance(long block, String hash) {
+        epoch++;
+        head = block;
+        // unknown until a block range is checked, so whatever is cached before then is dropped
+        headHash = hash;
+    }
+
+    private EthBlock.Block header(long number) throws IOException {
+        EthBlock block = web3j.ethGetBlockByNumber(DefaultBlockParameter.valueOf(BigInteger.valueOf(number)), false)
+                .send();
+        if (block.hasError() || block.getBlock() == null) {
+            throw new IOException("Block " + number + " not found");
+        }
+        return block.getBlock();
+    }
+
+    private String lookup(Key key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    private String pin(Key key, String value) {
+        synchronized (pinned) {
+            return value == null ? pinned.get(key) : pinned.put(key, value);
+        }
+    }
+
+    private void store(Key key, String value, long startEpoch) {
+        synchronized (entries) {
+            // a block processed while the call was in flight may have made the result stale
+            if (epoch == startEpoch) {
+                entries.put(key, value);
+            }
+        }
+    }
+
+    private Snapshot snapshot() {
+        synchronized (entries) {
+            return new Snapshot(epoch, head);
+        }
+    }
+
+    private static Map<Key, String> lru(int maxSize) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    private static String value(EthCall ethCall) {
+        if (ethCall.hasError()) {
+            throw new ContractCallException(ethCall.getError().getMessage());
+        }
+        if (ethCall.isReverted()) {
+            throw new ContractCallException(ethCall.getRevertReason());
+        }
+        return ethCall.getValue();
+    }
+
+    private record Snapshot(long epoch, long block) {
+    }
+
+    private record Key(String address, String data) {
+
+        private Key {
+            address = address.toLowerCase(Locale.ROOT);
+            data = data.toLowerCase(Locale.ROOT);
+        }
+
+        private String selector() {
+            return data.length() >= 10 ? data.substring(0, 10) : data;
+        }
+
+        private Key owner() {
+            return new Key(address, data.substring(0, Math.min(data.length(), 10 + 64)));
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.wetech.demo.web3j.chain;
+
+/**
+ * Receives chain head advances from the {@link ChainHeadMonitor}.
+ */
+public interface BlockListener {
+
+    /**
+     * Called on the monitor thread whenever new blocks have been observed
+     * @param fromBlock the first block not seen before (inclusive)
+     * @param toBlock the new chain head (inclusive)
+     */
+    void onBlocks(long fromBlock, long toBlock);
+}
@@ -0,0 +1,109 @@
+package com.wetech.demo.web3j.chain;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.Web3j;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the chain head with a single poller and fans new blocks out to every
+ * {@link BlockListener} bean, so features that react to blocks share one RPC stream.
+ * While a {@link WebSocketSubscriber} pushes new heads, polling pauses; it resumes when
+ * the subscription drops or stays silent for {@code web3j.ws.head-timeout}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChainHeadMonitor {
+
+    private final Web3j web3j;
+    private final ObjectProvider<BlockListener> listeners;
+
+    @Value("${web3j.head.poll-interval:1000}")
+    private long pollInterval;
+
+    @Value("${web3j.ws.head-timeout:60000}")
+    private long headTimeout;
+
+    private volatile long head = -1;
+    private volatile boolean pushing;
+    private volatile long lastPush;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chain-head-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::poll, 0, pollInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Get the most recent block number observed
+     * @return the chain head, or -1 before the first successful poll
+     */
+    public long getHead() {
+        return head;
+    }
+
+    /**
+     * Advance the head from a pushed notification, on the monitor thread
+     * @param latest the new block number
+     */
+    void push(long latest) {
+        lastPush = System.currentTimeMillis();
+        scheduler.execute(() -> advanceTo(latest));
+    }
+
+    /**
+     * Pause or resume polling while heads are pushed
+     * @param pushing whether a head subscription is live
+     */
+    void setPushing(boolean pushing) {
+        this.lastPush = System.currentTimeMillis();
+        this.pushing = pushing;
+    }
+
+    private void poll() {
+        if (pushing && System.currentTimeMillis() - lastPush < headTimeout) {
+            return;
+        }
+        try {
+            advanceTo(web3j.ethBlockNumber().send().getBlockNumber().longValueExact());
+        } catch (Exception e) {
+            log.warn("Failed to poll chain head: {}", e.getMessage());
+        }
+    }
+
+    private void advanceTo(long latest) {
+        long previous = head;
+        if (latest <= previous) {
+            return;
+        }
+        head = latest;
+        long from = previous < 0 ? latest : previous + 1;
+        listeners.orderedStream().forEach(listener -> {
+            try {
+                listener.onBlocks(from, latest);
+            } catch (RuntimeException e) {
+                log.warn("Block listener {} failed for blocks {}-{}: {}",
+                        listener.getClass().getSimpleName(), from, latest, e.getMessage());
+            }
+        });
+    }
+}
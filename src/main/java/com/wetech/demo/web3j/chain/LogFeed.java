@@ -0,0 +1,205 @@
+package com.wetech.demo.web3j.chain;
+
+import com.wetech.demo.web3j.abi.ContractSignatures;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Feeds the live SimpleStorage and ZHX logs of {@code web3j.events.contracts} to every
+ * {@link LogListener} bean, so all consumers share one upstream stream. Logs are pushed by the
+ * {@link WebSocketSubscriber} when a WebSocket endpoint is configured; otherwise, or while
+ * it is disconnected, they are fetched with one {@code eth_getLogs} per new head.
+ *
+ * <p>Delivery is tracked by block and log index, so the backfill after a reconnect and logs
+ * pushed meanwhile are delivered once and in order. Only pushed logs can report a reorg.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LogFeed implements BlockListener {
+
+    private static final long MAX_BACKFILL_BLOCKS = 1000;
+
+    private final Web3j web3j;
+    private final ObjectProvider<LogListener> listeners;
+
+    @Getter
+    @Value("${web3j.events.contracts:${web3j.indexer.contracts:}}")
+    private List<String> contracts;
+
+    private ExecutorService executor;
+    private volatile boolean pushing;
+
+    // confined to the executor thread
+    private long lastBlock = -1;
+    private long lastLogIndex = -1;
+    private boolean backfilling;
+    private final List<Log> buffered = new ArrayList<>();
+
+    @PostConstruct
+    public void start() {
+        // listeners are resolved on delivery: they may depend on this feed, as the event broadcaster does
+        if (contracts.isEmpty()) {
+            return;
+        }
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "log-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Feeding live events of {} to log listeners", contracts);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Check whether logs are being fed
+     * @return true if there are contracts to watch
+     */
+    public boolean isEnabled() {
+        return executor != null;
+    }
+
+    @Override
+    public void onBlocks(long fromBlock, long toBlock) {
+        if (executor != null && !pushing) {
+            executor.execute(() -> pull(fromBlock, toBlock));
+        }
+    }
+
+    /**
+     * Hold back pushed logs until {@link #resumePush()} has fetched what was missed
+     */
+    void suspendForPush() {
+        pushing = true;
+        executor.execute(() -> backfilling = true);
+    }
+
+    /**
+     * Fetch the logs missed since the last delivery, then deliver the pushed logs held back meanwhile
+     */
+    void resumePush() {
+        executor.execute(() -> {
+            try {
+                long head = web3j.ethBlockNumber().send().getBlockNumber().longValueExact();
+                pull(head, head);
+            } catch (IOException e) {
+                log.warn("Failed to backfill logs after reconnecting: {}", e.getMessage());
+            }
+            backfilling = false;
+            deliver(buffered);
+            buffered.clear();
+        });
+    }
+
+    /**
+     * Deliver logs pushed by the subscription
+     * @param logs the logs
+     */
+    void push(List<Log> logs) {
+        executor.execute(() -> {
+            if (backfilling) {
+                buffered.addAll(logs);
+            } else {
+                deliver(logs);
+            }
+        });
+    }
+
+    /**
+     * Go back to fetching logs on every new head
+     */
+    void stopPush() {
+        pushing = false;
+        executor.execute(() -> {
+            backfilling = false;
+            deliver(buffered);
+            buffered.clear();
+        });
+    }
+
+    private void pull(long fromBlock, long toBlock) {
+        // the last delivered block is fetched again in case only part of it was pushed
+        long from = Math.max(lastBlock < 0 ? fromBlock : lastBlock, toBlock - MAX_BACKFILL_BLOCKS + 1);
+        if (from > toBlock) {
+            return;
+        }
+        try {
+            EthFilter filter = new EthFilter(DefaultBlockParameter.valueOf(BigInteger.valueOf(from)),
+                    DefaultBlockParameter.valueOf(BigInteger.valueOf(toBlock)), contracts);
+            filter.addOptionalTopics(ContractSignatures.DATA_CHANGED_TOPIC, ContractSignatures.TRANSFER_TOPIC,
+                    ContractSignatures.APPROVAL_TOPIC);
+            EthLog ethLog = web3j.ethGetLogs(filter).send();
+            if (ethLog.hasError()) {
+                throw new IOException(ethLog.getError().getMessage());
+            }
+            List<Log> logs = new ArrayList<>(ethLog.getLogs().size());
+            for (EthLog.LogResult<?> result : ethLog.getLogs()) {
+                logs.add((Log) result.get());
+            }
+            deliver(logs);
+            if (toBlock >= lastBlock) {
+                lastBlock = toBlock;
+                lastLogIndex = Long.MAX_VALUE;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to fetch logs for blocks {}-{}: {}", from, toBlock, e.getMessage());
+        }
+    }
+
+    private void deliver(List<Log> logs) {
+        List<Log> fresh = new ArrayList<>(logs.size());
+        for (Log entry : logs) {
+            if (entry.getBlockNumberRaw() == null || entry.getLogIndexRaw() == null) {
+                continue;
+            }
+            long block = entry.getBlockNumber().longValueExact();
+            long index = entry.getLogIndex().longValueExact();
+            if (entry.isRemoved()) {
+                // the replacement blocks may reuse the numbers already delivered
+                if (block <= lastBlock) {
+                    lastBlock = block - 1;
+                    lastLogIndex = Long.MAX_VALUE;
+                }
+                fresh.add(entry);
+            } else if (block > lastBlock || (block == lastBlock && index > lastLogIndex)) {
+                lastBlock = block;
+                lastLogIndex = index;
+                fresh.add(entry);
+            }
+        }
+        if (fresh.isEmpty()) {
+            return;
+        }
+        listeners.orderedStream().forEach(listener -> {
+            try {
+                listener.onLogs(fresh);
+            } catch (RuntimeException e) {
+                log.warn("Log listener {} failed: {}", listener.getClass().getSimpleName(), e.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,18 @@
+package com.wetech.demo.web3j.chain;
+
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.util.List;
+
+/**
+ * Receives live contract logs from the {@link LogFeed}.
+ */
+public interface LogListener {
+
+    /**
+     * Called on the feed thread with new logs in chain order. Logs are unconfirmed; after a
+     * reorg the orphaned ones are delivered again with {@link Log#isRemoved()} set.
+     * @param logs the logs
+     */
+    void onLogs(List<Log> logs);
+}
@@ -0,0 +1,139 @@
+package com.wetech.demo.web3j.chain;
+
+import com.wetech.demo.web3j.abi.ContractSignatures;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.methods.response.EthSubscribe;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.protocol.websocket.WebSocketService;
+import org.web3j.protocol.websocket.events.Notification;
+import org.web3j.utils.Numeric;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Subscribes to {@code newHeads} and contract {@code logs} over {@code web3j.ws-address} with
+ * {@code eth_subscribe}, pushing heads into the {@link ChainHeadMonitor} and logs into the
+ * {@link LogFeed} as the node announces them instead of once per poll. When the connection
+ * drops, both fall back to polling over HTTP and the subscriber reconnects with exponential
+ * backoff up to {@code web3j.ws.reconnect-max-millis}; logs missed meanwhile are backfilled
+ * with {@code eth_getLogs} before pushed ones are delivered again.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebSocketSubscriber {
+
+    private static final long INITIAL_RECONNECT_DELAY = 500;
+
+    private final ChainHeadMonitor monitor;
+    private final LogFeed logFeed;
+
+    @Value("${web3j.ws-address:}")
+    private String wsAddress;
+
+    @Value("${web3j.ws.reconnect-max-millis:30000}")
+    private long reconnectMaxMillis;
+
+    @Getter
+    private volatile boolean connected;
+    private ScheduledExecutorService scheduler;
+    private WebSocketService service;
+    private long connection;
+    private long reconnectDelay = INITIAL_RECONNECT_DELAY;
+
+    @PostConstruct
+    public void start() {
+        if (wsAddress.isBlank()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ws-subscriber");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.execute(this::connect);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            close();
+        }
+    }
+
+    private void connect() {
+        long attempt = ++connection;
+        try {
+            service = new WebSocketService(wsAddress, false);
+            service.connect();
+            Web3j ws = Web3j.build(service);
+            ws.newHeadsNotifications().subscribe(
+                    notification -> monitor.push(Numeric.decodeQuantity(
+                            notification.getParams().getResult().getNumber()).longValueExact()),
+                    error -> scheduler.execute(() -> disconnected(attempt, error)));
+            if (logFeed.isEnabled()) {
+                logFeed.suspendForPush();
+                Request<?, EthSubscribe> request = new Request<>("eth_subscribe", List.of("logs", Map.of(
+                        "address", logFeed.getContracts(),
+                        "topics", List.of(List.of(ContractSignatures.DATA_CHANGED_TOPIC,
+                                ContractSignatures.TRANSFER_TOPIC, ContractSignatures.APPROVAL_TOPIC)))),
+                        service, EthSubscribe.class);
+                service.subscribe(request, "eth_unsubscribe", LogNotification.class).subscribe(
+                        notification -> logFeed.push(List.of(notification.getParams().getResult())),
+                        error -> scheduler.execute(() -> disconnected(attempt, error)));
+                logFeed.resumePush();
+            }
+            monitor.setPushing(true);
+            connected = true;
+            reconnectDelay = INITIAL_RECONNECT_DELAY;
+            log.info("Subscribed to new heads{} over {}", logFeed.isEnabled() ? " and contract logs" : "",
+                    wsAddress);
+        } catch (Exception e) {
+            disconnected(attempt, e);
+        }
+    }
+
+    private void disconnected(long attempt, Throwable error) {
+        if (attempt != connection || scheduler.isShutdown()) {
+            // the other subscription of the same connection already reported it
+            return;
+        }
+        connection++;
+        connected = false;
+        monitor.setPushing(false);
+        if (logFeed.isEnabled()) {
+            logFeed.stopPush();
+        }
+        close();
+        log.warn("WebSocket subscription to {} lost ({}), polling until reconnected in {} ms", wsAddress,
+                error.toString(), reconnectDelay);
+        scheduler.schedule(this::connect, reconnectDelay, TimeUnit.MILLISECONDS);
+        reconnectDelay = Math.min(reconnectDelay * 2, reconnectMaxMillis);
+    }
+
+    private void close() {
+        // the node drops the subscriptions with the connection, so they are not disposed one by one
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    /**
+     * A {@code logs} notification carrying the full log, including its {@code removed} flag
+     */
+    public static class LogNotification extends Notification<Log> {
+    }
+}
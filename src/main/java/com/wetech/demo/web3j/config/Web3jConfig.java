@@ -1,37 +1,96 @@
 package com.wetech.demo.web3j.config;
 
+import com.wetech.demo.web3j.rpc.BatchingWeb3jService;
+import com.wetech.demo.web3j.rpc.FailoverWeb3jService;
+import com.wetech.demo.web3j.rpc.IdMatchingHttpService;
+import com.wetech.demo.web3j.rpc.InstrumentedWeb3jService;
+import com.wetech.demo.web3j.rpc.LimitedWeb3jService;
+import com.wetech.demo.web3j.rpc.Web3jExecutors;
+import com.wetech.demo.web3j.tx.NonceManager;
+import com.wetech.demo.web3j.tx.PipelinedTransactionManager;
+import com.wetech.demo.web3j.tx.ReceiptTracker;
+import com.wetech.demo.web3j.tx.TransactionMetrics;
+import com.wetech.demo.web3j.tx.TransactionOutbox;
+import com.wetech.demo.web3j.tx.TransactionReplacer;
+import com.wetech.demo.web3j.tx.TransactionSigner;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.web3j.crypto.Credentials;
 import org.web3j.protocol.Web3j;
+import org.web3j.protocol.Web3jService;
 import org.web3j.protocol.http.HttpService;
-import org.web3j.tx.gas.ContractGasProvider;
-import org.web3j.tx.gas.StaticGasProvider;
 
-import java.math.BigInteger;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Configuration
 public class Web3jConfig {
 
     @Value("${web3j.client-address:http://localhost:8545}")
-    private String clientAddress;
+    private List<String> clientAddresses;
 
     @Value("${web3j.private-key:791780e5a2a1d297594ea1f5411c423b7f5486b0d899ba5c5734c8bfabe6db55}")
     private String privateKey;
 
-    @Value("${web3j.gas-price:20000000000}")
-    private String gasPrice;
+    @Value("${web3j.rpc.timeout-millis:10000}")
+    private long rpcTimeoutMillis;
 
-    @Value("${web3j.gas-limit:6721975}")
-    private String gasLimit;
+    @Value("${web3j.rpc.hedge.enabled:true}")
+    private boolean hedgeEnabled;
+
+    @Value("${web3j.rpc.hedge.min-delay-millis:20}")
+    private long hedgeMinDelayMillis;
+
+    @Value("${web3j.rpc.breaker.failure-threshold:3}")
+    private int breakerFailureThreshold;
+
+    @Value("${web3j.rpc.breaker.open-millis:5000}")
+    private long breakerOpenMillis;
+
+    @Value("${web3j.batch.enabled:true}")
+    private boolean batchEnabled;
+
+    @Value("${web3j.batch.window-micros:200}")
+    private long batchWindowMicros;
+
+    @Value("${web3j.batch.max-size:100}")
+    private int batchMaxSize;
 
     @Bean
-    public Web3j web3j() {
-        log.info("Connecting to Ethereum client: {}", clientAddress);
-        return Web3j.build(new HttpService(clientAddress));
+    public Web3j web3j(Web3jExecutors executors, MeterRegistry meterRegistry) {
+        Web3jService node;
+        OkHttpClient client = HttpService.getOkHttpClientBuilder()
+                .callTimeout(rpcTimeoutMillis, TimeUnit.MILLISECONDS).build();
+        if (clientAddresses.size() == 1) {
+            log.info("Connecting to Ethereum client: {}", clientAddresses.get(0));
+            node = new IdMatchingHttpService(clientAddresses.get(0), client);
+        } else {
+            FailoverWeb3jService failover = new FailoverWeb3jService(executors.blocking(), meterRegistry,
+                    hedgeEnabled, hedgeMinDelayMillis, breakerFailureThreshold, breakerOpenMillis);
+            for (int i = 0; i < clientAddresses.size(); i++) {
+                URI uri = URI.create(clientAddresses.get(i));
+                failover.addEndpoint(i + "-" + uri.getHost(), new IdMatchingHttpService(uri.toString(), client));
+            }
+            log.info("Connecting to Ethereum clients (writes prefer the first): {}", failover.getEndpoints().stream()
+                    .map(FailoverWeb3jService.Endpoint::getName).toList());
+            node = failover;
+        }
+        LimitedWeb3jService limited = new LimitedWeb3jService(node, executors.io(), executors.getMaxConcurrency());
+        Gauge.builder("web3j.rpc.queued", limited, LimitedWeb3jService::getQueueLength)
+                .description("JSON-RPC requests waiting for a connection slot").register(meterRegistry);
+        Web3jService service = limited;
+        if (batchEnabled) {
+            log.info("Batching JSON-RPC requests (window {}us, max {} requests)", batchWindowMicros, batchMaxSize);
+            service = new BatchingWeb3jService(service, batchWindowMicros, batchMaxSize);
+        }
+        return Web3j.build(new InstrumentedWeb3jService(service, meterRegistry));
     }
 
     @Bean
@@ -40,10 +99,11 @@ public class Web3jConfig {
     }
 
     @Bean
-    public ContractGasProvider contractGasProvider() {
-        return new StaticGasProvider(
-                new BigInteger(gasPrice),
-                new BigInteger(gasLimit)
-        );
+    public PipelinedTransactionManager transactionManager(Web3j web3j, TransactionSigner signer,
+                                                          NonceManager nonceManager, ReceiptTracker receiptTracker,
+                                                          TransactionReplacer replacer, TransactionMetrics metrics,
+                                                          TransactionOutbox outbox) {
+        return new PipelinedTransactionManager(web3j, signer, nonceManager, receiptTracker, replacer, metrics,
+                outbox);
     }
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.wetech.demo.web3j.config;
+
+import com.wetech.demo.web3j.dto.CborHttpMessageConverter;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    /**
+     * Add the compact CBOR response mode behind the default converters, so JSON stays the
+     * default for clients that accept anything
+     * @param converters the configured converters
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new CborHttpMessageConverter());
+    }
+}
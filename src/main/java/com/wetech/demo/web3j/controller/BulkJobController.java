@@ -0,0 +1,96 @@
+package com.wetech.demo.web3j.controller;
+
+import com.wetech.demo.web3j.dto.BulkJobItem;
+import com.wetech.demo.web3j.dto.BulkJobProgress;
+import com.wetech.demo.web3j.job.BulkJob;
+import com.wetech.demo.web3j.job.BulkJobService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/zhx/{tokenAddress}/jobs")
+@RequiredArgsConstructor
+public class BulkJobController {
+
+    private final BulkJobService jobService;
+
+    /**
+     * Start a bulk mint or transfer job
+     * @param tokenAddress the ZHX contract address
+     * @param operation {@code mint} or {@code transfer}
+     * @param rateLimit the maximum transactions sent per second
+     * @param maxInFlight the maximum transactions waiting for a receipt
+     * @param input CSV ({@code recipient,amount}) or JSON-lines ({@code {"recipient","amount"}}) items
+     * @return the job id and its initial progress
+     */
+    @PostMapping
+    public ResponseEntity<BulkJobProgress> submit(@PathVariable String tokenAddress,
+                                                  @RequestParam String operation,
+                                                  @RequestParam(required = false) Double rateLimit,
+                                                  @RequestParam(required = false) Integer maxInFlight,
+                                                  InputStream input) throws IOException {
+        BulkJob job = jobService.submit(tokenAddress, BulkJob.Operation.valueOf(operation.toUpperCase(Locale.ROOT)),
+                input, rateLimit, maxInFlight);
+        return ResponseEntity.accepted().body(BulkJobProgress.of(job));
+    }
+
+    /**
+     * Get the progress of a job
+     * @param tokenAddress the ZHX contract address
+     * @param jobId the job id
+     * @return the job state and the number of items in each status
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<BulkJobProgress> getProgress(@PathVariable String tokenAddress,
+                                                       @PathVariable String jobId) {
+        return find(tokenAddress, jobId)
+                .map(job -> ResponseEntity.ok(BulkJobProgress.of(job)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Get the status of the items of a job
+     * @param tokenAddress the ZHX contract address
+     * @param jobId the job id
+     * @param status only return items in this status
+     * @param offset the index of the first item to consider
+     * @param limit the maximum number of items
+     * @return the items in input order
+     */
+    @GetMapping("/{jobId}/items")
+    public ResponseEntity<List<BulkJobItem>> getItems(@PathVariable String tokenAddress,
+                                                      @PathVariable String jobId,
+                                                      @RequestParam(required = false) String status,
+                                                      @RequestParam(defaultValue = "0") int offset,
+                                                      @RequestParam(defaultValue = "100") int limit) {
+        Optional<BulkJob> found = find(tokenAddress, jobId);
+        if (found.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        BulkJob.ItemStatus filter = status == null ? null : BulkJob.ItemStatus.valueOf(status.toUpperCase(Locale.ROOT));
+        List<BulkJob.Item> items = found.get().getItems();
+        List<BulkJobItem> response = new ArrayList<>();
+        for (int i = Math.max(0, offset); i < items.size() && response.size() < limit; i++) {
+            BulkJob.Item item = items.get(i);
+            if (filter != null && item.getStatus() != filter) {
+                continue;
+            }
+            response.add(BulkJobItem.of(item));
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    private Optional<BulkJob> find(String tokenAddress, String jobId) {
+        return jobService.getJob(jobId).filter(job -> job.getToken().equalsIgnoreCase(tokenAddress));
+    }
+}
@@ -0,0 +1,38 @@
+package com.wetech.demo.web3j.controller;
+
+import com.wetech.demo.web3j.stream.EventBroadcaster;
+import com.wetech.demo.web3j.stream.EventFilter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/events")
+@RequiredArgsConstructor
+public class EventStreamController {
+
+    private final EventBroadcaster broadcaster;
+
+    /**
+     * Stream live DataChanged, Transfer and Approval events as Server-Sent Events
+     * @param contract only events of these contracts
+     * @param address only events from or to these accounts
+     * @param type only these event types ({@code transfer}, {@code approval}, {@code data_changed})
+     * @return the event stream, or 503 if no events are fed or the client limit is reached
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(@RequestParam(required = false) List<String> contract,
+                                             @RequestParam(required = false) List<String> address,
+                                             @RequestParam(required = false) List<String> type) {
+        return broadcaster.subscribe(EventFilter.of(contract, address, type))
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+    }
+}
@@ -1,5 +1,10 @@
 package com.wetech.demo.web3j.controller;
 
+import com.wetech.demo.web3j.dto.DeployedContract;
+import com.wetech.demo.web3j.dto.HistoricalValue;
+import com.wetech.demo.web3j.dto.StorageValue;
+import com.wetech.demo.web3j.dto.TransactionResult;
+import com.wetech.demo.web3j.service.HistoricalStateService;
 import com.wetech.demo.web3j.service.SimpleStorageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -7,10 +12,14 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigInteger;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
+/**
+ * SimpleStorage endpoints. Responses are JSON with numbers as decimal strings, or compact
+ * fixed-layout CBOR for clients that send {@code Accept: application/cbor}.
+ */
 @Slf4j
 @RestController
 @RequestMapping("/api/storage")
@@ -18,84 +27,72 @@ import java.util.concurrent.CompletableFuture;
 public class SimpleStorageController {
 
     private final SimpleStorageService storageService;
+    private final HistoricalStateService historicalStateService;
 
     /**
      * Deploy a new SimpleStorage contract
      * @return the address of the deployed contract
      */
     @PostMapping("/deploy")
-    public CompletableFuture<ResponseEntity<Map<String, String>>> deployContract() {
+    public CompletableFuture<ResponseEntity<DeployedContract>> deployContract() {
         return storageService.deployContract()
-                .thenApply(address -> {
-                    Map<String, String> response = new HashMap<>();
-                    response.put("contractAddress", address);
-                    return ResponseEntity.ok(response);
-                });
+                .thenApply(address -> ResponseEntity.ok(new DeployedContract(address)));
     }
 
     /**
-     * Load an existing contract
-     * @param address the address of the contract to load
-     * @return a success message
+     * Get the current value stored in a contract
+     * @param address the address of the contract
+     * @return the stored value
      */
-    @PostMapping("/load")
-    public ResponseEntity<Map<String, String>> loadContract(@RequestParam String address) {
-        storageService.loadContract(address);
-        Map<String, String> response = new HashMap<>();
-        response.put("message", "Contract loaded successfully");
-        response.put("contractAddress", address);
-        return ResponseEntity.ok(response);
+    @GetMapping("/{address}/value")
+    public CompletableFuture<ResponseEntity<StorageValue>> getValue(@PathVariable String address) {
+        return storageService.getValue(address)
+                .thenApply(value -> ResponseEntity.ok(new StorageValue(address, value)));
     }
 
     /**
-     * Get the current value stored in the contract
-     * @return the stored value
+     * Get the value a contract held at a past block
+     * @param address the address of the contract
+     * @param block a block number, or {@code latest}, {@code safe}, {@code finalized} or {@code earliest}
+     * @return the stored value, the block it was read at and whether that block is final
      */
-    @GetMapping("/value/get")
-    public CompletableFuture<ResponseEntity<Map<String, String>>> getValue() {
-        return storageService.getValue()
-                .thenApply(value -> {
-                    Map<String, String> response = new HashMap<>();
-                    response.put("value", value.toString());
-                    response.put("contractAddress", storageService.getContractAddress());
-                    return ResponseEntity.ok(response);
-                });
+    @GetMapping("/{address}/value/{block}")
+    public CompletableFuture<ResponseEntity<HistoricalValue>> getValueAt(@PathVariable String address,
+                                                                         @PathVariable String block) {
+        long number = historicalStateService.resolveBlock(block);
+        return historicalStateService.getValue(address, number)
+                .thenApply(value -> ResponseEntity.ok(
+                        new HistoricalValue(number, historicalStateService.isFinalized(number), value)));
     }
 
     /**
-     * Set a new value in the contract
-     * @param value the new value to store
-     * @return the transaction receipt details
+     * Get the values stored in many contracts in one request
+     * @param addresses the addresses of the contracts
+     * @return the stored value of each contract, in request order, with a null value where the call failed
      */
-    @PostMapping("/value/set")
-    public CompletableFuture<ResponseEntity<Map<String, String>>> setValue(@RequestParam String value) {
-        BigInteger intValue = new BigInteger(value);
-        return storageService.setValue(intValue)
-                .thenApply(receipt -> {
-                    Map<String, String> response = new HashMap<>();
-                    response.put("transactionHash", receipt.getTransactionHash());
-                    response.put("blockNumber", receipt.getBlockNumber().toString());
-                    response.put("gasUsed", receipt.getGasUsed().toString());
-                    response.put("status", receipt.getStatus());
-                    response.put("contractAddress", storageService.getContractAddress());
+    @PostMapping("/values")
+    public CompletableFuture<ResponseEntity<List<StorageValue>>> getValues(@RequestBody List<String> addresses) {
+        return storageService.getValues(addresses)
+                .thenApply(values -> {
+                    List<StorageValue> response = new ArrayList<>(addresses.size());
+                    for (int i = 0; i < addresses.size(); i++) {
+                        response.add(new StorageValue(addresses.get(i), values.get(i)));
+                    }
                     return ResponseEntity.ok(response);
                 });
     }
 
     /**
-     * Get the address of the currently loaded contract
-     * @return the contract address
+     * Set a new value in a contract
+     * @param address the address of the contract
+     * @param value the new value to store
+     * @return the transaction receipt details
      */
-    @GetMapping("/address")
-    public ResponseEntity<Map<String, String>> getContractAddress() {
-        String address = storageService.getContractAddress();
-        Map<String, String> response = new HashMap<>();
-        if (address != null) {
-            response.put("contractAddress", address);
-            return ResponseEntity.ok(response);
-        } else {
-            response.put("message", "No contract loaded");
-            return ResponseEntity.ok(response);
-        }
+    @PostMapping("/{address}/value")
+    public CompletableFuture<ResponseEntity<TransactionResult>> setValue(@PathVariable String address,
+                                                                         @RequestParam String value) {
+        BigInteger intValue = new BigInteger(value);
+        return storageService.setValue(address, intValue)
+                .thenApply(receipt -> ResponseEntity.ok(TransactionResult.of(receipt, address)));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,182 @@
+package com.wetech.demo.web3j.controller;
+
+import com.wetech.demo.web3j.dto.Allowance;
+import com.wetech.demo.web3j.dto.AllowanceQuery;
+import com.wetech.demo.web3j.dto.HolderBalance;
+import com.wetech.demo.web3j.dto.HistoricalValue;
+import com.wetech.demo.web3j.dto.HolderBalances;
+import com.wetech.demo.web3j.dto.IndexedBalance;
+import com.wetech.demo.web3j.dto.IndexedSupply;
+import com.wetech.demo.web3j.dto.TokenEvent;
+import com.wetech.demo.web3j.indexer.ContractEvent;
+import com.wetech.demo.web3j.service.HistoricalStateService;
+import com.wetech.demo.web3j.service.ZhxService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * ZHX token endpoints. Responses are JSON with numbers as decimal strings, or compact
+ * fixed-layout CBOR for clients that send {@code Accept: application/cbor}.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/zhx/{tokenAddress}")
+@RequiredArgsConstructor
+public class ZhxController {
+
+    private final ZhxService zhxService;
+    private final HistoricalStateService historicalStateService;
+
+    /**
+     * Get the balances of many holders in one request
+     * @param tokenAddress the ZHX contract address
+     * @param holders the holder addresses
+     * @return the balance of each holder, keyed by address
+     */
+    @PostMapping("/balances")
+    public CompletableFuture<ResponseEntity<HolderBalances>> getBalances(@PathVariable String tokenAddress,
+                                                                         @RequestBody List<String> holders) {
+        return zhxService.getBalances(tokenAddress, holders)
+                .thenApply(balances -> ResponseEntity.ok(new HolderBalances(holders, balances)));
+    }
+
+    /**
+     * Get the allowances of many owner/spender pairs in one request
+     * @param tokenAddress the ZHX contract address
+     * @param queries the owner/spender pairs
+     * @return the allowance of each pair, in request order
+     */
+    @PostMapping("/allowances")
+    public CompletableFuture<ResponseEntity<List<Allowance>>> getAllowances(
+            @PathVariable String tokenAddress, @RequestBody List<AllowanceQuery> queries) {
+        return zhxService.getAllowances(tokenAddress, queries)
+                .thenApply(allowances -> {
+                    List<Allowance> response = new ArrayList<>(queries.size());
+                    for (int i = 0; i < queries.size(); i++) {
+                        response.add(new Allowance(queries.get(i).getOwner(), queries.get(i).getSpender(),
+                                allowances.get(i)));
+                    }
+                    return ResponseEntity.ok(response);
+                });
+    }
+
+    /**
+     * Get the balance of a holder at a past block
+     * @param tokenAddress the ZHX contract address
+     * @param holder the holder address
+     * @param block a block number, or {@code latest}, {@code safe}, {@code finalized} or {@code earliest}
+     * @return the balance, the block it was read at and whether that block is final
+     */
+    @GetMapping("/holders/{holder}/balance/{block}")
+    public CompletableFuture<ResponseEntity<HistoricalValue>> getBalanceAt(@PathVariable String tokenAddress,
+                                                                           @PathVariable String holder,
+                                                                           @PathVariable String block) {
+        long number = historicalStateService.resolveBlock(block);
+        return historicalStateService.getBalance(tokenAddress, holder, number)
+                .thenApply(balance -> historicalValue(number, balance));
+    }
+
+    /**
+     * Get an allowance at a past block
+     * @param tokenAddress the ZHX contract address
+     * @param owner the owner address
+     * @param spender the spender address
+     * @param block a block number, or {@code latest}, {@code safe}, {@code finalized} or {@code earliest}
+     * @return the allowance, the block it was read at and whether that block is final
+     */
+    @GetMapping("/allowances/{owner}/{spender}/{block}")
+    public CompletableFuture<ResponseEntity<HistoricalValue>> getAllowanceAt(@PathVariable String tokenAddress,
+                                                                             @PathVariable String owner,
+                                                                             @PathVariable String spender,
+                                                                             @PathVariable String block) {
+        long number = historicalStateService.resolveBlock(block);
+        return historicalStateService.getAllowance(tokenAddress, owner, spender, number)
+                .thenApply(allowance -> historicalValue(number, allowance));
+    }
+
+    /**
+     * Get the total supply at a past block
+     * @param tokenAddress the ZHX contract address
+     * @param block a block number, or {@code latest}, {@code safe}, {@code finalized} or {@code earliest}
+     * @return the total supply, the block it was read at and whether that block is final
+     */
+    @GetMapping("/supply/{block}")
+    public CompletableFuture<ResponseEntity<HistoricalValue>> getTotalSupplyAt(@PathVariable String tokenAddress,
+                                                                               @PathVariable String block) {
+        long number = historicalStateService.resolveBlock(block);
+        return historicalStateService.getTotalSupply(tokenAddress, number)
+                .thenApply(supply -> historicalValue(number, supply));
+    }
+
+    /**
+     * Get the indexed balance of a holder
+     * @param tokenAddress the ZHX contract address
+     * @param holder the holder address
+     * @return the balance, the block it was projected up to and the last confirmed block
+     */
+    @GetMapping("/holders/{holder}")
+    public ResponseEntity<IndexedBalance> getIndexedBalance(@PathVariable String tokenAddress,
+                                                            @PathVariable String holder) {
+        return ResponseEntity.ok(new IndexedBalance(holder, zhxService.getIndexedBalance(tokenAddress, holder),
+                zhxService.getProjectedBlock(), zhxService.getLastIndexedBlock()));
+    }
+
+    /**
+     * Get the indexed total supply
+     * @param tokenAddress the ZHX contract address
+     * @return the total supply and the block it was projected up to
+     */
+    @GetMapping("/supply")
+    public ResponseEntity<IndexedSupply> getIndexedTotalSupply(@PathVariable String tokenAddress) {
+        return ResponseEntity.ok(new IndexedSupply(zhxService.getIndexedTotalSupply(tokenAddress),
+                zhxService.getProjectedBlock()));
+    }
+
+    /**
+     * Get the largest holders from the index
+     * @param tokenAddress the ZHX contract address
+     * @param limit the maximum number of holders
+     * @return holders and balances, largest first
+     */
+    @GetMapping("/holders/top")
+    public ResponseEntity<List<HolderBalance>> getTopHolders(@PathVariable String tokenAddress,
+                                                             @RequestParam(defaultValue = "10") int limit) {
+        List<Map.Entry<String, BigInteger>> holders = zhxService.getTopHolders(tokenAddress, limit);
+        List<HolderBalance> response = new ArrayList<>(holders.size());
+        for (Map.Entry<String, BigInteger> holder : holders) {
+            response.add(new HolderBalance(holder.getKey(), holder.getValue()));
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Get the indexed transfers and approvals involving an address
+     * @param tokenAddress the ZHX contract address
+     * @param holder the address to look up
+     * @param limit the maximum number of events
+     * @return the events, newest first
+     */
+    @GetMapping("/holders/{holder}/history")
+    public ResponseEntity<List<TokenEvent>> getHistory(@PathVariable String tokenAddress,
+                                                       @PathVariable String holder,
+                                                       @RequestParam(defaultValue = "50") int limit) {
+        List<ContractEvent> events = zhxService.getHistory(tokenAddress, holder, limit);
+        List<TokenEvent> response = new ArrayList<>(events.size());
+        for (ContractEvent event : events) {
+            response.add(TokenEvent.of(event));
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    private ResponseEntity<HistoricalValue> historicalValue(long block, BigInteger value) {
+        return ResponseEntity.ok(new HistoricalValue(block, historicalStateService.isFinalized(block), value));
+    }
+}
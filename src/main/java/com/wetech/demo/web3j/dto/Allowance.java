@@ -0,0 +1,20 @@
+package com.wetech.demo.web3j.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * The ZHX allowance of an owner/spender pair, or {@code null} if it could not be read.
+ */
+public record Allowance(String owner, String spender,
+                        @JsonSerialize(using = ToStringSerializer.class) BigInteger allowance)
+        implements CborEncodable {
+
+    @Override
+    public void writeCbor(CborWriter writer) throws IOException {
+        writer.array(3).hex(owner).hex(spender).integer(allowance);
+    }
+}
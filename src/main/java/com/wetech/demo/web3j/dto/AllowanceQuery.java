@@ -0,0 +1,16 @@
+package com.wetech.demo.web3j.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * An owner/spender pair whose ZHX allowance should be looked up.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AllowanceQuery {
+    private String owner;
+    private String spender;
+}
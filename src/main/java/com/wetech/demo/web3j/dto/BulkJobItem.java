@@ -0,0 +1,41 @@
+package com.wetech.demo.web3j.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.wetech.demo.web3j.job.BulkJob;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * One item of a bulk job. The nonce and transaction hash are {@code null} until the item is
+ * signed, and the block number until it is mined.
+ */
+public record BulkJobItem(@JsonSerialize(using = ToStringSerializer.class) int index,
+                          String recipient,
+                          @JsonSerialize(using = ToStringSerializer.class) BigInteger amount,
+                          String status,
+                          @JsonSerialize(using = ToStringSerializer.class) Long nonce,
+                          String transactionHash,
+                          @JsonSerialize(using = ToStringSerializer.class) Long blockNumber,
+                          String error) implements CborEncodable {
+
+    /**
+     * Convert a job item
+     * @param item the item
+     * @return the response entry
+     */
+    public static BulkJobItem of(BulkJob.Item item) {
+        boolean signed = item.getNonce() >= 0;
+        return new BulkJobItem(item.getIndex(), item.getRecipient(), item.getAmount(), item.getStatus().name(),
+                signed ? item.getNonce() : null, signed ? item.getTransactionHash() : null,
+                item.getBlockNumber() >= 0 ? item.getBlockNumber() : null, item.getError());
+    }
+
+    @Override
+    public void writeCbor(CborWriter writer) throws IOException {
+        writer.array(8).integer(index).hex(recipient).integer(amount).text(status)
+                .integer(nonce == null ? null : BigInteger.valueOf(nonce)).hex(transactionHash)
+                .integer(blockNumber == null ? null : BigInteger.valueOf(blockNumber)).text(error);
+    }
+}
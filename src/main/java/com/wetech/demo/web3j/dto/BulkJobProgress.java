@@ -0,0 +1,43 @@
+package com.wetech.demo.web3j.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.wetech.demo.web3j.job.BulkJob;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * The state of a bulk job and the number of its items in each status.
+ */
+public record BulkJobProgress(String jobId,
+                              String operation,
+                              String state,
+                              @JsonSerialize(using = ToStringSerializer.class) int items,
+                              @JsonSerialize(using = ToStringSerializer.class) int pending,
+                              @JsonSerialize(using = ToStringSerializer.class) int sent,
+                              @JsonSerialize(using = ToStringSerializer.class) int mined,
+                              @JsonSerialize(using = ToStringSerializer.class) int reverted,
+                              @JsonSerialize(using = ToStringSerializer.class) int failed,
+                              @JsonSerialize(using = ToStringSerializer.class) int skipped,
+                              String error) implements CborEncodable {
+
+    /**
+     * Summarize a job
+     * @param job the job
+     * @return the progress
+     */
+    public static BulkJobProgress of(BulkJob job) {
+        Map<BulkJob.ItemStatus, Integer> counts = job.getCounts();
+        return new BulkJobProgress(job.getId(), job.getOperation().name(), job.getState().name(),
+                job.getItems().size(), counts.get(BulkJob.ItemStatus.PENDING), counts.get(BulkJob.ItemStatus.SENT),
+                counts.get(BulkJob.ItemStatus.MINED), counts.get(BulkJob.ItemStatus.REVERTED),
+                counts.get(BulkJob.ItemStatus.FAILED), counts.get(BulkJob.ItemStatus.SKIPPED), job.getError());
+    }
+
+    @Override
+    public void writeCbor(CborWriter writer) throws IOException {
+        writer.array(11).text(jobId).text(operation).text(state).integer(items).integer(pending).integer(sent)
+                .integer(mined).integer(reverted).integer(failed).integer(skipped).text(error);
+    }
+}
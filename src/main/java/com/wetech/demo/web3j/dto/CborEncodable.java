@@ -0,0 +1,16 @@
+package com.wetech.demo.web3j.dto;
+
+import java.io.IOException;
+
+/**
+ * A response that can be written in the compact {@code application/cbor} mode. Records are
+ * written as fixed-layout CBOR arrays with one item per component, in declaration order.
+ */
+public interface CborEncodable {
+
+    /**
+     * Write this response
+     * @param writer the writer
+     */
+    void writeCbor(CborWriter writer) throws IOException;
+}
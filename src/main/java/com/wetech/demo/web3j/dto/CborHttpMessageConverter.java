@@ -0,0 +1,99 @@
+package com.wetech.demo.web3j.dto;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes {@link CborEncodable} responses, and collections of them as CBOR arrays, when a client
+ * asks for {@code application/cbor}. It is registered after the default converters, so clients
+ * that send no {@code Accept} header keep getting JSON. Request bodies stay JSON.
+ */
+public class CborHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final MediaType APPLICATION_CBOR = new MediaType("application", "cbor");
+
+    private static final int BUFFER_SIZE = 4096;
+
+    public CborHttpMessageConverter() {
+        super(APPLICATION_CBOR);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return CborEncodable.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return canWrite(mediaType) && (type != null ? encodable(type) : supports(clazz));
+    }
+
+    @Override
+    public List<MediaType> getSupportedMediaTypes(Class<?> clazz) {
+        // collections are offered here and checked element by element in canWrite
+        return supports(clazz) || Collection.class.isAssignableFrom(clazz) ? getSupportedMediaTypes() : List.of();
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected void writeInternal(Object body, Type type, HttpOutputMessage outputMessage) throws IOException {
+        CborWriter writer = new CborWriter(outputMessage.getBody(), BUFFER_SIZE);
+        write(body, writer);
+        writer.flush();
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("CBOR request bodies are not supported", inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("CBOR request bodies are not supported", inputMessage);
+    }
+
+    private static void write(Object body, CborWriter writer) throws IOException {
+        if (body instanceof CborEncodable encodable) {
+            encodable.writeCbor(writer);
+        } else if (body instanceof Collection<?> items) {
+            writer.array(items.size());
+            for (Object item : items) {
+                write(item, writer);
+            }
+        } else if (body == null) {
+            writer.nul();
+        } else {
+            throw new HttpMessageNotWritableException("Cannot write " + body.getClass().getName() + " as CBOR");
+        }
+    }
+
+    private static boolean encodable(Type type) {
+        if (type instanceof Class<?> clazz) {
+            return CborEncodable.class.isAssignableFrom(clazz);
+        }
+        if (type instanceof ParameterizedType parameterized
+                && parameterized.getRawType() instanceof Class<?> raw && Collection.class.isAssignableFrom(raw)) {
+            return encodable(parameterized.getActualTypeArguments()[0]);
+        }
+        return false;
+    }
+}
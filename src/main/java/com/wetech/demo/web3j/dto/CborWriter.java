@@ -0,0 +1,162 @@
+package com.wetech.demo.web3j.dto;
+
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A minimal streaming CBOR (RFC 8949) encoder for the compact response mode. Only definite-length
+ * items are written; integers use the shortest head, integers wider than 64 bits become bignums,
+ * and hex strings such as addresses and hashes are written as byte strings.
+ */
+public final class CborWriter {
+
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_BYTES = 2;
+    private static final int MAJOR_TEXT = 3;
+    private static final int MAJOR_ARRAY = 4;
+    private static final int MAJOR_MAP = 5;
+    private static final int MAJOR_TAG = 6;
+    private static final int TAG_POSITIVE_BIGNUM = 2;
+    private static final int TAG_NEGATIVE_BIGNUM = 3;
+    private static final int FALSE = 0xf4;
+    private static final int TRUE = 0xf5;
+    private static final int NULL = 0xf6;
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int position;
+
+    /**
+     * Create a writer
+     * @param out the stream to write to
+     * @param bufferSize the bytes collected before each write to the stream
+     */
+    public CborWriter(OutputStream out, int bufferSize) {
+        this.out = out;
+        this.buffer = new byte[Math.max(bufferSize, 9)];
+    }
+
+    public CborWriter array(int size) throws IOException {
+        return head(MAJOR_ARRAY, size);
+    }
+
+    public CborWriter map(int size) throws IOException {
+        return head(MAJOR_MAP, size);
+    }
+
+    public CborWriter integer(long value) throws IOException {
+        return value >= 0 ? head(MAJOR_UNSIGNED, value) : head(MAJOR_NEGATIVE, -1 - value);
+    }
+
+    public CborWriter integer(BigInteger value) throws IOException {
+        if (value == null) {
+            return nul();
+        }
+        if (value.signum() >= 0 && value.bitLength() <= 64) {
+            return head(MAJOR_UNSIGNED, value.longValue());
+        }
+        if (value.signum() < 0 && value.bitLength() < 64) {
+            return integer(value.longValue());
+        }
+        BigInteger magnitude = value.signum() >= 0 ? value : BigInteger.ONE.negate().subtract(value);
+        head(MAJOR_TAG, value.signum() >= 0 ? TAG_POSITIVE_BIGNUM : TAG_NEGATIVE_BIGNUM);
+        return bytes(Numeric.toBytesPadded(magnitude, (magnitude.bitLength() + 7) / 8));
+    }
+
+    public CborWriter text(String value) throws IOException {
+        if (value == null) {
+            return nul();
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        head(MAJOR_TEXT, bytes.length);
+        return raw(bytes);
+    }
+
+    public CborWriter bytes(byte[] value) throws IOException {
+        if (value == null) {
+            return nul();
+        }
+        head(MAJOR_BYTES, value.length);
+        return raw(value);
+    }
+
+    /**
+     * Write a {@code 0x}-prefixed hex string, such as an address or a hash, as its bytes
+     * @param value the hex string, or null
+     * @return this writer
+     */
+    public CborWriter hex(String value) throws IOException {
+        return value == null ? nul() : bytes(Numeric.hexStringToByteArray(value));
+    }
+
+    public CborWriter bool(boolean value) throws IOException {
+        ensure(1);
+        buffer[position++] = (byte) (value ? TRUE : FALSE);
+        return this;
+    }
+
+    public CborWriter nul() throws IOException {
+        ensure(1);
+        buffer[position++] = (byte) NULL;
+        return this;
+    }
+
+    public void flush() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+        out.flush();
+    }
+
+    private CborWriter head(int major, long value) throws IOException {
+        ensure(9);
+        int type = major << 5;
+        if (Long.compareUnsigned(value, 24) < 0) {
+            buffer[position++] = (byte) (type | value);
+        } else if (Long.compareUnsigned(value, 0x100) < 0) {
+            buffer[position++] = (byte) (type | 24);
+            buffer[position++] = (byte) value;
+        } else if (Long.compareUnsigned(value, 0x10000) < 0) {
+            buffer[position++] = (byte) (type | 25);
+            put(value, 2);
+        } else if (Long.compareUnsigned(value, 0x100000000L) < 0) {
+            buffer[position++] = (byte) (type | 26);
+            put(value, 4);
+        } else {
+            buffer[position++] = (byte) (type | 27);
+            put(value, 8);
+        }
+        return this;
+    }
+
+    private void put(long value, int length) {
+        for (int shift = (length - 1) * 8; shift >= 0; shift -= 8) {
+            buffer[position++] = (byte) (value >>> shift);
+        }
+    }
+
+    private CborWriter raw(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.length - position) {
+            out.write(buffer, 0, position);
+            position = 0;
+            if (bytes.length > buffer.length) {
+                out.write(bytes);
+                return this;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+        return this;
+    }
+
+    private void ensure(int length) throws IOException {
+        if (buffer.length - position < length) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.wetech.demo.web3j.dto;
+
+import java.io.IOException;
+
+/**
+ * The address of a newly deployed contract.
+ */
+public record DeployedContract(String contractAddress) implements CborEncodable {
+
+    @Override
+    public void writeCbor(CborWriter writer) throws IOException {
+        writer.array(1).hex(contractAddress);
+    }
+}
@@ -0,0 +1,21 @@
+package com.wetech.demo.web3j.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * A contract read pinned to a block, and whether that block is final so the value will not change.
+ */
+public record HistoricalValue(@JsonSerialize(using = ToStringSerializer.class) long blockNumber,
+                              boolean finalized,
+                              @JsonSerialize(using = ToStringSerializer.class) BigInteger value)
+        implements CborEncodable {
+
+    @Override
+    public void writeCbor(CborWriter writer) throws IOException {
+        writer.array(3).integer(blockNumber).bool(finalized).integer(value);
+    }
+}
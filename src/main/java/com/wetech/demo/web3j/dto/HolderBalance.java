@@ -0,0 +1,19 @@
+package com.wetech.demo.web3j.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * A holder and its indexed balance.
+ */
+public record HolderBalance(String holder, @JsonSerialize(using = ToStringSerializer.class) BigInteger balance)
+        implements CborEncodable {
+
+    @Override
+    public void writeCbor(CborWriter writer) throws IOException {
+        writer.array(2).hex(holder).integer(balance);
+    }
+}
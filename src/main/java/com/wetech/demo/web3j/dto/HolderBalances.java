@@ -0,0 +1,54 @@
+package com.wetech.demo.web3j.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * Balances of many holders, written as an object (in CBOR, a map) from holder address to
+ * balance, or {@code null} where the balance could not be read.
+ */
+public final class HolderBalances extends JsonSerializable.Base implements CborEncodable {
+
+    private final List<String> holders;
+    private final List<BigInteger> balances;
+
+    /**
+     * Pair holders with their balances
+     * @param holders the holder addresses
+     * @param balances the balance of each holder, in the same order
+     */
+    public HolderBalances(List<String> holders, List<BigInteger> balances) {
+        this.holders = holders;
+        this.balances = balances;
+    }
+
+    @Override
+    public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+        generator.writeStartObject(this, holders.size());
+        for (int i = 0; i < holders.size(); i++) {
+            BigInteger balance = balances.get(i);
+            generator.writeStringField(holders.get(i), balance == null ? null : balance.toString());
+        }
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator generator, SerializerProvider serializers,
+                                  TypeSerializer typeSerializer) throws IOException {
+        serialize(generator, serializers);
+    }
+
+    @Override
+    public void writeCbor(CborWriter writer) throws IOException {
+        writer.map(holders.size());
+        for (int i = 0; i < holders.size(); i++) {
+            writer.hex(holders.get(i)).integer(balances.get(i));
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.wetech.demo.web3j.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * A holder's balance from the event index, with the block it was projected up to and the last
+ * confirmed block.
+ */
+public record IndexedBalance(String holder,
+                             @JsonSerialize(using = ToStringSerializer.class) BigInteger balance,
+                             @JsonSerialize(using = ToStringSerializer.class) long indexedBlock,
+                             @JsonSerialize(using = ToStringSerializer.class) long confirmedBlock)
+        implements CborEncodable {
+
+    @Override
+    public void writeCbor(CborWriter writer) throws IOException {
+        writer.array(4).hex(holder).integer(balance).integer(indexedBlock).integer(confirmedBlock);
+    }
+}
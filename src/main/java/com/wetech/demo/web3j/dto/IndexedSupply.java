@@ -0,0 +1,20 @@
+package com.wetech.demo.web3j.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * The total supply from the event index, with the block it was projected up to.
+ */
+public record IndexedSupply(@JsonSerialize(using = ToStringSerializer.class) BigInteger totalSupply,
+                            @JsonSerialize(using = ToStringSerializer.class) long indexedBlock)
+        implements CborEncodable {
+
+    @Override
+    public void writeCbor(CborWriter writer) throws IOException {
+        writer.array(2).integer(totalSupply).integer(indexedBlock);
+    }
+}
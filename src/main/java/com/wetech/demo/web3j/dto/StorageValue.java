@@ -0,0 +1,20 @@
+package com.wetech.demo.web3j.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * The value stored in a SimpleStorage contract, or {@code null} if it could not be read.
+ */
+public record StorageValue(String contractAddress,
+                           @JsonSerialize(using = ToStringSerializer.class) BigInteger value)
+        implements CborEncodable {
+
+    @Override
+    public void writeCbor(CborWriter writer) throws IOException {
+        writer.array(2).hex(contractAddress).integer(value);
+    }
+}
@@ -0,0 +1,36 @@
+package com.wetech.demo.web3j.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.wetech.demo.web3j.indexer.ContractEvent;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * An indexed transfer or approval.
+ */
+public record TokenEvent(String type,
+                         @JsonSerialize(using = ToStringSerializer.class) long blockNumber,
+                         @JsonSerialize(using = ToStringSerializer.class) int logIndex,
+                         String transactionHash,
+                         String from,
+                         String to,
+                         @JsonSerialize(using = ToStringSerializer.class) BigInteger value) implements CborEncodable {
+
+    /**
+     * Convert an indexed event
+     * @param event the event
+     * @return the response entry
+     */
+    public static TokenEvent of(ContractEvent event) {
+        return new TokenEvent(event.type().name(), event.blockNumber(), event.logIndex(), event.transactionHash(),
+                event.from(), event.to(), event.value());
+    }
+
+    @Override
+    public void writeCbor(CborWriter writer) throws IOException {
+        writer.array(7).text(type).integer(blockNumber).integer(logIndex).hex(transactionHash).hex(from).hex(to)
+                .integer(value);
+    }
+}
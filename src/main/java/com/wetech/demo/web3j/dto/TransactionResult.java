@@ -0,0 +1,36 @@
+package com.wetech.demo.web3j.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * The outcome of a mined contract transaction. In CBOR the status is an integer.
+ */
+public record TransactionResult(String transactionHash,
+                                @JsonSerialize(using = ToStringSerializer.class) BigInteger blockNumber,
+                                @JsonSerialize(using = ToStringSerializer.class) BigInteger gasUsed,
+                                String status,
+                                String contractAddress) implements CborEncodable {
+
+    /**
+     * Summarize a receipt
+     * @param receipt the transaction receipt
+     * @param contractAddress the contract that was called
+     * @return the result
+     */
+    public static TransactionResult of(TransactionReceipt receipt, String contractAddress) {
+        return new TransactionResult(receipt.getTransactionHash(), receipt.getBlockNumber(), receipt.getGasUsed(),
+                receipt.getStatus(), contractAddress);
+    }
+
+    @Override
+    public void writeCbor(CborWriter writer) throws IOException {
+        writer.array(5).hex(transactionHash).integer(blockNumber).integer(gasUsed)
+                .integer(status == null ? null : Numeric.decodeQuantity(status)).hex(contractAddress);
+    }
+}
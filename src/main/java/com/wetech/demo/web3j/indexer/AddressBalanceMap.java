@@ -0,0 +1,296 @@
+package com.wetech.demo.web3j.indexer;
+
+import com.wetech.demo.web3j.abi.AbiBytes;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Open-addressing hash map from 20-byte addresses to unsigned 256-bit balances, held in a
+ * direct buffer outside the Java heap. Each slot is a used flag, the address and the balance
+ * as four 64-bit limbs, so updates add and subtract in place without creating
+ * {@link BigInteger}s. Entries are never removed; a holder whose balance drops to zero keeps
+ * its slot.
+ *
+ * <p>Not thread-safe.
+ */
+final class AddressBalanceMap {
+
+    private static final int SLOT_SIZE = 64;
+    private static final int KEY = 4;
+    private static final int VALUE = 32;
+    private static final int LIMBS = 4;
+
+    private ByteBuffer slots;
+    private int capacity;
+    private int size;
+
+    AddressBalanceMap(int initialCapacity) {
+        allocate(Integer.highestOneBit(Math.max(16, initialCapacity - 1)) << 1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        allocate(capacity);
+    }
+
+    /**
+     * Get a balance
+     * @param address the 20 address bytes
+     * @return the balance, zero for unknown addresses
+     */
+    BigInteger get(byte[] address) {
+        int slot = find(address);
+        return slot < 0 ? BigInteger.ZERO : value(slot);
+    }
+
+    /**
+     * Add to a balance, wrapping modulo 2^256
+     * @param address the 20 address bytes
+     * @param amount the amount as limbs, most significant first
+     */
+    void add(byte[] address, long[] amount) {
+        int base = insert(address) + VALUE;
+        long carry = 0;
+        for (int i = LIMBS - 1; i >= 0; i--) {
+            int at = base + i * Long.BYTES;
+            long current = slots.getLong(at);
+            long sum = current + amount[i];
+            long withCarry = sum + carry;
+            carry = Long.compareUnsigned(sum, current) < 0 || Long.compareUnsigned(withCarry, sum) < 0 ? 1 : 0;
+            slots.putLong(at, withCarry);
+        }
+    }
+
+    /**
+     * Subtract from a balance, wrapping modulo 2^256
+     * @param address the 20 address bytes
+     * @param amount the amount as limbs, most significant first
+     */
+    void subtract(byte[] address, long[] amount) {
+        int base = insert(address) + VALUE;
+        long borrow = 0;
+        for (int i = LIMBS - 1; i >= 0; i--) {
+            int at = base + i * Long.BYTES;
+            long current = slots.getLong(at);
+            long difference = current - amount[i];
+            long withBorrow = difference - borrow;
+            borrow = Long.compareUnsigned(current, amount[i]) < 0
+                    || Long.compareUnsigned(difference, borrow) < 0 ? 1 : 0;
+            slots.putLong(at, withBorrow);
+        }
+    }
+
+    /**
+     * Find the largest non-zero balances
+     * @param limit the maximum number of entries
+     * @return address/balance pairs, largest balance first
+     */
+    List<Map.Entry<String, BigInteger>> top(int limit) {
+        // min-heap of slot indexes, so only the result entries are ever materialized
+        int[] heap = new int[Math.max(0, limit)];
+        int count = 0;
+        for (int slot = 0; slot < capacity && limit > 0; slot++) {
+            if (slots.get(slot * SLOT_SIZE) == 0 || isZero(slot)) {
+                continue;
+            }
+            if (count < limit) {
+                heap[count] = slot;
+                siftUp(heap, count++);
+            } else if (compare(slot, heap[0]) > 0) {
+                heap[0] = slot;
+                siftDown(heap, count);
+            }
+        }
+        List<Map.Entry<String, BigInteger>> result = new ArrayList<>(count);
+        while (count > 0) {
+            int slot = heap[0];
+            heap[0] = heap[--count];
+            siftDown(heap, count);
+            result.add(0, Map.entry(Numeric.toHexString(key(slot)), value(slot)));
+        }
+        return result;
+    }
+
+    /**
+     * Convert a value to limbs
+     * @param value an unsigned 256-bit value
+     * @return the limbs, most significant first
+     */
+    static long[] limbs(BigInteger value) {
+        ByteBuffer bytes = ByteBuffer.wrap(Numeric.toBytesPadded(value, AbiBytes.WORD));
+        long[] limbs = new long[LIMBS];
+        for (int i = 0; i < LIMBS; i++) {
+            limbs[i] = bytes.getLong();
+        }
+        return limbs;
+    }
+
+    /**
+     * Convert a raw 32-byte big-endian value to limbs
+     * @param word the value bytes
+     * @param limbs the array to fill, most significant first
+     */
+    static void limbs(byte[] word, long[] limbs) {
+        ByteBuffer bytes = ByteBuffer.wrap(word);
+        for (int i = 0; i < LIMBS; i++) {
+            limbs[i] = bytes.getLong(i * Long.BYTES);
+        }
+    }
+
+    private int find(byte[] address) {
+        int mask = capacity - 1;
+        for (int slot = hash(address) & mask; ; slot = (slot + 1) & mask) {
+            if (slots.get(slot * SLOT_SIZE) == 0) {
+                return -1;
+            }
+            if (keyEquals(slot, address)) {
+                return slot;
+            }
+        }
+    }
+
+    private int insert(byte[] address) {
+        if ((size + 1) * 4L > capacity * 3L) {
+            grow();
+        }
+        int mask = capacity - 1;
+        for (int slot = hash(address) & mask; ; slot = (slot + 1) & mask) {
+            int offset = slot * SLOT_SIZE;
+            if (slots.get(offset) == 0) {
+                slots.put(offset, (byte) 1);
+                slots.put(offset + KEY, address);
+                size++;
+                return offset;
+            }
+            if (keyEquals(slot, address)) {
+                return offset;
+            }
+        }
+    }
+
+    private void grow() {
+        ByteBuffer previous = slots;
+        int previousCapacity = capacity;
+        allocate(capacity * 2);
+        byte[] address = new byte[AbiBytes.ADDRESS_LENGTH];
+        for (int slot = 0; slot < previousCapacity; slot++) {
+            int offset = slot * SLOT_SIZE;
+            if (previous.get(offset) != 0) {
+                previous.get(offset + KEY, address);
+                int target = insert(address) + VALUE;
+                for (int i = 0; i < LIMBS; i++) {
+                    slots.putLong(target + i * Long.BYTES, previous.getLong(offset + VALUE + i * Long.BYTES));
+                }
+            }
+        }
+    }
+
+    private void allocate(int slotCount) {
+        if ((long) slotCount * SLOT_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Balance map cannot grow past " + capacity + " slots");
+        }
+        slots = ByteBuffer.allocateDirect(slotCount * SLOT_SIZE);
+        capacity = slotCount;
+        size = 0;
+    }
+
+    private boolean keyEquals(int slot, byte[] address) {
+        int offset = slot * SLOT_SIZE + KEY;
+        for (int i = 0; i < address.length; i++) {
+            if (slots.get(offset + i) != address[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] key(int slot) {
+        byte[] address = new byte[AbiBytes.ADDRESS_LENGTH];
+        slots.get(slot * SLOT_SIZE + KEY, address);
+        return address;
+    }
+
+    private BigInteger value(int slot) {
+        byte[] word = new byte[AbiBytes.WORD];
+        slots.get(slot * SLOT_SIZE + VALUE, word);
+        return new BigInteger(1, word);
+    }
+
+    private boolean isZero(int slot) {
+        int offset = slot * SLOT_SIZE + VALUE;
+        for (int i = 0; i < LIMBS; i++) {
+            if (slots.getLong(offset + i * Long.BYTES) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int compare(int slot, int other) {
+        for (int i = 0; i < LIMBS; i++) {
+            int result = Long.compareUnsigned(slots.getLong(slot * SLOT_SIZE + VALUE + i * Long.BYTES),
+                    slots.getLong(other * SLOT_SIZE + VALUE + i * Long.BYTES));
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (compare(heap[index], heap[parent]) >= 0) {
+                return;
+            }
+            swap(heap, index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int count) {
+        int index = 0;
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < count && compare(heap[left], heap[smallest]) < 0) {
+                smallest = left;
+            }
+            if (right < count && compare(heap[right], heap[smallest]) < 0) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(heap, index, smallest);
+            index = smallest;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int swapped = heap[i];
+        heap[i] = heap[j];
+        heap[j] = swapped;
+    }
+
+    private static int hash(byte[] address) {
+        // addresses are already uniformly distributed: mix the first eight bytes
+        long bits = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            bits = (bits << 8) | (address[i] & 0xff);
+        }
+        bits ^= bits >>> 33;
+        bits *= 0xff51afd7ed558ccdL;
+        bits ^= bits >>> 33;
+        return (int) bits;
+    }
+}
@@ -0,0 +1,51 @@
+package com.wetech.demo.web3j.indexer;
+
+import com.wetech.demo.web3j.abi.ContractCodec;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+
+/**
+ * A decoded SimpleStorage {@code DataChanged} or ZHX {@code Transfer}/{@code Approval} log.
+ * For approvals {@code from} is the owner and {@code to} the spender; for {@code DataChanged}
+ * both are the zero address and {@code value} is the new stored value.
+ */
+public record ContractEvent(Type type, long blockNumber, int logIndex, String transactionHash,
+                            String contract, String from, String to, BigInteger value) {
+
+    public static final String ZERO_ADDRESS = "0x" + "0".repeat(40);
+
+    private static final ThreadLocal<ContractCodec.Event> DECODED = ThreadLocal.withInitial(ContractCodec.Event::new);
+
+    public enum Type {
+        TRANSFER,
+        APPROVAL,
+        DATA_CHANGED
+    }
+
+    /**
+     * Decode a log with {@link ContractCodec#decodeEvent}
+     * @param log a log emitted by a SimpleStorage or ZHX contract
+     * @return the decoded event, or {@code null} if the log is not a DataChanged, Transfer or Approval
+     */
+    public static ContractEvent decode(Log log) {
+        ContractCodec.Event decoded = DECODED.get();
+        if (!ContractCodec.decodeEvent(log, decoded)) {
+            return null;
+        }
+        Type type = switch (decoded.getKind()) {
+            case TRANSFER -> Type.TRANSFER;
+            case APPROVAL -> Type.APPROVAL;
+            case DATA_CHANGED -> Type.DATA_CHANGED;
+        };
+        return new ContractEvent(type,
+                log.getBlockNumber().longValueExact(),
+                log.getLogIndex().intValueExact(),
+                log.getTransactionHash(),
+                Numeric.toHexString(decoded.getContract()),
+                Numeric.toHexString(decoded.getFrom()),
+                Numeric.toHexString(decoded.getTo()),
+                decoded.getValue());
+    }
+}
@@ -0,0 +1,296 @@
+package com.wetech.demo.web3j.indexer;
+
+import com.wetech.demo.web3j.abi.ContractSignatures;
+import com.wetech.demo.web3j.chain.BlockListener;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthGetCode;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Indexes SimpleStorage {@code DataChanged} and ZHX {@code Transfer}/{@code Approval} logs
+ * into the {@link EventStore}.
+ * It backfills history with {@code eth_getLogs} over block ranges that shrink when the node
+ * rejects a query and grow again while results stay small, then keeps following the chain
+ * head, staying {@code web3j.indexer.confirmations} blocks behind it.
+ *
+ * <p>Once caught up, the blocks between the confirmed checkpoint and the head are fed one at
+ * a time into the {@link HolderProjection}. Before each round the hash of the newest
+ * projected block is compared with the node's; on a mismatch the projection walks back to
+ * the last block still on the canonical chain and rolls back only the orphaned blocks. The
+ * same check runs before a confirmed range that overlaps projected blocks is applied, so
+ * blocks orphaned on their way to confirmation are undone rather than kept.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EventIndexer implements BlockListener {
+
+    private static final int SMALL_RESULT = 1000;
+
+    private final Web3j web3j;
+    private final EventStore store;
+    private final HolderProjection projection;
+
+    @Value("${web3j.indexer.enabled:false}")
+    private boolean enabled;
+
+    @Value("${web3j.indexer.contracts:}")
+    private List<String> contracts;
+
+    @Value("${web3j.indexer.start-block:0}")
+    private long startBlock;
+
+    @Value("${web3j.indexer.confirmations:6}")
+    private long confirmations;
+
+    @Value("${web3j.indexer.max-range:5000}")
+    private long maxRange;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Map<String, Boolean> fullHistory = new ConcurrentHashMap<>();
+    private ExecutorService executor;
+    private volatile long head = -1;
+    private volatile long target = -1;
+    private long range;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled || contracts.isEmpty()) {
+            return;
+        }
+        store.open();
+        projection.rebuild(store);
+        range = maxRange;
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-indexer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Indexing contract events of {} from block {}", contracts,
+                Math.max(startBlock, store.getLastIndexedBlock() + 1));
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Check whether the indexer is running
+     * @return true if events are being indexed
+     */
+    public boolean isEnabled() {
+        return executor != null;
+    }
+
+    /**
+     * Check whether the confirmed index holds a contract's full history up to a block
+     * @param contract the contract address
+     * @param block the block number
+     * @return true if the contract is indexed, had no code before the start block, and the block
+     *         is between the start block and the checkpoint
+     */
+    public boolean covers(String contract, long block) {
+        return executor != null && block >= startBlock && block <= store.getLastIndexedBlock()
+                && Boolean.TRUE.equals(fullHistory.get(contract.toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * Get the number of blocks after which a block is treated as final
+     * @return the confirmation depth
+     */
+    public long getConfirmations() {
+        return confirmations;
+    }
+
+    @Override
+    public void onBlocks(long fromBlock, long toBlock) {
+        if (executor == null) {
+            return;
+        }
+        head = toBlock;
+        target = toBlock - confirmations;
+        if (running.compareAndSet(false, true)) {
+            executor.execute(this::catchUp);
+        }
+    }
+
+    private void catchUp() {
+        try {
+            if (fullHistory.size() < contracts.size()) {
+                checkFullHistory();
+            }
+            long next = Math.max(startBlock, store.getLastIndexedBlock() + 1);
+            while (next <= target && !Thread.currentThread().isInterrupted()) {
+                long end = Math.min(target, next + range - 1);
+                List<Log> logs;
+                try {
+                    logs = fetchLogs(next, end);
+                } catch (IOException e) {
+                    if (end > next) {
+                        range = Math.max(1, (end - next + 1) / 2);
+                        log.debug("eth_getLogs {}-{} rejected ({}), shrinking range to {}", next, end,
+                                e.getMessage(), range);
+                        continue;
+                    }
+                    log.warn("Failed to index block {}: {}", next, e.getMessage());
+                    return;
+                }
+                List<ContractEvent> events = decode(logs);
+                if (projection.getBlock() >= next) {
+                    // the range overlaps projected blocks: undo any that were orphaned before
+                    // the canonical events are confirmed over them
+                    rollBackOrphans();
+                }
+                store.append(events, end);
+                projection.applyConfirmed(events, end);
+                if (logs.size() < SMALL_RESULT) {
+                    range = Math.min(maxRange, range * 2);
+                }
+                log.debug("Indexed {} events in blocks {}-{}", events.size(), next, end);
+                next = end + 1;
+            }
+            if (next > target && store.getLastIndexedBlock() >= startBlock - 1) {
+                followHead();
+            }
+        } catch (IOException e) {
+            log.debug("Holder projection paused: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            log.warn("Event indexer stopped: {}", e.getMessage());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void followHead() throws IOException {
+        long confirmed = store.getLastIndexedBlock();
+        rollBackOrphans();
+        long latest = head;
+        for (long number = projection.getBlock() + 1; number <= latest; number++) {
+            EthBlock.Block block = fetchBlock(number);
+            String parentHash = projection.getBlockHash(number - 1);
+            if (parentHash != null && !parentHash.equals(block.getParentHash())) {
+                // reorganized while following: the next round walks back from here
+                break;
+            }
+            List<Log> logs = fetchLogs(number, number);
+            if (logs.stream().anyMatch(entry -> !block.getHash().equals(entry.getBlockHash()))) {
+                break;
+            }
+            projection.applyBlock(number, block.getHash(), decode(logs));
+        }
+        projection.prune(confirmed);
+    }
+
+    /**
+     * Walk back from the newest projected block to the last one still on the canonical chain
+     * and roll back the blocks after it, checking every block an undo delta is held for
+     */
+    private void rollBackOrphans() throws IOException {
+        long tip = projection.getBlock();
+        long common = tip;
+        String hash;
+        while ((hash = projection.getBlockHash(common)) != null && !hash.equals(fetchBlock(common).getHash())) {
+            common--;
+        }
+        if (common < tip && !projection.rollbackTo(common)) {
+            log.warn("Reorg below block {} is deeper than the held undo deltas, rebuilding projection", tip);
+            projection.rebuild(store);
+        }
+    }
+
+    /**
+     * Find the contracts whose whole history the index holds. With a start block after genesis,
+     * those are the ones without code in the block before it; the others were deployed earlier
+     * and may have events the index never saw.
+     */
+    private void checkFullHistory() {
+        for (String contract : contracts) {
+            String key = contract.toLowerCase(Locale.ROOT);
+            if (fullHistory.containsKey(key)) {
+                continue;
+            }
+            if (startBlock <= 0) {
+                fullHistory.put(key, true);
+                continue;
+            }
+            EthGetCode code;
+            try {
+                code = web3j.ethGetCode(contract, DefaultBlockParameter.valueOf(BigInteger.valueOf(startBlock - 1)))
+                        .send();
+            } catch (IOException | RuntimeException e) {
+                // checked again with the next block
+                log.debug("Failed to check the code of {} before block {}: {}", contract, startBlock, e.getMessage());
+                continue;
+            }
+            // a node without that state cannot prove the contract is younger, so assume it is not
+            boolean complete = !code.hasError() && Numeric.cleanHexPrefix(code.getCode()).isEmpty();
+            fullHistory.put(key, complete);
+            if (!complete) {
+                log.info("{} may predate start block {}, historical reads of it go to the node", contract, startBlock);
+            }
+        }
+    }
+
+    private EthBlock.Block fetchBlock(long number) throws IOException {
+        EthBlock ethBlock = web3j.ethGetBlockByNumber(
+                DefaultBlockParameter.valueOf(BigInteger.valueOf(number)), false).send();
+        if (ethBlock.hasError() || ethBlock.getBlock() == null) {
+            throw new IOException("Block " + number + " not available");
+        }
+        return ethBlock.getBlock();
+    }
+
+    private static List<ContractEvent> decode(List<Log> logs) {
+        List<ContractEvent> events = new ArrayList<>(logs.size());
+        for (Log entry : logs) {
+            ContractEvent event = ContractEvent.decode(entry);
+            if (event != null && !Boolean.TRUE.equals(entry.isRemoved())) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    private List<Log> fetchLogs(long from, long to) throws IOException {
+        EthFilter filter = new EthFilter(
+                DefaultBlockParameter.valueOf(BigInteger.valueOf(from)),
+                DefaultBlockParameter.valueOf(BigInteger.valueOf(to)),
+                contracts);
+        filter.addOptionalTopics(ContractSignatures.DATA_CHANGED_TOPIC, ContractSignatures.TRANSFER_TOPIC,
+                ContractSignatures.APPROVAL_TOPIC);
+        EthLog ethLog = web3j.ethGetLogs(filter).send();
+        if (ethLog.hasError()) {
+            throw new IOException(ethLog.getError().getMessage());
+        }
+        List<Log> logs = new ArrayList<>(ethLog.getLogs().size());
+        for (EthLog.LogResult<?> result : ethLog.getLogs()) {
+            logs.add((Log) result.get());
+        }
+        return logs;
+    }
+}
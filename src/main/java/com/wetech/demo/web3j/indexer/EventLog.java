@@ -0,0 +1,325 @@
+package com.wetech.demo.web3j.indexer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of fixed-width event records, split into segment files that are memory
+ * mapped once and then read in place. Records are stored in chain order, so each segment
+ * carries a sparse index holding the block number of every {@value #INDEX_STRIDE}th record;
+ * a block range scan binary-searches that index and then walks the mapped records through a
+ * reused {@link EventRecord} view, without copying or allocating per record.
+ *
+ * <p>Every segment starts with a small header holding its record count and the last fully
+ * appended block. Records are forced to disk before the header is updated, and records past
+ * the checkpoint are dropped on open, so a crash in the middle of an append loses at most
+ * that append.
+ *
+ * <p>There is a single writer; readers may scan concurrently with appends and see the
+ * records committed when their scan started.
+ */
+@Slf4j
+public class EventLog {
+
+    static final int RECORD_SIZE = 144;
+    static final int INDEX_STRIDE = 64;
+
+    // record layout
+    static final int BLOCK_NUMBER = 0;
+    static final int LOG_INDEX = 8;
+    static final int TYPE = 12;
+    static final int CONTRACT = 16;
+    static final int FROM = 36;
+    static final int TO = 56;
+    static final int VALUE = 76;
+    static final int TRANSACTION_HASH = 108;
+
+    // header layout
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC = 0x5a484556;
+    private static final int VERSION = 1;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int COUNT_OFFSET = 16;
+    private static final int CHECKPOINT_OFFSET = 24;
+
+    private final Path directory;
+    private int recordsPerSegment;
+    private volatile Segment[] segments = new Segment[0];
+    private volatile long size;
+    private volatile long checkpoint = -1;
+
+    /**
+     * Create a log
+     * @param directory the directory holding the segment files
+     * @param recordsPerSegment the capacity of new segments; existing logs keep their own
+     */
+    public EventLog(Path directory, int recordsPerSegment) {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+    }
+
+    /**
+     * Map the existing segments and recover the committed records
+     * @throws IOException if a segment cannot be mapped or is not a valid segment file
+     */
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().endsWith(".seg")).sorted().toList();
+        }
+        Segment[] opened = new Segment[files.size()];
+        long committed = 0;
+        long lastCheckpoint = -1;
+        boolean full = true;
+        for (int i = 0; i < opened.length; i++) {
+            if (!files.get(i).getFileName().toString().equals(segmentName(i, ".seg"))) {
+                throw new IOException("Unexpected segment file " + files.get(i));
+            }
+            if (i == 0) {
+                recordsPerSegment = readCapacity(files.get(0));
+            }
+            opened[i] = map(i);
+            MappedByteBuffer header = opened[i].records;
+            if (header.getInt(0) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION
+                    || header.getInt(CAPACITY_OFFSET) != recordsPerSegment) {
+                throw new IOException("Invalid segment header in " + files.get(i));
+            }
+            long count = header.getLong(COUNT_OFFSET);
+            if (full) {
+                committed += count;
+                full = count == recordsPerSegment;
+            }
+            lastCheckpoint = Math.max(lastCheckpoint, header.getLong(CHECKPOINT_OFFSET));
+        }
+        segments = opened;
+        // a crash between updating two segment headers can leave records counted past the
+        // checkpoint: the indexer fetches those blocks again, so drop them
+        EventRecord record = new EventRecord();
+        while (committed > 0 && read(committed - 1, record).blockNumber() > lastCheckpoint) {
+            committed--;
+        }
+        size = committed;
+        checkpoint = lastCheckpoint;
+        log.info("Opened event log with {} records in {} segments up to block {}",
+                size, opened.length, checkpoint);
+    }
+
+    /**
+     * Get the number of committed records
+     * @return the record count
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Get the last block whose events are fully appended
+     * @return the block number, or -1 if nothing has been appended
+     */
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Append the events of a block range and advance the checkpoint past it
+     * @param events the events in chain order, all after the current checkpoint
+     * @param throughBlock the last block covered by this append
+     * @throws IOException if a new segment cannot be created
+     */
+    public void append(List<ContractEvent> events, long throughBlock) throws IOException {
+        long start = size;
+        long sequence = start;
+        for (ContractEvent event : events) {
+            if (event.blockNumber() <= checkpoint || event.blockNumber() > throughBlock) {
+                throw new IllegalArgumentException("Event in block " + event.blockNumber()
+                        + " is outside blocks " + (checkpoint + 1) + "-" + throughBlock);
+            }
+            int slot = (int) (sequence % recordsPerSegment);
+            Segment segment = segmentFor(sequence);
+            write(segment.records, HEADER_SIZE + slot * RECORD_SIZE, event);
+            if (slot % INDEX_STRIDE == 0) {
+                segment.index.putLong(slot / INDEX_STRIDE * Long.BYTES, event.blockNumber());
+            }
+            sequence++;
+        }
+        if (segments.length == 0) {
+            segmentFor(0);
+        }
+        Segment[] current = segments;
+        // the checkpoint goes to the segment holding the last record
+        int firstSegment = segmentOf(Math.max(start, 1) - 1);
+        int lastSegment = segmentOf(Math.max(sequence, 1) - 1);
+        for (int i = firstSegment; i <= lastSegment; i++) {
+            current[i].records.force();
+            current[i].index.force();
+        }
+        for (int i = firstSegment; i <= lastSegment; i++) {
+            long base = (long) i * recordsPerSegment;
+            current[i].records.putLong(COUNT_OFFSET, Math.min(recordsPerSegment, Math.max(0, sequence - base)));
+            if (i == lastSegment) {
+                current[i].records.putLong(CHECKPOINT_OFFSET, throughBlock);
+            }
+            current[i].records.force(0, HEADER_SIZE);
+        }
+        size = sequence;
+        checkpoint = throughBlock;
+    }
+
+    /**
+     * Point a record view at a committed record
+     * @param sequence the record number, starting at 0
+     * @param record the view to reuse
+     * @return the view
+     */
+    public EventRecord read(long sequence, EventRecord record) {
+        Segment segment = segments[segmentOf(sequence)];
+        int slot = (int) (sequence % recordsPerSegment);
+        record.wrap(segment.records, HEADER_SIZE + slot * RECORD_SIZE, sequence);
+        return record;
+    }
+
+    /**
+     * Visit the records of a block range in chain order. The visitor receives the same view
+     * for every record and must not keep it past the call.
+     * @param fromBlock the first block, inclusive
+     * @param toBlock the last block, inclusive
+     * @param visitor the callback for each record
+     * @return the number of records visited
+     */
+    public long scan(long fromBlock, long toBlock, Consumer<EventRecord> visitor) {
+        long end = size;
+        EventRecord record = new EventRecord();
+        long visited = 0;
+        for (long sequence = firstAtOrAfter(fromBlock, end); sequence < end; sequence++) {
+            if (read(sequence, record).blockNumber() > toBlock) {
+                break;
+            }
+            visitor.accept(record);
+            visited++;
+        }
+        return visited;
+    }
+
+    private long firstAtOrAfter(long block, long end) {
+        if (end == 0) {
+            return 0;
+        }
+        Segment[] current = segments;
+        int lastSegment = segmentOf(end - 1);
+        // the last segment whose first record is before the block holds the start, or it is
+        // the first record of the following segment
+        int low = 0;
+        int high = lastSegment;
+        int segment = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (current[mid].index.getLong(0) < block) {
+                segment = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (segment < 0) {
+            return 0;
+        }
+        long base = (long) segment * recordsPerSegment;
+        int entries = (int) ((Math.min(end - base, recordsPerSegment) + INDEX_STRIDE - 1) / INDEX_STRIDE);
+        low = 0;
+        high = entries - 1;
+        int entry = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (current[segment].index.getLong(mid * Long.BYTES) < block) {
+                entry = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        EventRecord record = new EventRecord();
+        long sequence = base + (long) entry * INDEX_STRIDE;
+        while (sequence < end && read(sequence, record).blockNumber() < block) {
+            sequence++;
+        }
+        return sequence;
+    }
+
+    private Segment segmentFor(long sequence) throws IOException {
+        int number = segmentOf(sequence);
+        Segment[] current = segments;
+        if (number < current.length) {
+            return current[number];
+        }
+        Segment segment = map(number);
+        segment.records.putInt(0, MAGIC);
+        segment.records.putInt(VERSION_OFFSET, VERSION);
+        segment.records.putInt(CAPACITY_OFFSET, recordsPerSegment);
+        segment.records.putLong(COUNT_OFFSET, 0);
+        segment.records.putLong(CHECKPOINT_OFFSET, -1);
+        segment.records.force(0, HEADER_SIZE);
+        Segment[] grown = Arrays.copyOf(current, number + 1);
+        grown[number] = segment;
+        segments = grown;
+        return segment;
+    }
+
+    private int segmentOf(long sequence) {
+        return (int) (sequence / recordsPerSegment);
+    }
+
+    private Segment map(int number) throws IOException {
+        long recordBytes = HEADER_SIZE + (long) recordsPerSegment * RECORD_SIZE;
+        long indexBytes = (long) ((recordsPerSegment + INDEX_STRIDE - 1) / INDEX_STRIDE) * Long.BYTES;
+        return new Segment(mapFile(directory.resolve(segmentName(number, ".seg")), recordBytes),
+                mapFile(directory.resolve(segmentName(number, ".idx")), indexBytes));
+    }
+
+    private int readCapacity(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Truncated segment file " + file);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).getInt(CAPACITY_OFFSET);
+        }
+    }
+
+    private static MappedByteBuffer mapFile(Path file, long length) throws IOException {
+        // the mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        }
+    }
+
+    private static String segmentName(int number, String suffix) {
+        return String.format("%010d%s", number, suffix);
+    }
+
+    private static void write(MappedByteBuffer buffer, int offset, ContractEvent event) {
+        buffer.putLong(offset + BLOCK_NUMBER, event.blockNumber());
+        buffer.putInt(offset + LOG_INDEX, event.logIndex());
+        buffer.put(offset + TYPE, (byte) event.type().ordinal());
+        buffer.put(offset + CONTRACT, Numeric.hexStringToByteArray(event.contract()));
+        buffer.put(offset + FROM, Numeric.hexStringToByteArray(event.from()));
+        buffer.put(offset + TO, Numeric.hexStringToByteArray(event.to()));
+        buffer.put(offset + VALUE, Numeric.toBytesPadded(event.value(), 32));
+        buffer.put(offset + TRANSACTION_HASH, Numeric.hexStringToByteArray(event.transactionHash()));
+    }
+
+    private record Segment(MappedByteBuffer records, MappedByteBuffer index) {
+    }
+}
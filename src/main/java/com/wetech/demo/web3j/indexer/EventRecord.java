@@ -0,0 +1,141 @@
+package com.wetech.demo.web3j.indexer;
+
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * A reusable view over one record of an {@link EventLog}. Field accessors read straight
+ * from the mapped segment; only {@link #value()} and {@link #toEvent()} allocate.
+ */
+public final class EventRecord {
+
+    private static final ContractEvent.Type[] TYPES = ContractEvent.Type.values();
+
+    private ByteBuffer buffer;
+    private int offset;
+    private long sequence;
+
+    void wrap(ByteBuffer buffer, int offset, long sequence) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.sequence = sequence;
+    }
+
+    public long sequence() {
+        return sequence;
+    }
+
+    public long blockNumber() {
+        return buffer.getLong(offset + EventLog.BLOCK_NUMBER);
+    }
+
+    public int logIndex() {
+        return buffer.getInt(offset + EventLog.LOG_INDEX);
+    }
+
+    public ContractEvent.Type type() {
+        return TYPES[buffer.get(offset + EventLog.TYPE)];
+    }
+
+    /**
+     * Check the emitting contract
+     * @param address the 20 address bytes
+     * @return true if the record was emitted by that contract
+     */
+    public boolean isContract(byte[] address) {
+        return matches(EventLog.CONTRACT, address);
+    }
+
+    /**
+     * Check the sender, recipient, owner or spender
+     * @param address the 20 address bytes
+     * @return true if the address is either party of the record
+     */
+    public boolean involves(byte[] address) {
+        return matches(EventLog.FROM, address) || matches(EventLog.TO, address);
+    }
+
+    /**
+     * Check the sender or owner
+     * @param address the 20 address bytes
+     * @return true if the address is the record's {@code from}
+     */
+    public boolean isFrom(byte[] address) {
+        return matches(EventLog.FROM, address);
+    }
+
+    /**
+     * Check the recipient or spender
+     * @param address the 20 address bytes
+     * @return true if the address is the record's {@code to}
+     */
+    public boolean isTo(byte[] address) {
+        return matches(EventLog.TO, address);
+    }
+
+    /**
+     * Copy the contract address into a caller-owned array
+     * @param target an array of at least 20 bytes
+     */
+    public void getContract(byte[] target) {
+        buffer.get(offset + EventLog.CONTRACT, target, 0, 20);
+    }
+
+    /**
+     * Copy the sender or owner address into a caller-owned array
+     * @param target an array of at least 20 bytes
+     */
+    public void getFrom(byte[] target) {
+        buffer.get(offset + EventLog.FROM, target, 0, 20);
+    }
+
+    /**
+     * Copy the recipient or spender address into a caller-owned array
+     * @param target an array of at least 20 bytes
+     */
+    public void getTo(byte[] target) {
+        buffer.get(offset + EventLog.TO, target, 0, 20);
+    }
+
+    /**
+     * Copy the raw 32-byte value into a caller-owned array
+     * @param target an array of at least 32 bytes
+     */
+    public void getValue(byte[] target) {
+        buffer.get(offset + EventLog.VALUE, target, 0, 32);
+    }
+
+    public BigInteger value() {
+        return new BigInteger(1, bytes(EventLog.VALUE, 32));
+    }
+
+    /**
+     * Copy the record out of the log
+     * @return the decoded event
+     */
+    public ContractEvent toEvent() {
+        return new ContractEvent(type(), blockNumber(), logIndex(),
+                Numeric.toHexString(bytes(EventLog.TRANSACTION_HASH, 32)),
+                Numeric.toHexString(bytes(EventLog.CONTRACT, 20)),
+                Numeric.toHexString(bytes(EventLog.FROM, 20)),
+                Numeric.toHexString(bytes(EventLog.TO, 20)),
+                value());
+    }
+
+    private boolean matches(int field, byte[] address) {
+        for (int i = 0; i < address.length; i++) {
+            if (buffer.get(offset + field + i) != address[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] bytes(int field, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset + field, bytes);
+        return bytes;
+    }
+}
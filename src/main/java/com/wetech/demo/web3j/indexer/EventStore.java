@@ -0,0 +1,398 @@
+package com.wetech.demo.web3j.indexer;
+
+import com.wetech.demo.web3j.abi.AbiBytes;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Embedded store of indexed contract events. Events are appended to a memory-mapped
+ * {@link EventLog}; a per-address index of record numbers is kept in memory and rebuilt by
+ * scanning the log on startup. The index is keyed by raw address bytes and filled straight
+ * from the mapped records, so the rebuild does not decode or allocate per event. Balances are projected separately by {@link HolderProjection}.
+ *
+ * <p>The same indexes answer state queries pinned to a past confirmed block: the stored value
+ * of a SimpleStorage contract is that of its last {@code DataChanged} event up to the block,
+ * and a ZHX balance is the sum of the holder's transfers up to the block. Record numbers are
+ * in chain order, so the events up to a block are a prefix found by binary search. The running
+ * balance of every holder is checkpointed each {@value #CHECKPOINT_INTERVAL} records, so a
+ * balance query replays at most that many transfers rather than the holder's whole history.
+ */
+@Slf4j
+@Component
+public class EventStore {
+
+    private static final int CHECKPOINT_INTERVAL = 64;
+    private static final int LIMBS = 4;
+
+    private final EventLog eventLog;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Key, Positions> history = new HashMap<>();
+    private final Map<Key, Positions> values = new HashMap<>();
+    // scratch space for indexing, only touched under the write lock
+    private final EventRecord indexed = new EventRecord();
+    private final byte[] from = new byte[20];
+    private final byte[] to = new byte[20];
+    private final byte[] word = new byte[AbiBytes.WORD];
+    private final long[] amount = new long[LIMBS];
+    private final long[] none = new long[LIMBS];
+    private final Key valueProbe = new Key(20);
+    private final Key historyProbe = new Key(40);
+
+    public EventStore(@Value("${web3j.indexer.data-dir:data/index}") String dataDir,
+                      @Value("${web3j.indexer.segment-records:262144}") int segmentRecords) {
+        this.eventLog = new EventLog(Path.of(dataDir), segmentRecords);
+    }
+
+    /**
+     * Open the store, rebuilding the in-memory indexes from the event log
+     * @throws IOException if the log cannot be mapped
+     */
+    public void open() throws IOException {
+        eventLog.open();
+        lock.writeLock().lock();
+        try {
+            eventLog.scan(0, Long.MAX_VALUE, this::index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Append the events of a block range and advance the checkpoint past it
+     * @param events the events in chain order
+     * @param throughBlock the last block covered by this append
+     */
+    public void append(List<ContractEvent> events, long throughBlock) {
+        lock.writeLock().lock();
+        try {
+            long sequence = eventLog.size();
+            eventLog.append(events, throughBlock);
+            for (; sequence < eventLog.size(); sequence++) {
+                index(eventLog.read(sequence, indexed));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get the last block whose events are fully stored
+     * @return the block number, or -1 if nothing has been indexed
+     */
+    public long getLastIndexedBlock() {
+        return eventLog.getCheckpoint();
+    }
+
+    /**
+     * Visit the stored events of a block range in chain order, reading them in place
+     * @param fromBlock the first block, inclusive
+     * @param toBlock the last block, inclusive
+     * @param visitor the callback for each record; the record view is reused between calls
+     * @return the number of records visited
+     */
+    public long scan(long fromBlock, long toBlock, Consumer<EventRecord> visitor) {
+        return eventLog.scan(fromBlock, toBlock, visitor);
+    }
+
+    /**
+     * Get the most recent events involving an address
+     * @param contract the token contract
+     * @param address the sender, recipient, owner or spender
+     * @param limit the maximum number of events
+     * @return the events, newest first
+     */
+    public List<ContractEvent> getHistory(String contract, String address, int limit) {
+        long[] positions;
+        lock.readLock().lock();
+        try {
+            Positions indexed = history.get(Key.of(contract, address));
+            positions = indexed == null ? new long[0] : indexed.lastN(limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<ContractEvent> events = new ArrayList<>(positions.length);
+        EventRecord record = new EventRecord();
+        for (int i = positions.length - 1; i >= 0; i--) {
+            events.add(eventLog.read(positions[i], record).toEvent());
+        }
+        return events;
+    }
+
+    /**
+     * Get the value a SimpleStorage contract held at the end of a block
+     * @param contract the SimpleStorage contract
+     * @param block a block no later than {@link #getLastIndexedBlock()}
+     * @return the value of the last {@code DataChanged} event up to the block, or zero if there was none
+     */
+    public BigInteger getStoredValue(String contract, long block) {
+        EventRecord record = new EventRecord();
+        lock.readLock().lock();
+        try {
+            Positions changes = values.get(Key.of(contract));
+            int count = changes == null ? 0 : countThrough(changes, block, record);
+            return count == 0 ? BigInteger.ZERO : eventLog.read(changes.get(count - 1), record).value();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the balance of a holder at the end of a block
+     * @param contract the token contract
+     * @param holder the holder address
+     * @param block a block no later than {@link #getLastIndexedBlock()}
+     * @return the amount received minus the amount sent up to the block
+     */
+    public BigInteger getBalance(String contract, String holder, long block) {
+        byte[] address = AbiBytes.address(holder);
+        EventRecord record = new EventRecord();
+        lock.readLock().lock();
+        try {
+            Positions positions = history.get(Key.of(contract, holder));
+            if (positions == null) {
+                return BigInteger.ZERO;
+            }
+            int count = countThrough(positions, block, record);
+            int checkpoints = count / CHECKPOINT_INTERVAL;
+            BigInteger balance = positions.checkpoint(checkpoints);
+            for (int i = checkpoints * CHECKPOINT_INTERVAL; i < count; i++) {
+                eventLog.read(positions.get(i), record);
+                if (record.type() != ContractEvent.Type.TRANSFER) {
+                    continue;
+                }
+                // a transfer to oneself is indexed once and nets to zero
+                if (record.isFrom(address)) {
+                    balance = balance.subtract(record.value());
+                }
+                if (record.isTo(address)) {
+                    balance = balance.add(record.value());
+                }
+            }
+            return balance;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the total supply of a token at the end of a block
+     * @param contract the token contract
+     * @param block a block no later than {@link #getLastIndexedBlock()}
+     * @return the minted minus the burned amount up to the block
+     */
+    public BigInteger getTotalSupply(String contract, long block) {
+        // mints and burns are the transfers of the zero address
+        return getBalance(contract, ContractEvent.ZERO_ADDRESS, block).negate();
+    }
+
+    private void index(EventRecord record) {
+        if (record.type() == ContractEvent.Type.DATA_CHANGED) {
+            record.getContract(valueProbe.bytes);
+            positions(values, valueProbe).add(record.sequence());
+            return;
+        }
+        record.getFrom(from);
+        // a transfer to oneself is indexed once and nets to zero, like an approval
+        boolean self = record.isTo(from);
+        boolean moves = record.type() == ContractEvent.Type.TRANSFER && !self;
+        if (moves) {
+            record.getValue(word);
+            AddressBalanceMap.limbs(word, amount);
+        }
+        addPosition(record, from, record.sequence(), moves ? amount : none, false);
+        if (!self) {
+            record.getTo(to);
+            addPosition(record, to, record.sequence(), moves ? amount : none, true);
+        }
+    }
+
+    private void addPosition(EventRecord record, byte[] address, long sequence, long[] amount, boolean credit) {
+        record.getContract(historyProbe.bytes);
+        System.arraycopy(address, 0, historyProbe.bytes, 20, 20);
+        positions(history, historyProbe).add(sequence, amount, credit);
+    }
+
+    private static Positions positions(Map<Key, Positions> index, Key probe) {
+        probe.rehash();
+        Positions positions = index.get(probe);
+        if (positions == null) {
+            positions = new Positions();
+            index.put(probe.copy(), positions);
+        }
+        return positions;
+    }
+
+    /**
+     * Count the positions of records up to a block
+     * @param positions record numbers in chain order
+     * @param block the last block, inclusive
+     * @param record a view to read records through
+     * @return the length of the prefix of positions in or before the block
+     */
+    private int countThrough(Positions positions, long block, EventRecord record) {
+        int low = 0;
+        int high = positions.size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (eventLog.read(positions.get(middle), record).blockNumber() <= block) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The raw bytes of a contract address, or of a contract address followed by a holder address.
+     */
+    private static final class Key {
+        private final byte[] bytes;
+        private int hash;
+
+        private Key(int length) {
+            this.bytes = new byte[length];
+        }
+
+        private static Key of(String contract) {
+            Key key = new Key(20);
+            System.arraycopy(AbiBytes.address(contract), 0, key.bytes, 0, 20);
+            key.rehash();
+            return key;
+        }
+
+        private static Key of(String contract, String address) {
+            Key key = new Key(40);
+            System.arraycopy(AbiBytes.address(contract), 0, key.bytes, 0, 20);
+            System.arraycopy(AbiBytes.address(address), 0, key.bytes, 20, 20);
+            key.rehash();
+            return key;
+        }
+
+        private void rehash() {
+            hash = Arrays.hashCode(bytes);
+        }
+
+        private Key copy() {
+            Key copy = new Key(bytes.length);
+            System.arraycopy(bytes, 0, copy.bytes, 0, bytes.length);
+            copy.hash = hash;
+            return copy;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && Arrays.equals(bytes, key.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A growable list of record numbers. Holder lists also keep the running balance and a copy
+     * of it after every {@code CHECKPOINT_INTERVAL} records, as limbs wrapping modulo 2^256.
+     */
+    private static final class Positions {
+        private long[] values = new long[4];
+        private int size;
+        private long[] balance;
+        private long[] checkpoints;
+
+        private void add(long sequence) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = sequence;
+        }
+
+        private void add(long sequence, long[] amount, boolean credit) {
+            add(sequence);
+            if (balance == null) {
+                balance = new long[LIMBS];
+                checkpoints = new long[LIMBS];
+            }
+            if (credit) {
+                addTo(balance, amount);
+            } else {
+                subtractFrom(balance, amount);
+            }
+            if (size % CHECKPOINT_INTERVAL == 0) {
+                int at = (size / CHECKPOINT_INTERVAL - 1) * LIMBS;
+                if (at == checkpoints.length) {
+                    checkpoints = Arrays.copyOf(checkpoints, at * 2);
+                }
+                System.arraycopy(balance, 0, checkpoints, at, LIMBS);
+            }
+        }
+
+        /**
+         * Get a checkpointed balance
+         * @param count the number of checkpoints passed
+         * @return the balance after the first {@code count * CHECKPOINT_INTERVAL} records, negative
+         *         for the zero address
+         */
+        private BigInteger checkpoint(int count) {
+            if (count == 0) {
+                return BigInteger.ZERO;
+            }
+            byte[] bytes = new byte[AbiBytes.WORD];
+            for (int i = 0; i < AbiBytes.WORD; i++) {
+                bytes[i] = (byte) (checkpoints[(count - 1) * LIMBS + i / Long.BYTES]
+                        >>> (8 * (Long.BYTES - 1 - i % Long.BYTES)));
+            }
+            // read as two's complement: only the zero address, whose mints are debits, goes below zero
+            return new BigInteger(bytes);
+        }
+
+        private long get(int index) {
+            return values[index];
+        }
+
+        private long[] lastN(int limit) {
+            int count = Math.min(limit, size);
+            return Arrays.copyOfRange(values, size - count, size);
+        }
+
+        private static void addTo(long[] target, long[] amount) {
+            long carry = 0;
+            for (int i = LIMBS - 1; i >= 0; i--) {
+                long current = target[i];
+                long sum = current + amount[i];
+                long withCarry = sum + carry;
+                carry = Long.compareUnsigned(sum, current) < 0 || Long.compareUnsigned(withCarry, sum) < 0 ? 1 : 0;
+                target[i] = withCarry;
+            }
+        }
+
+        private static void subtractFrom(long[] target, long[] amount) {
+            long borrow = 0;
+            for (int i = LIMBS - 1; i >= 0; i--) {
+                long current = target[i];
+                long difference = current - amount[i];
+                long withBorrow = difference - borrow;
+                borrow = Long.compareUnsigned(current, amount[i]) < 0
+                        || Long.compareUnsigned(difference, borrow) < 0 ? 1 : 0;
+                target[i] = withBorrow;
+            }
+        }
+    }
+}
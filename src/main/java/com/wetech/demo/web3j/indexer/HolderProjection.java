@@ -0,0 +1,302 @@
+package com.wetech.demo.web3j.indexer;
+
+import com.wetech.demo.web3j.abi.AbiBytes;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory projection of ZHX balances and total supply, updated incrementally from
+ * {@code Transfer} events. Confirmed ranges are applied permanently; blocks near the chain
+ * head are applied one at a time together with an undo delta, so a reorg rolls back just
+ * the orphaned blocks. Deltas are dropped once their block is confirmed.
+ */
+@Slf4j
+@Component
+public class HolderProjection {
+
+    private static final byte[] ZERO_ADDRESS = new byte[AbiBytes.ADDRESS_LENGTH];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<TokenState> tokens = new ArrayList<>();
+    private final Deque<BlockDelta> deltas = new ArrayDeque<>();
+    private long block = -1;
+
+    /**
+     * Rebuild the projection from the confirmed events of a store
+     * @param store the event store
+     */
+    public void rebuild(EventStore store) {
+        lock.writeLock().lock();
+        try {
+            tokens.clear();
+            deltas.clear();
+            byte[] contract = new byte[AbiBytes.ADDRESS_LENGTH];
+            byte[] from = new byte[AbiBytes.ADDRESS_LENGTH];
+            byte[] to = new byte[AbiBytes.ADDRESS_LENGTH];
+            byte[] value = new byte[AbiBytes.WORD];
+            long[] amount = new long[4];
+            long checkpoint = store.getLastIndexedBlock();
+            store.scan(0, checkpoint, record -> {
+                if (record.type() == ContractEvent.Type.TRANSFER) {
+                    record.getContract(contract);
+                    record.getFrom(from);
+                    record.getTo(to);
+                    record.getValue(value);
+                    AddressBalanceMap.limbs(value, amount);
+                    transfer(token(contract), from, to, amount, false);
+                }
+            });
+            block = checkpoint;
+            log.info("Rebuilt holder projection up to block {}", block);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Apply the events of a confirmed block range. Events in blocks the projection already
+     * covers are skipped.
+     * @param events the events in chain order
+     * @param throughBlock the last block covered by the events
+     */
+    public void applyConfirmed(List<ContractEvent> events, long throughBlock) {
+        lock.writeLock().lock();
+        try {
+            if (throughBlock <= block) {
+                return;
+            }
+            for (ContractEvent event : events) {
+                if (event.blockNumber() > block && event.type() == ContractEvent.Type.TRANSFER) {
+                    apply(event, false);
+                }
+            }
+            block = throughBlock;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Apply the events of the next unconfirmed block, keeping an undo delta for it
+     * @param number the block number, one past the projected block
+     * @param hash the block hash
+     * @param events the events of the block in log order
+     */
+    public void applyBlock(long number, String hash, List<ContractEvent> events) {
+        lock.writeLock().lock();
+        try {
+            if (number != block + 1) {
+                throw new IllegalArgumentException("Expected block " + (block + 1) + " but got " + number);
+            }
+            List<ContractEvent> transfers = new ArrayList<>();
+            for (ContractEvent event : events) {
+                if (event.type() == ContractEvent.Type.TRANSFER) {
+                    apply(event, false);
+                    transfers.add(event);
+                }
+            }
+            deltas.addLast(new BlockDelta(number, hash, transfers));
+            block = number;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Undo the unconfirmed blocks after a block
+     * @param number the last block to keep
+     * @return false if the blocks to undo are no longer held, in which case nothing is changed
+     */
+    public boolean rollbackTo(long number) {
+        lock.writeLock().lock();
+        try {
+            if (number >= block) {
+                return true;
+            }
+            if (deltas.isEmpty() || deltas.peekFirst().number() > number + 1) {
+                return false;
+            }
+            while (!deltas.isEmpty() && deltas.peekLast().number() > number) {
+                List<ContractEvent> transfers = deltas.removeLast().transfers();
+                for (int i = transfers.size() - 1; i >= 0; i--) {
+                    apply(transfers.get(i), true);
+                }
+            }
+            log.info("Rolled back holder projection from block {} to {}", block, number);
+            block = number;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop the undo deltas of confirmed blocks
+     * @param confirmedBlock the last block that can no longer be reorganized
+     */
+    public void prune(long confirmedBlock) {
+        lock.writeLock().lock();
+        try {
+            while (!deltas.isEmpty() && deltas.peekFirst().number() <= confirmedBlock) {
+                deltas.removeFirst();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get the hash recorded for an unconfirmed block
+     * @param number the block number
+     * @return the hash, or {@code null} if the block is confirmed or not projected
+     */
+    public String getBlockHash(long number) {
+        lock.readLock().lock();
+        try {
+            Iterator<BlockDelta> newestFirst = deltas.descendingIterator();
+            while (newestFirst.hasNext()) {
+                BlockDelta delta = newestFirst.next();
+                if (delta.number() == number) {
+                    return delta.hash();
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the last block applied to the projection
+     * @return the block number, or -1 if nothing has been applied
+     */
+    public long getBlock() {
+        lock.readLock().lock();
+        try {
+            return block;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the projected balance of a holder
+     * @param contract the token contract
+     * @param holder the holder address
+     * @return the balance as of the projected block
+     */
+    public BigInteger getBalance(String contract, String holder) {
+        byte[] address = AbiBytes.address(holder);
+        lock.readLock().lock();
+        try {
+            TokenState token = find(AbiBytes.address(contract));
+            return token == null ? BigInteger.ZERO : token.balances.get(address);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the projected total supply
+     * @param contract the token contract
+     * @return the minted minus the burned amount as of the projected block
+     */
+    public BigInteger getTotalSupply(String contract) {
+        lock.readLock().lock();
+        try {
+            TokenState token = find(AbiBytes.address(contract));
+            return token == null ? BigInteger.ZERO : token.supply.get(ZERO_ADDRESS);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the holders with the largest balances
+     * @param contract the token contract
+     * @param limit the maximum number of holders
+     * @return holder/balance pairs, largest balance first
+     */
+    public List<Map.Entry<String, BigInteger>> getTopHolders(String contract, int limit) {
+        lock.readLock().lock();
+        try {
+            TokenState token = find(AbiBytes.address(contract));
+            return token == null ? List.of() : token.balances.top(limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(ContractEvent event, boolean undo) {
+        transfer(token(Numeric.hexStringToByteArray(event.contract())),
+                Numeric.hexStringToByteArray(event.from()),
+                Numeric.hexStringToByteArray(event.to()),
+                AddressBalanceMap.limbs(event.value()),
+                undo);
+    }
+
+    private static void transfer(TokenState token, byte[] from, byte[] to, long[] amount, boolean undo) {
+        // undoing a transfer moves the amount back from the recipient to the sender
+        byte[] debited = undo ? to : from;
+        byte[] credited = undo ? from : to;
+        if (Arrays.equals(debited, ZERO_ADDRESS)) {
+            token.supply.add(ZERO_ADDRESS, amount);
+        } else {
+            token.balances.subtract(debited, amount);
+        }
+        if (Arrays.equals(credited, ZERO_ADDRESS)) {
+            token.supply.subtract(ZERO_ADDRESS, amount);
+        } else {
+            token.balances.add(credited, amount);
+        }
+    }
+
+    private TokenState token(byte[] contract) {
+        TokenState token = find(contract);
+        if (token == null) {
+            token = new TokenState(contract.clone());
+            tokens.add(token);
+        }
+        return token;
+    }
+
+    private TokenState find(byte[] contract) {
+        // only a handful of contracts are indexed, so a scan beats hashing
+        for (TokenState token : tokens) {
+            if (Arrays.equals(token.contract, contract)) {
+                return token;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The balances of one token contract. The total supply is kept as a one-entry map so it
+     * shares the in-place 256-bit arithmetic.
+     */
+    private static final class TokenState {
+        private final byte[] contract;
+        private final AddressBalanceMap balances = new AddressBalanceMap(1024);
+        private final AddressBalanceMap supply = new AddressBalanceMap(1);
+
+        private TokenState(byte[] contract) {
+            this.contract = contract;
+        }
+
+    }
+
+    private record BlockDelta(long number, String hash, List<ContractEvent> transfers) {
+    }
+}
@@ -0,0 +1,124 @@
+package com.wetech.demo.web3j.job;
+
+import lombok.Getter;
+
+import java.math.BigInteger;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A batch of ZHX {@code mint} or {@code transfer} calls signed one in-flight window at a time
+ * with consecutive nonces and broadcast by the {@link BulkJobService}. Progress is tracked per item and
+ * mirrored into the job's {@link JobJournal}.
+ */
+@Getter
+public class BulkJob {
+
+    public enum Operation {
+        MINT, TRANSFER
+    }
+
+    public enum State {
+        SIGNING, DISPATCHING, COMPLETED, FAILED
+    }
+
+    public enum ItemStatus {
+        PENDING, SENT, MINED, REVERTED, FAILED, SKIPPED;
+
+        /**
+         * Check whether an item in this status will never be sent again
+         * @return true for mined, reverted, failed and skipped items
+         */
+        public boolean isFinal() {
+            return this != PENDING && this != SENT;
+        }
+    }
+
+    private final String id;
+    private final String token;
+    private final Operation operation;
+    private final long createdAt;
+    private final double rateLimit;
+    private final int maxInFlight;
+    private final List<Item> items;
+    private volatile State state = State.SIGNING;
+    private volatile String error;
+
+    BulkJob(String id, String token, Operation operation, long createdAt, double rateLimit, int maxInFlight,
+            List<Item> items) {
+        this.id = id;
+        this.token = token;
+        this.operation = operation;
+        this.createdAt = createdAt;
+        this.rateLimit = rateLimit;
+        this.maxInFlight = maxInFlight;
+        this.items = items;
+    }
+
+    /**
+     * Count the items in each status
+     * @return the number of items per status
+     */
+    public Map<ItemStatus, Integer> getCounts() {
+        Map<ItemStatus, Integer> counts = new EnumMap<>(ItemStatus.class);
+        for (ItemStatus status : ItemStatus.values()) {
+            counts.put(status, 0);
+        }
+        for (Item item : items) {
+            counts.merge(item.status, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Check whether the job has finished, successfully or not
+     * @return true once no more items will be sent
+     */
+    public boolean isDone() {
+        return state == State.COMPLETED || state == State.FAILED;
+    }
+
+    void setState(State state) {
+        this.state = state;
+    }
+
+    void setError(String error) {
+        this.error = error;
+    }
+
+    /**
+     * One recipient of the job, with the transaction signed for it
+     */
+    @Getter
+    public static class Item {
+
+        private final int index;
+        private final String recipient;
+        private final BigInteger amount;
+        private volatile long nonce = -1;
+        private volatile String transactionHash;
+        private volatile String signedTransaction;
+        private volatile ItemStatus status = ItemStatus.PENDING;
+        private volatile long blockNumber = -1;
+        private volatile String error;
+
+        Item(int index, String recipient, BigInteger amount) {
+            this.index = index;
+            this.recipient = recipient;
+            this.amount = amount;
+        }
+
+        void signed(long nonce, String transactionHash, String signedTransaction) {
+            this.nonce = nonce;
+            this.transactionHash = transactionHash;
+            this.signedTransaction = signedTransaction;
+        }
+
+        void update(ItemStatus status, long blockNumber, String error) {
+            this.status = status;
+            this.blockNumber = blockNumber;
+            this.error = error;
+        }
+    }
+}
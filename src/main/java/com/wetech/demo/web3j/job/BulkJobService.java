@@ -0,0 +1,422 @@
+package com.wetech.demo.web3j.job;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wetech.demo.web3j.abi.AbiBytes;
+import com.wetech.demo.web3j.abi.ContractCodec;
+import com.wetech.demo.web3j.tx.NonceManager;
+import com.wetech.demo.web3j.tx.PipelinedTransactionManager;
+import com.wetech.demo.web3j.tx.ReceiptTracker;
+import com.wetech.demo.web3j.tx.TransactionSigner;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.tx.gas.ContractGasProvider;
+import org.web3j.utils.Numeric;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs bulk ZHX {@code mint}/{@code transfer} jobs. A job reserves one nonce per item,
+ * signs every transaction as one batch on the {@link TransactionSigner} pool, persists them to its
+ * {@link JobJournal}, then broadcasts them in nonce order no faster than its rate limit and
+ * with at most its window of transactions waiting for a receipt. Unfinished jobs are
+ * resumed on startup by re-sending the persisted payloads. After the first item that cannot
+ * be sent or mined, the remaining items are skipped, since their nonces can no longer be
+ * mined.
+ */
+@Slf4j
+@Service
+public class BulkJobService {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String SUFFIX = ".job";
+
+    private final Web3j web3j;
+    private final PipelinedTransactionManager transactionManager;
+    private final TransactionSigner signer;
+    private final NonceManager nonceManager;
+    private final ReceiptTracker receiptTracker;
+    private final ContractGasProvider gasProvider;
+    private final Path directory;
+    private final double defaultRateLimit;
+    private final int defaultMaxInFlight;
+    private final int maxItems;
+
+    private final Map<String, BulkJob> jobs = new ConcurrentHashMap<>();
+    private ExecutorService runner;
+
+    public BulkJobService(Web3j web3j, PipelinedTransactionManager transactionManager, TransactionSigner signer,
+                          NonceManager nonceManager, ReceiptTracker receiptTracker,
+                          ContractGasProvider gasProvider,
+                          @Value("${web3j.jobs.dir:data/jobs}") String directory,
+                          @Value("${web3j.jobs.rate-limit:50}") double defaultRateLimit,
+                          @Value("${web3j.jobs.max-in-flight:64}") int defaultMaxInFlight,
+                          @Value("${web3j.jobs.max-items:100000}") int maxItems) {
+        this.web3j = web3j;
+        this.transactionManager = transactionManager;
+        this.signer = signer;
+        this.nonceManager = nonceManager;
+        this.receiptTracker = receiptTracker;
+        this.gasProvider = gasProvider;
+        this.directory = Paths.get(directory);
+        this.defaultRateLimit = defaultRateLimit;
+        this.defaultMaxInFlight = defaultMaxInFlight;
+        this.maxItems = maxItems;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        runner = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "bulk-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                BulkJob job = JobJournal.replay(file);
+                jobs.put(job.getId(), job);
+                if (!job.isDone()) {
+                    log.info("Resuming bulk job {} ({} items, {})", job.getId(), job.getItems().size(),
+                            job.getCounts());
+                    // before any request can take one of the nonces the job signed before the restart
+                    boolean reserved = reserveSigned(job);
+                    JobJournal journal = JobJournal.reopen(file);
+                    runner.execute(() -> run(job, journal, reserved));
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (runner != null) {
+            runner.shutdownNow();
+        }
+    }
+
+    /**
+     * Create and start a job from CSV ({@code recipient,amount}) or JSON-lines
+     * ({@code {"recipient": ..., "amount": ...}}) input; the two may be mixed, and a leading
+     * {@code recipient,amount} header, blank lines and {@code #} comments are skipped. Amounts are in the token's
+     * smallest unit.
+     * @param tokenAddress the ZHX contract address
+     * @param operation whether to mint to or transfer to each recipient
+     * @param input the items
+     * @param rateLimit the maximum transactions sent per second, or {@code null} for the default
+     * @param maxInFlight the maximum transactions waiting for a receipt, or {@code null} for the default
+     * @return the job, already persisted and being dispatched
+     * @throws IOException if the input cannot be read or the checkpoint file cannot be written
+     * @throws IllegalArgumentException if the input or limits are invalid
+     */
+    public BulkJob submit(String tokenAddress, BulkJob.Operation operation, InputStream input,
+                          Double rateLimit, Integer maxInFlight) throws IOException {
+        String token = Numeric.toHexString(AbiBytes.address(tokenAddress));
+        double rate = rateLimit != null ? rateLimit : defaultRateLimit;
+        int window = maxInFlight != null ? maxInFlight : defaultMaxInFlight;
+        if (rate <= 0 || window <= 0) {
+            throw new IllegalArgumentException("Rate limit and in-flight window must be positive");
+        }
+        List<BulkJob.Item> items = parse(input);
+        if (items.isEmpty()) {
+            throw new IllegalArgumentException("No items in job input");
+        }
+        BulkJob job = new BulkJob(UUID.randomUUID().toString(), token, operation, System.currentTimeMillis(),
+                rate, window, items);
+        JobJournal journal = JobJournal.create(directory.resolve(job.getId() + SUFFIX), job);
+        jobs.put(job.getId(), job);
+        log.info("Created bulk {} job {} with {} items for {}", operation, job.getId(), items.size(), token);
+        runner.execute(() -> run(job, journal, false));
+        return job;
+    }
+
+    /**
+     * Get a job
+     * @param jobId the job id
+     * @return the job, if it exists
+     */
+    public Optional<BulkJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    private void run(BulkJob job, JobJournal journal, boolean reserved) {
+        try (journal) {
+            if (!reserved) {
+                nonceManager.advancePast(transactionManager.getFromAddress(), lastSignedNonce(job));
+            }
+            job.setState(BulkJob.State.DISPATCHING);
+            dispatch(job, journal);
+            journal.writeDone(job);
+            log.info("Bulk job {} finished: {} {}", job.getId(), job.getState(), job.getCounts());
+        } catch (InterruptedException e) {
+            // shutting down: the journal lets the job resume on the next start
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            // no done record is written, so the job is retried from its journal on the next start
+            log.error("Bulk job {} failed", job.getId(), e);
+            job.setError(e.getMessage());
+            job.setState(BulkJob.State.FAILED);
+        }
+    }
+
+    /**
+     * Advance the shared nonce counter past the nonces a resumed job signed before the restart.
+     * Startup runs before any request is served, so no interactive transaction can have taken
+     * one of them yet.
+     * @return false if the node could not be reached and the job has to do it when it runs
+     */
+    private boolean reserveSigned(BulkJob job) {
+        try {
+            nonceManager.advancePast(transactionManager.getFromAddress(), lastSignedNonce(job));
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to reserve the nonces of bulk job {} at startup: {}", job.getId(), e.getMessage());
+            return false;
+        }
+    }
+
+    private static long lastSignedNonce(BulkJob job) {
+        return job.getItems().stream().mapToLong(BulkJob.Item::getNonce).max().orElse(-1);
+    }
+
+    /**
+     * Sign the next window of items with consecutive nonces taken from the shared counter and
+     * persist them. Nonces are only reserved for items about to be sent, so interactive
+     * transactions are never queued behind the rest of the job.
+     */
+    private void sign(BulkJob job, JobJournal journal, List<BulkJob.Item> items) throws IOException {
+        long start = System.nanoTime();
+        long firstNonce = nonceManager.reserve(transactionManager.getFromAddress(), items.size());
+        ContractCodec codec = ContractCodec.local();
+        try {
+            List<RawTransaction> rawTransactions = new ArrayList<>(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                BulkJob.Item item = items.get(i);
+                String data = (job.getOperation() == BulkJob.Operation.MINT
+                        ? codec.mint(item.getRecipient(), item.getAmount())
+                        : codec.transfer(item.getRecipient(), item.getAmount())).toHex();
+                rawTransactions.add(transactionManager.createTransaction(job.getToken(), data, BigInteger.ZERO,
+                        gasProvider, BigInteger.valueOf(firstNonce + i)));
+            }
+            List<String> signed = signer.signAll(rawTransactions).join();
+            for (int i = 0; i < items.size(); i++) {
+                String signedTransaction = signed.get(i);
+                items.get(i).signed(firstNonce + i, Hash.sha3(signedTransaction), signedTransaction);
+            }
+            journal.writeSigned(items);
+        } catch (IOException | RuntimeException e) {
+            // nothing was sent: give the nonces back and sign the items again later
+            for (int i = 0; i < items.size(); i++) {
+                items.get(i).signed(-1, null, null);
+                nonceManager.release(transactionManager.getFromAddress(), firstNonce + i);
+            }
+            throw e;
+        }
+        log.debug("Signed {} transactions of bulk job {} in {} ms", items.size(), job.getId(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static List<BulkJob.Item> unsigned(BulkJob job, int from, int limit) {
+        List<BulkJob.Item> items = new ArrayList<>(limit);
+        for (int i = from; i < job.getItems().size() && items.size() < limit; i++) {
+            BulkJob.Item item = job.getItems().get(i);
+            if (item.getNonce() < 0 && !item.getStatus().isFinal()) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    private void dispatch(BulkJob job, JobJournal journal) throws InterruptedException {
+        Semaphore window = new Semaphore(job.getMaxInFlight());
+        AtomicReference<String> failure = new AtomicReference<>();
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / job.getRateLimit());
+        long next = System.nanoTime();
+        for (BulkJob.Item item : job.getItems()) {
+            if (item.getStatus().isFinal()) {
+                continue;
+            }
+            window.acquire();
+            if (failure.get() != null) {
+                window.release();
+                break;
+            }
+            if (item.getNonce() < 0) {
+                try {
+                    // as many as can be sent before a receipt frees the window
+                    sign(job, journal, unsigned(job, item.getIndex(), window.availablePermits() + 1));
+                } catch (IOException | RuntimeException e) {
+                    window.release();
+                    log.warn("Failed to sign items of bulk job {}: {}", job.getId(), e.toString());
+                    failure.compareAndSet(null, "Item " + item.getIndex() + " could not be signed: " + e.getMessage());
+                    break;
+                }
+            }
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            next = Math.max(next + interval, System.nanoTime());
+            send(job, journal, item).whenComplete((receipt, error) -> {
+                if (error != null) {
+                    String message = cause(error).getMessage();
+                    record(journal, item, BulkJob.ItemStatus.FAILED, -1, message);
+                    failure.compareAndSet(null, "Item " + item.getIndex() + " failed: " + message);
+                } else {
+                    record(journal, item, receipt.isStatusOK() ? BulkJob.ItemStatus.MINED
+                            : BulkJob.ItemStatus.REVERTED, receipt.getBlockNumber().longValueExact(), null);
+                }
+                window.release();
+            });
+        }
+        window.acquire(job.getMaxInFlight());
+        if (failure.get() == null) {
+            job.setState(BulkJob.State.COMPLETED);
+            return;
+        }
+        List<BulkJob.Item> skipped = new ArrayList<>();
+        for (BulkJob.Item item : job.getItems()) {
+            if (!item.getStatus().isFinal()) {
+                if (item.getStatus() == BulkJob.ItemStatus.PENDING && item.getNonce() >= 0) {
+                    skipped.add(item);
+                }
+                record(journal, item, BulkJob.ItemStatus.SKIPPED, -1, null);
+            }
+        }
+        // the nonces of skipped items that were signed were never used
+        releaseNonces(skipped);
+        job.setError(failure.get());
+        job.setState(BulkJob.State.FAILED);
+    }
+
+    private CompletableFuture<TransactionReceipt> send(BulkJob job, JobJournal journal, BulkJob.Item item) {
+        return transactionManager.sendSigned(item.getSignedTransaction())
+                .thenCompose(hash -> {
+                    if (item.getStatus() != BulkJob.ItemStatus.SENT) {
+                        record(journal, item, BulkJob.ItemStatus.SENT, -1, null);
+                    }
+                    return receiptTracker.track(hash);
+                })
+                // a rejected re-send may be one whose nonce was mined before a restart
+                .exceptionallyCompose(error -> web3j.ethGetTransactionReceipt(item.getTransactionHash()).sendAsync()
+                        .thenCompose(response -> response.getTransactionReceipt()
+                                .map(CompletableFuture::completedFuture)
+                                .orElseGet(() -> CompletableFuture.failedFuture(cause(error)))));
+    }
+
+    private void record(JobJournal journal, BulkJob.Item item, BulkJob.ItemStatus status, long blockNumber,
+                        String error) {
+        item.update(status, blockNumber, error);
+        try {
+            journal.writeStatus(item);
+        } catch (IOException e) {
+            log.warn("Failed to checkpoint item {}: {}", item.getIndex(), e.toString());
+        }
+    }
+
+    private void releaseNonces(List<BulkJob.Item> items) {
+        for (BulkJob.Item item : items) {
+            nonceManager.release(transactionManager.getFromAddress(), item.getNonce());
+        }
+    }
+
+    private List<BulkJob.Item> parse(InputStream input) throws IOException {
+        List<BulkJob.Item> items = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String recipient;
+            String amount;
+            if (trimmed.startsWith("{")) {
+                JsonNode node;
+                try {
+                    node = MAPPER.readTree(trimmed);
+                } catch (JsonProcessingException e) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": invalid JSON");
+                }
+                recipient = node.path("recipient").asText("");
+                amount = node.path("amount").asText("");
+            } else {
+                String[] fields = trimmed.split(",");
+                if (fields.length != 2) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": expected recipient,amount");
+                }
+                recipient = fields[0].strip();
+                amount = fields[1].strip();
+                if (items.isEmpty() && recipient.equalsIgnoreCase("recipient")
+                        && amount.equalsIgnoreCase("amount")) {
+                    continue;
+                }
+            }
+            items.add(new BulkJob.Item(items.size(), parseRecipient(recipient, lineNumber),
+                    parseAmount(amount, lineNumber)));
+            if (items.size() > maxItems) {
+                throw new IllegalArgumentException("Job input has more than " + maxItems + " items");
+            }
+        }
+        return items;
+    }
+
+    private static String parseRecipient(String recipient, int lineNumber) {
+        try {
+            AbiBytes.address(recipient);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": invalid recipient " + recipient);
+        }
+        return recipient.toLowerCase(Locale.ROOT);
+    }
+
+    private static BigInteger parseAmount(String amount, int lineNumber) {
+        BigInteger value;
+        try {
+            value = new BigInteger(amount);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": invalid amount " + amount);
+        }
+        if (value.signum() <= 0 || value.bitLength() > 256) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": amount out of range " + amount);
+        }
+        return value;
+    }
+
+    private static Throwable cause(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
@@ -0,0 +1,227 @@
+package com.wetech.demo.web3j.job;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The checkpoint file of a {@link BulkJob}: an append-only JSON-lines journal holding the job
+ * parameters, the input items, the signed transactions of the items, written one in-flight
+ * window at a time just before they are sent, and item status changes. Signed transactions
+ * are forced to disk before any of them is broadcast, so a restarted job re-sends exactly the
+ * same payloads and never signs a second transaction for an item it may have sent. Status
+ * lines are not forced; losing one only means an identical payload is sent again.
+ */
+@Slf4j
+class JobJournal implements Closeable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final FileChannel channel;
+
+    private JobJournal(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Create the journal of a new job and write its parameters and items
+     * @param file the journal file, which must not exist yet
+     * @param job the job
+     * @return the open journal
+     * @throws IOException if the file cannot be written
+     */
+    static JobJournal create(Path file, BulkJob job) throws IOException {
+        JobJournal journal = new JobJournal(FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+        ObjectNode header = record("job")
+                .put("id", job.getId())
+                .put("token", job.getToken())
+                .put("operation", job.getOperation().name())
+                .put("createdAt", job.getCreatedAt())
+                .put("rateLimit", job.getRateLimit())
+                .put("maxInFlight", job.getMaxInFlight());
+        StringBuilder lines = new StringBuilder(MAPPER.writeValueAsString(header)).append('\n');
+        for (BulkJob.Item item : job.getItems()) {
+            lines.append(MAPPER.writeValueAsString(record("item")
+                    .put("i", item.getIndex())
+                    .put("recipient", item.getRecipient())
+                    .put("amount", item.getAmount().toString()))).append('\n');
+        }
+        journal.write(lines);
+        journal.channel.force(false);
+        return journal;
+    }
+
+    /**
+     * Reopen the journal of an existing job for appending
+     * @param file the journal file
+     * @return the open journal
+     * @throws IOException if the file cannot be opened
+     */
+    static JobJournal reopen(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        JobJournal journal = new JobJournal(channel);
+        // a crash may have cut the last line short; start the next record on a line of its own
+        if (channel.size() > 0) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            try (FileChannel reader = FileChannel.open(file, StandardOpenOption.READ)) {
+                reader.read(last, channel.size() - 1);
+            }
+            if (last.get(0) != '\n') {
+                journal.write(new StringBuilder("\n"));
+            }
+        }
+        return journal;
+    }
+
+    /**
+     * Rebuild a job from its journal
+     * @param file the journal file
+     * @return the job with the signed transactions and statuses recorded so far
+     * @throws IOException if the file cannot be read or has no job header
+     */
+    static BulkJob replay(Path file) throws IOException {
+        String id = null;
+        String token = null;
+        BulkJob.Operation operation = null;
+        long createdAt = 0;
+        double rateLimit = 0;
+        int maxInFlight = 0;
+        List<BulkJob.Item> items = new ArrayList<>();
+        List<JsonNode> signed = new ArrayList<>();
+        List<JsonNode> statuses = new ArrayList<>();
+        JsonNode done = null;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonNode node;
+                try {
+                    node = MAPPER.readTree(line);
+                } catch (JsonProcessingException e) {
+                    log.warn("Skipping unreadable line in job journal {}", file);
+                    continue;
+                }
+                switch (node.path("t").asText()) {
+                    case "job" -> {
+                        id = node.get("id").asText();
+                        token = node.get("token").asText();
+                        operation = BulkJob.Operation.valueOf(node.get("operation").asText());
+                        createdAt = node.get("createdAt").asLong();
+                        rateLimit = node.get("rateLimit").asDouble();
+                        maxInFlight = node.get("maxInFlight").asInt();
+                    }
+                    case "item" -> items.add(new BulkJob.Item(node.get("i").asInt(), node.get("recipient").asText(),
+                            new BigInteger(node.get("amount").asText())));
+                    case "signed" -> signed.add(node);
+                    case "status" -> statuses.add(node);
+                    case "done" -> done = node;
+                    default -> log.warn("Skipping unknown record in job journal {}: {}", file, line);
+                }
+            }
+        }
+        if (id == null) {
+            throw new IOException("Job journal has no header: " + file);
+        }
+        BulkJob job = new BulkJob(id, token, operation, createdAt, rateLimit, maxInFlight, items);
+        for (JsonNode node : signed) {
+            items.get(node.get("i").asInt()).signed(node.get("nonce").asLong(), node.get("hash").asText(),
+                    node.get("raw").asText());
+        }
+        for (JsonNode node : statuses) {
+            items.get(node.get("i").asInt()).update(BulkJob.ItemStatus.valueOf(node.get("status").asText()),
+                    node.path("block").asLong(-1), node.path("error").asText(null));
+        }
+        if (!signed.isEmpty()) {
+            job.setState(BulkJob.State.DISPATCHING);
+        }
+        if (done != null) {
+            job.setState(BulkJob.State.valueOf(done.get("state").asText()));
+            job.setError(done.path("error").asText(null));
+        }
+        return job;
+    }
+
+    /**
+     * Record the signed transactions of a window of items and force them to disk, after which they may be sent
+     * @param items the signed items
+     * @throws IOException if the journal cannot be written
+     */
+    void writeSigned(List<BulkJob.Item> items) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (BulkJob.Item item : items) {
+            lines.append(MAPPER.writeValueAsString(record("signed")
+                    .put("i", item.getIndex())
+                    .put("nonce", item.getNonce())
+                    .put("hash", item.getTransactionHash())
+                    .put("raw", item.getSignedTransaction()))).append('\n');
+        }
+        write(lines);
+        channel.force(false);
+    }
+
+    /**
+     * Record the status of an item
+     * @param item the item
+     * @throws IOException if the journal cannot be written
+     */
+    void writeStatus(BulkJob.Item item) throws IOException {
+        ObjectNode node = record("status")
+                .put("i", item.getIndex())
+                .put("status", item.getStatus().name());
+        if (item.getBlockNumber() >= 0) {
+            node.put("block", item.getBlockNumber());
+        }
+        if (item.getError() != null) {
+            node.put("error", item.getError());
+        }
+        write(new StringBuilder(MAPPER.writeValueAsString(node)).append('\n'));
+    }
+
+    /**
+     * Record the end of the job and force the journal to disk
+     * @param job the finished job
+     * @throws IOException if the journal cannot be written
+     */
+    void writeDone(BulkJob job) throws IOException {
+        ObjectNode node = record("done").put("state", job.getState().name());
+        if (job.getError() != null) {
+            node.put("error", job.getError());
+        }
+        write(new StringBuilder(MAPPER.writeValueAsString(node)).append('\n'));
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private synchronized void write(CharSequence lines) throws IOException {
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(lines.toString());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ObjectNode record(String type) {
+        return MAPPER.createObjectNode().put("t", type);
+    }
+}
@@ -0,0 +1,192 @@
+package com.wetech.demo.web3j.rpc;
+
+import io.reactivex.Flowable;
+import lombok.extern.slf4j.Slf4j;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.websocket.events.Notification;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Web3jService} decorator that coalesces requests arriving within a short window
+ * into a single JSON-RPC batch. A batch is flushed when it reaches {@code maxBatchSize}
+ * requests or when the oldest queued request has waited {@code windowMicros}, whichever
+ * comes first; each caller's future is then completed from the response carrying its id.
+ * A blocking {@link #send} with nothing queued goes straight to the node, as there is no
+ * batch for it to join.
+ */
+@Slf4j
+public class BatchingWeb3jService implements Web3jService {
+
+    private final Web3jService delegate;
+    private final long windowMicros;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+
+    private final Object lock = new Object();
+    private List<Pending<?>> queued = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    public BatchingWeb3jService(Web3jService delegate, long windowMicros, int maxBatchSize) {
+        this.delegate = delegate;
+        this.windowMicros = windowMicros;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rpc-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        boolean idle;
+        synchronized (lock) {
+            idle = queued.isEmpty();
+        }
+        if (idle) {
+            // nothing to share a batch with, so waiting out the window would only add latency
+            return delegate.send(request, responseType);
+        }
+        try {
+            return sendAsync(request, responseType).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + request.getMethod(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        Pending<T> pending = new Pending<>(request, responseType);
+        List<Pending<?>> full = null;
+        synchronized (lock) {
+            queued.add(pending);
+            if (queued.size() >= maxBatchSize) {
+                full = drain();
+            } else if (queued.size() == 1) {
+                scheduledFlush = scheduler.schedule(this::flush, windowMicros, TimeUnit.MICROSECONDS);
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return pending.future;
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        return delegate.sendBatch(batchRequest);
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        return delegate.sendBatchAsync(batchRequest);
+    }
+
+    @Override
+    public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod,
+                                                             Class<T> responseType) {
+        return delegate.subscribe(request, unsubscribeMethod, responseType);
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        scheduler.shutdown();
+        delegate.close();
+    }
+
+    private void flush() {
+        List<Pending<?>> batch;
+        synchronized (lock) {
+            batch = drain();
+        }
+        dispatch(batch);
+    }
+
+    private List<Pending<?>> drain() {
+        List<Pending<?>> batch = queued;
+        queued = new ArrayList<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private void dispatch(List<Pending<?>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (batch.size() == 1) {
+            sendSingle(batch.get(0));
+            return;
+        }
+        BatchRequest batchRequest = new BatchRequest(delegate);
+        Map<Long, Pending<?>> byId = new HashMap<>(batch.size() * 2);
+        for (Pending<?> pending : batch) {
+            batchRequest.add(pending.request);
+            byId.put(pending.request.getId(), pending);
+        }
+        delegate.sendBatchAsync(batchRequest).whenComplete((batchResponse, error) -> {
+            if (error != null) {
+                batch.forEach(pending -> pending.future.completeExceptionally(error));
+                return;
+            }
+            for (Response<?> response : batchResponse.getResponses()) {
+                Pending pending = byId.remove(response.getId());
+                if (pending != null) {
+                    pending.future.complete(response);
+                }
+            }
+            byId.values().forEach(pending -> pending.future.completeExceptionally(
+                    new IOException("No response in batch for " + pending.request.getMethod())));
+        });
+        log.trace("Dispatched JSON-RPC batch of {} requests", batch.size());
+    }
+
+    private <T extends Response> void sendSingle(Pending<T> pending) {
+        delegate.sendAsync(pending.request, pending.responseType).whenComplete(pending::complete);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final class Pending<T extends Response> {
+        private final Request request;
+        private final Class<T> responseType;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Pending(Request request, Class<T> responseType) {
+            this.request = request;
+            this.responseType = responseType;
+        }
+
+        private void complete(T response, Throwable error) {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(response);
+            }
+        }
+    }
+}
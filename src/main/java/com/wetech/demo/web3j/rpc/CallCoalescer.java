@@ -0,0 +1,122 @@
+package com.wetech.demo.web3j.rpc;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthCall;
+
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight for view calls: while an {@code eth_call} for a (contract, call data, block tag)
+ * key is in flight, identical calls wait for its response instead of sending their own. This
+ * flattens the burst of identical reads that follows a new block, when cached results are
+ * dropped and every client refreshes at once. A key is released as soon as its call
+ * completes, so responses are shared only between overlapping requests; keeping results is
+ * left to the caches.
+ *
+ * <p>Callers share the raw {@link EthCall} and each interprets errors and reverts its own way.
+ */
+@Component
+public class CallCoalescer {
+
+    private final Web3j web3j;
+    private final boolean enabled;
+    private final ConcurrentMap<Key, CompletableFuture<EthCall>> inFlight = new ConcurrentHashMap<>();
+    private final Counter sent;
+    private final Counter shared;
+
+    public CallCoalescer(Web3j web3j, MeterRegistry meterRegistry,
+                         @Value("${web3j.coalescing.enabled:true}") boolean enabled) {
+        this.web3j = web3j;
+        this.enabled = enabled;
+        this.sent = Counter.builder("web3j.coalescer.requests").tag("result", "sent")
+                .description("View calls sent to the node").register(meterRegistry);
+        this.shared = Counter.builder("web3j.coalescer.requests").tag("result", "shared")
+                .description("View calls answered by an identical call already in flight").register(meterRegistry);
+        Gauge.builder("web3j.coalescer.ratio", this, CallCoalescer::ratio)
+                .description("Fraction of view calls that shared an in-flight call").register(meterRegistry);
+        Gauge.builder("web3j.coalescer.in-flight", inFlight, ConcurrentMap::size)
+                .description("Distinct view calls in flight").register(meterRegistry);
+    }
+
+    /**
+     * Execute a view call, sharing an identical call already in flight
+     * @param contractAddress the contract to call
+     * @param data the encoded function call
+     * @param block the block to execute at
+     * @return the node's response
+     */
+    public CompletableFuture<EthCall> call(String contractAddress, String data, DefaultBlockParameter block) {
+        return call(contractAddress, data, block, () -> web3j.ethCall(
+                Transaction.createEthCallTransaction(null, contractAddress, data), block).sendAsync());
+    }
+
+    /**
+     * Execute a view call through a caller-supplied request, sharing an identical call already
+     * in flight. The request is only made if there is none, so side effects attached to it,
+     * such as caching the result, run once per call sent.
+     * @param contractAddress the contract to call
+     * @param data the encoded function call
+     * @param block the block to execute at
+     * @param request sends the call
+     * @return the node's response
+     */
+    public CompletableFuture<EthCall> call(String contractAddress, String data, DefaultBlockParameter block,
+                                           Supplier<CompletableFuture<EthCall>> request) {
+        if (!enabled) {
+            sent.increment();
+            return request.get();
+        }
+        Key key = new Key(contractAddress, data, block.getValue());
+        CompletableFuture<EthCall> response = new CompletableFuture<>();
+        CompletableFuture<EthCall> existing = inFlight.putIfAbsent(key, response);
+        if (existing != null) {
+            shared.increment();
+            return existing.copy();
+        }
+        sent.increment();
+        try {
+            request.get().whenComplete((ethCall, error) -> {
+                inFlight.remove(key, response);
+                if (error != null) {
+                    response.completeExceptionally(error);
+                } else {
+                    response.complete(ethCall);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, response);
+            response.completeExceptionally(e);
+        }
+        // callers get their own stage, so one cancelling cannot fail the others
+        return response.copy();
+    }
+
+    /**
+     * Get the fraction of view calls that were answered by an identical call in flight
+     * @return the coalescing ratio since startup, between 0 and 1
+     */
+    public double ratio() {
+        double coalesced = shared.count();
+        double total = coalesced + sent.count();
+        return total == 0 ? 0 : coalesced / total;
+    }
+
+    private record Key(String address, String data, String block) {
+
+        private Key {
+            address = address.toLowerCase(Locale.ROOT);
+            data = data.toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.wetech.demo.web3j.rpc;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.reactivex.Flowable;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.websocket.events.Notification;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link Web3jService} spreading requests over several nodes. Writes, and the nonce, head,
+ * block, log, transaction and receipt lookups that must agree with them and with each other,
+ * go to the first healthy endpoint in configuration order, so they stick to the primary and
+ * fail over down the list. Other reads
+ * go to the endpoint with the lowest latency (an exponentially weighted moving average scaled
+ * by its requests in flight, decaying while the endpoint is idle so it is tried again); a read still running past that endpoint's p95 latency is hedged
+ * on the next best endpoint and the first answer wins.
+ *
+ * <p>Every endpoint has a circuit breaker: after {@code failureThreshold} consecutive I/O
+ * failures it is skipped for {@code openMillis}, then a single request probes it again. A
+ * JSON-RPC error response is an answer, not a failure. When every breaker is open, requests
+ * are sent to the endpoints anyway rather than failing outright.
+ */
+@Slf4j
+public class FailoverWeb3jService implements Web3jService {
+
+    private static final Set<String> PRIMARY_METHODS = Set.of("eth_sendRawTransaction", "eth_sendTransaction",
+            "eth_getTransactionCount", "eth_getTransactionByHash", "eth_blockNumber", "eth_getBlockByNumber",
+            "eth_getBlockByHash", "eth_getLogs", "eth_getBlockReceipts", "eth_getTransactionReceipt", "eth_newFilter",
+            "eth_newBlockFilter", "eth_newPendingTransactionFilter", "eth_getFilterChanges", "eth_getFilterLogs",
+            "eth_uninstallFilter");
+    private static final double EWMA_WEIGHT = 0.2;
+    private static final double IDLE_DECAY_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final int LATENCY_WINDOW = 128;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
+    private final Executor executor;
+    private final MeterRegistry meterRegistry;
+    private final boolean hedging;
+    private final long minHedgeDelayNanos;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final List<Endpoint> endpoints = new CopyOnWriteArrayList<>();
+    private final Counter hedges;
+
+    public FailoverWeb3jService(Executor executor, MeterRegistry meterRegistry, boolean hedging,
+                                long minHedgeDelayMillis, int failureThreshold, long openMillis) {
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+        this.hedging = hedging;
+        this.minHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(minHedgeDelayMillis);
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.hedges = Counter.builder("web3j.rpc.hedged")
+                .description("Reads sent to a second endpoint after outliving the first one's p95 latency")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Add a node, after the ones added before it in write preference
+     * @param name the name used in logs and metrics, which should not reveal credentials
+     * @param service the transport to the node
+     * @return this service
+     */
+    public FailoverWeb3jService addEndpoint(String name, Web3jService service) {
+        Endpoint endpoint = new Endpoint(name, service);
+        endpoints.add(endpoint);
+        Gauge.builder("web3j.rpc.endpoint.latency", endpoint, Endpoint::getLatencyMillis)
+                .description("Moving average latency of the endpoint in milliseconds")
+                .tag("endpoint", name).register(meterRegistry);
+        Gauge.builder("web3j.rpc.endpoint.open", endpoint, e -> e.getState() == BreakerState.CLOSED ? 0 : 1)
+                .description("1 while the endpoint's circuit breaker is open or probing")
+                .tag("endpoint", name).register(meterRegistry);
+        return this;
+    }
+
+    /**
+     * Get the nodes in write preference order
+     * @return the endpoints
+     */
+    public List<Endpoint> getEndpoints() {
+        return List.copyOf(endpoints);
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        Call<T> call = service -> service.send(request, responseType);
+        return PRIMARY_METHODS.contains(request.getMethod()) ? sendToPrimary(call) : read(call);
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return send(request, responseType);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        Call<BatchResponse> call = service -> service.sendBatch(batchRequest);
+        for (Request<?, ? extends Response<?>> request : batchRequest.getRequests()) {
+            if (PRIMARY_METHODS.contains(request.getMethod())) {
+                return sendToPrimary(call);
+            }
+        }
+        return read(call);
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return sendBatch(batchRequest);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    @Override
+    public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod,
+                                                             Class<T> responseType) {
+        return endpoints.get(0).service.subscribe(request, unsubscribeMethod, responseType);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Endpoint endpoint : endpoints) {
+            endpoint.service.close();
+        }
+    }
+
+    private <T> T sendToPrimary(Call<T> call) throws IOException {
+        IOException failure = null;
+        for (Endpoint endpoint : selectable(endpoints)) {
+            try {
+                return endpoint.invoke(call);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        throw failure;
+    }
+
+    private <T> T read(Call<T> call) throws IOException {
+        long now = System.nanoTime();
+        List<Endpoint> candidates = new ArrayList<>(selectable(endpoints));
+        candidates.sort(Comparator.comparingDouble(endpoint -> endpoint.score(now)));
+        IOException failure = null;
+        int next = 0;
+        if (hedging && candidates.size() > 1 && candidates.get(0).getHedgeDelayNanos() > 0) {
+            try {
+                return hedged(call, candidates.get(0), candidates.get(1));
+            } catch (IOException e) {
+                failure = e;
+                next = 2;
+            }
+        }
+        for (int i = next; i < candidates.size(); i++) {
+            try {
+                return candidates.get(i).invoke(call);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        throw failure;
+    }
+
+    private <T> T hedged(Call<T> call, Endpoint first, Endpoint second) throws IOException {
+        CompletableFuture<T> firstAttempt = attempt(call, first);
+        try {
+            return firstAttempt.get(first.getHedgeDelayNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            hedges.increment();
+        } catch (ExecutionException e) {
+            return second.invoke(call);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + first.name);
+        }
+        CompletableFuture<T> secondAttempt = attempt(call, second);
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failed = new AtomicInteger();
+        for (CompletableFuture<T> attempt : List.of(firstAttempt, secondAttempt)) {
+            attempt.whenComplete((result, error) -> {
+                if (error == null) {
+                    winner.complete(result);
+                } else if (failed.incrementAndGet() == 2) {
+                    winner.completeExceptionally(error);
+                }
+            });
+        }
+        try {
+            return winner.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            throw cause instanceof IOException ioException ? ioException : new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + first.name + " and " + second.name);
+        }
+    }
+
+    private <T> CompletableFuture<T> attempt(Call<T> call, Endpoint endpoint) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return endpoint.invoke(call);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private List<Endpoint> selectable(List<Endpoint> all) {
+        long now = System.nanoTime();
+        List<Endpoint> available = new ArrayList<>(all.size());
+        for (Endpoint endpoint : all) {
+            if (endpoint.tryAcquire(now)) {
+                available.add(endpoint);
+            }
+        }
+        return available.isEmpty() ? all : available;
+    }
+
+    public enum BreakerState {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    @FunctionalInterface
+    private interface Call<T> {
+        T call(Web3jService service) throws IOException;
+    }
+
+    /**
+     * One node behind the service, with its latency statistics and circuit breaker
+     */
+    public final class Endpoint {
+
+        @Getter
+        private final String name;
+        private final Web3jService service;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final long[] latencies = new long[LATENCY_WINDOW];
+        // the slot the next sample goes into, and the number of slots filled so far
+        private int next;
+        private volatile int samples;
+        private volatile double ewmaNanos;
+        private volatile long lastSample;
+        private volatile long p95Nanos;
+        @Getter
+        private volatile BreakerState state = BreakerState.CLOSED;
+        private int failures;
+        private long openUntil;
+
+        private Endpoint(String name, Web3jService service) {
+            this.name = name;
+            this.service = service;
+        }
+
+        /**
+         * Get the moving average latency
+         * @return the latency in milliseconds, 0 before the first answer
+         */
+        public double getLatencyMillis() {
+            return ewmaNanos / 1_000_000;
+        }
+
+        private double score(long now) {
+            // an endpoint that was slow once and then skipped would never get another chance
+            double decay = Math.exp(-(now - lastSample) / IDLE_DECAY_NANOS);
+            return ewmaNanos * decay * (inFlight.get() + 1);
+        }
+
+        private long getHedgeDelayNanos() {
+            return samples < MIN_LATENCY_SAMPLES ? 0 : Math.max(p95Nanos, minHedgeDelayNanos);
+        }
+
+        private synchronized boolean tryAcquire(long now) {
+            if (state == BreakerState.CLOSED) {
+                return true;
+            }
+            if (now - openUntil >= 0) {
+                // let one request through to probe the node, and another if it is never sent
+                state = BreakerState.HALF_OPEN;
+                openUntil = now + openNanos;
+                return true;
+            }
+            return false;
+        }
+
+        private <T> T invoke(Call<T> call) throws IOException {
+            inFlight.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                T result = call.call(service);
+                succeeded(System.nanoTime() - start);
+                return result;
+            } catch (IOException e) {
+                failed(e);
+                throw e;
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        private synchronized void succeeded(long nanos) {
+            long now = System.nanoTime();
+            double previous = ewmaNanos * Math.exp(-(now - lastSample) / IDLE_DECAY_NANOS);
+            ewmaNanos = previous == 0 ? nanos : previous + EWMA_WEIGHT * (nanos - previous);
+            lastSample = now;
+            latencies[next] = nanos;
+            next = (next + 1) % LATENCY_WINDOW;
+            if (samples < LATENCY_WINDOW) {
+                samples++;
+            }
+            if (next % (LATENCY_WINDOW / 4) == 0 || samples == MIN_LATENCY_SAMPLES) {
+                long[] window = Arrays.copyOf(latencies, samples);
+                Arrays.sort(window);
+                p95Nanos = window[(int) (window.length * 0.95)];
+            }
+            failures = 0;
+            if (state != BreakerState.CLOSED) {
+                log.info("RPC endpoint {} recovered", name);
+                state = BreakerState.CLOSED;
+            }
+        }
+
+        private synchronized void failed(IOException e) {
+            failures++;
+            if (state == BreakerState.HALF_OPEN || (state == BreakerState.CLOSED && failures >= failureThreshold)) {
+                log.warn("RPC endpoint {} unavailable for {} ms after {} failures: {}", name,
+                        TimeUnit.NANOSECONDS.toMillis(openNanos), failures, e.toString());
+                state = BreakerState.OPEN;
+                openUntil = System.nanoTime() + openNanos;
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.wetech.demo.web3j.rpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import okhttp3.OkHttpClient;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.http.HttpService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An {@link HttpService} that matches batch responses to their requests by JSON-RPC id.
+ * The spec lets a node answer a batch in any order, but web3j deserializes each response
+ * with the type of the request at the same position. Here every response is read with the
+ * type of the request carrying its id, and the responses are returned in request order, so
+ * callers that walk the batch by position get the right response for each request. A request
+ * the node did not answer gets an error response.
+ */
+public class IdMatchingHttpService extends HttpService {
+
+    private static final int INTERNAL_ERROR = -32603;
+
+    public IdMatchingHttpService(String url) {
+        super(url);
+    }
+
+    public IdMatchingHttpService(String url, OkHttpClient httpClient) {
+        super(url, httpClient);
+    }
+
+    @Override
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        List<Request<?, ? extends Response<?>>> requests = batchRequest.getRequests();
+        if (requests.isEmpty()) {
+            return new BatchResponse(List.of(), List.of());
+        }
+        JsonNode nodes;
+        try (InputStream result = performIO(objectMapper.writeValueAsString(requests))) {
+            if (result == null) {
+                throw new IOException("Empty response to a batch of " + requests.size() + " requests");
+            }
+            nodes = objectMapper.readTree(result);
+        }
+        if (!nodes.isArray()) {
+            // some nodes answer a batch they refuse with a single error object
+            throw new IOException("Batch of " + requests.size() + " requests was not answered with an array: "
+                    + nodes.path("error").path("message").asText(nodes.toString()));
+        }
+        Map<Long, JsonNode> byId = new HashMap<>(nodes.size() * 2);
+        for (JsonNode node : nodes) {
+            byId.put(node.path("id").asLong(), node);
+        }
+        List<Response<?>> responses = new ArrayList<>(requests.size());
+        for (Request<?, ? extends Response<?>> request : requests) {
+            JsonNode node = byId.get(request.getId());
+            responses.add(node != null ? objectMapper.treeToValue(node, request.getResponseType())
+                    : missing(request));
+        }
+        return new BatchResponse((List) requests, responses);
+    }
+
+    private static Response<?> missing(Request<?, ? extends Response<?>> request) throws IOException {
+        Response<?> response;
+        try {
+            response = request.getResponseType().getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("No response in batch for " + request.getMethod(), e);
+        }
+        response.setId(request.getId());
+        response.setError(new Response.Error(INTERNAL_ERROR, "No response in batch for " + request.getMethod()));
+        return response;
+    }
+}
@@ -0,0 +1,197 @@
+package com.wetech.demo.web3j.rpc;
+
+import com.wetech.demo.web3j.abi.ContractSignatures;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.reactivex.Flowable;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.TransactionDecoder;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.websocket.events.Notification;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link Web3jService} decorator that records the latency of every JSON-RPC request as
+ * {@code web3j.rpc.requests}, tagged by method and outcome ({@code success}, {@code error} for a
+ * JSON-RPC error, {@code failure} for a transport failure), and the requests in flight per method
+ * as {@code web3j.rpc.in-flight}. {@code eth_call}, {@code eth_estimateGas} and
+ * {@code eth_sendRawTransaction} are also tagged with the contract and function selector.
+ * Requests sent in a batch are recorded one by one with the latency of the batch.
+ */
+public class InstrumentedWeb3jService implements Web3jService {
+
+    private static final String NONE = "none";
+
+    private final Web3jService delegate;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<Tags, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public InstrumentedWeb3jService(Web3jService delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        Tags tags = tags(request);
+        AtomicInteger counter = inFlight(tags.method);
+        counter.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            T response = delegate.send(request, responseType);
+            record(tags, response.hasError() ? "error" : "success", start);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            record(tags, "failure", start);
+            throw e;
+        } finally {
+            counter.decrementAndGet();
+        }
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        Tags tags = tags(request);
+        AtomicInteger counter = inFlight(tags.method);
+        counter.incrementAndGet();
+        long start = System.nanoTime();
+        CompletableFuture<T> future = delegate.sendAsync(request, responseType);
+        future.whenComplete((response, error) -> {
+            counter.decrementAndGet();
+            record(tags, error != null ? "failure" : response.hasError() ? "error" : "success", start);
+        });
+        return future;
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        Map<Long, Tags> tags = batchTags(batchRequest);
+        long start = System.nanoTime();
+        try {
+            BatchResponse response = delegate.sendBatch(batchRequest);
+            recordBatch(tags, response, null, start);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            recordBatch(tags, null, e, start);
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        Map<Long, Tags> tags = batchTags(batchRequest);
+        long start = System.nanoTime();
+        CompletableFuture<BatchResponse> future = delegate.sendBatchAsync(batchRequest);
+        future.whenComplete((response, error) -> recordBatch(tags, response, error, start));
+        return future;
+    }
+
+    @Override
+    public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod,
+                                                             Class<T> responseType) {
+        return delegate.subscribe(request, unsubscribeMethod, responseType);
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    private Map<Long, Tags> batchTags(BatchRequest batchRequest) {
+        Map<Long, Tags> tags = new HashMap<>();
+        for (Request<?, ? extends Response<?>> request : batchRequest.getRequests()) {
+            Tags requestTags = tags(request);
+            tags.put(request.getId(), requestTags);
+            inFlight(requestTags.method).incrementAndGet();
+        }
+        return tags;
+    }
+
+    private void recordBatch(Map<Long, Tags> tags, BatchResponse batchResponse, Throwable error, long start) {
+        tags.values().forEach(requestTags -> inFlight(requestTags.method).decrementAndGet());
+        if (error == null) {
+            for (Response<?> response : batchResponse.getResponses()) {
+                Tags requestTags = tags.remove(response.getId());
+                if (requestTags != null) {
+                    record(requestTags, response.hasError() ? "error" : "success", start);
+                }
+            }
+        }
+        // requests the node did not answer failed along with the whole batch
+        tags.values().forEach(requestTags -> record(requestTags, "failure", start));
+    }
+
+    private void record(Tags tags, String outcome, long start) {
+        timers.computeIfAbsent(tags.withOutcome(outcome), key -> Timer.builder("web3j.rpc.requests")
+                        .description("Latency of JSON-RPC requests to the node")
+                        .tag("method", key.method)
+                        .tag("contract", key.contract)
+                        .tag("selector", key.selector)
+                        .tag("outcome", key.outcome)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private AtomicInteger inFlight(String method) {
+        return inFlight.computeIfAbsent(method, key -> {
+            AtomicInteger counter = new AtomicInteger();
+            Gauge.builder("web3j.rpc.in-flight", counter, AtomicInteger::get)
+                    .description("JSON-RPC requests waiting for a response")
+                    .tag("method", key)
+                    .register(meterRegistry);
+            return counter;
+        });
+    }
+
+    private static Tags tags(Request<?, ?> request) {
+        String method = request.getMethod();
+        List<?> params = request.getParams();
+        if (params == null || params.isEmpty()) {
+            return new Tags(method, NONE, NONE, null);
+        }
+        Object first = params.get(0);
+        if (first instanceof Transaction transaction) {
+            return new Tags(method, address(transaction.getTo()),
+                    ContractSignatures.selectorOf(transaction.getData()), null);
+        }
+        if ("eth_sendRawTransaction".equals(method) && first instanceof String signed) {
+            try {
+                RawTransaction rawTransaction = TransactionDecoder.decode(signed);
+                return new Tags(method, address(rawTransaction.getTo()),
+                        ContractSignatures.selectorOf(rawTransaction.getData()), null);
+            } catch (RuntimeException e) {
+                return new Tags(method, NONE, NONE, null);
+            }
+        }
+        return new Tags(method, NONE, NONE, null);
+    }
+
+    private static String address(String address) {
+        return address == null || address.length() <= 2 ? NONE : address.toLowerCase(Locale.ROOT);
+    }
+
+    private record Tags(String method, String contract, String selector, String outcome) {
+
+        private Tags withOutcome(String outcome) {
+            return new Tags(method, contract, selector, outcome);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.wetech.demo.web3j.rpc;
+
+import io.reactivex.Flowable;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.websocket.events.Notification;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A {@link Web3jService} decorator that caps the number of requests in flight to the node
+ * and runs the asynchronous variants on a given executor instead of web3j's unbounded
+ * {@code Async} pool. Futures are completed on that executor, so their continuations run
+ * there too. A JSON-RPC batch counts as one request.
+ */
+public class LimitedWeb3jService implements Web3jService {
+
+    private final Web3jService delegate;
+    private final Executor executor;
+    private final Semaphore permits;
+
+    public LimitedWeb3jService(Web3jService delegate, Executor executor, int maxConcurrency) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        acquire(request.getMethod());
+        try {
+            return delegate.send(request, responseType);
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(send(request, responseType));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        acquire("batch");
+        try {
+            return delegate.sendBatch(batchRequest);
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        CompletableFuture<BatchResponse> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(sendBatch(batchRequest));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod,
+                                                             Class<T> responseType) {
+        return delegate.subscribe(request, unsubscribeMethod, responseType);
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    /**
+     * Get the number of requests currently waiting for a slot
+     * @return the queue length
+     */
+    public int getQueueLength() {
+        return permits.getQueueLength();
+    }
+
+    private void acquire(String method) throws IOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to send " + method);
+        }
+    }
+}
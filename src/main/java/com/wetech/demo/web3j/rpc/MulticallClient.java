@@ -0,0 +1,182 @@
+package com.wetech.demo.web3j.rpc;
+
+import com.wetech.demo.web3j.abi.AbiBytes;
+import com.wetech.demo.web3j.abi.ContractSignatures;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.response.EthCall;
+import org.web3j.tx.exceptions.ContractCallException;
+import org.web3j.utils.Numeric;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Aggregates many view calls into Multicall3 {@code aggregate3} calls, one {@code eth_call}
+ * per chunk. Calldata is encoded straight into a byte buffer rather than through web3j
+ * {@code Function}/{@code Type} objects. If no Multicall3 address is configured, the calls
+ * are sent individually and left to the JSON-RPC batching layer; so are the calls of a chunk
+ * whose aggregate call fails or returns something that does not decode, e.g. where Multicall3
+ * is not deployed. Either way, identical calls already in flight are shared through the
+ * {@link CallCoalescer}.
+ */
+@Slf4j
+@Component
+public class MulticallClient {
+
+    private static final byte[] AGGREGATE3 =
+            Numeric.hexStringToByteArray(ContractSignatures.selector("aggregate3((address,bool,bytes)[])"));
+
+    private final CallCoalescer coalescer;
+    private final String multicallAddress;
+    private final int chunkSize;
+
+    public MulticallClient(CallCoalescer coalescer,
+                           @Value("${web3j.multicall.address:0xcA11bde05977b3631167028862bE2a173976CA11}")
+                           String multicallAddress,
+                           @Value("${web3j.multicall.chunk-size:500}") int chunkSize) {
+        this.coalescer = coalescer;
+        this.multicallAddress = multicallAddress;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Execute view calls at the latest block
+     * @param calls the calls to execute
+     * @return the raw return data of each call in order, or {@code null} where a call reverted
+     */
+    public CompletableFuture<List<byte[]>> aggregate(List<Call> calls) {
+        List<CompletableFuture<List<byte[]>>> chunks = new ArrayList<>();
+        for (int start = 0; start < calls.size(); start += chunkSize) {
+            List<Call> chunk = calls.subList(start, Math.min(start + chunkSize, calls.size()));
+            chunks.add(multicallAddress.isBlank() ? executeIndividually(chunk) : executeAggregated(chunk));
+        }
+        return CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            List<byte[]> results = new ArrayList<>(calls.size());
+            chunks.forEach(chunk -> results.addAll(chunk.join()));
+            return results;
+        });
+    }
+
+    private CompletableFuture<List<byte[]>> executeAggregated(List<Call> chunk) {
+        String data = Numeric.toHexString(encodeAggregate3(chunk));
+        return coalescer.call(multicallAddress, data, DefaultBlockParameterName.LATEST)
+                .thenApply(ethCall -> decodeAggregate3(requireResult(ethCall), chunk.size()))
+                .exceptionallyCompose(error -> {
+                    // the calls may still succeed one by one, e.g. where Multicall3 is not deployed
+                    log.debug("Multicall of {} calls failed, sending them individually: {}", chunk.size(),
+                            error.getMessage());
+                    return executeIndividually(chunk);
+                });
+    }
+
+    private CompletableFuture<List<byte[]>> executeIndividually(List<Call> chunk) {
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>(chunk.size());
+        for (Call call : chunk) {
+            futures.add(coalescer.call(Numeric.toHexString(call.target()), Numeric.toHexString(call.callData()),
+                            DefaultBlockParameterName.LATEST)
+                    .handle((ethCall, error) -> error != null || ethCall.hasError() || ethCall.isReverted()
+                            ? null : Numeric.hexStringToByteArray(ethCall.getValue())));
+        }
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> futures.stream().map(CompletableFuture::join).toList());
+    }
+
+    private static byte[] encodeAggregate3(List<Call> calls) {
+        int count = calls.size();
+        int size = AGGREGATE3.length + 2 * AbiBytes.WORD + count * AbiBytes.WORD;
+        for (Call call : calls) {
+            size += 4 * AbiBytes.WORD + AbiBytes.padded(call.callData().length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(AGGREGATE3);
+        AbiBytes.putUint(buffer, AbiBytes.WORD);
+        AbiBytes.putUint(buffer, count);
+        // each (address target, bool allowFailure, bytes callData) tuple is dynamic, so the
+        // array starts with one offset per element
+        long offset = (long) count * AbiBytes.WORD;
+        for (Call call : calls) {
+            AbiBytes.putUint(buffer, offset);
+            offset += 4 * AbiBytes.WORD + AbiBytes.padded(call.callData().length);
+        }
+        for (Call call : calls) {
+            AbiBytes.putAddress(buffer, call.target());
+            AbiBytes.putUint(buffer, 1);
+            AbiBytes.putUint(buffer, 3 * AbiBytes.WORD);
+            AbiBytes.putUint(buffer, call.callData().length);
+            buffer.put(call.callData());
+            buffer.position(buffer.position() + AbiBytes.padded(call.callData().length) - call.callData().length);
+        }
+        return buffer.array();
+    }
+
+    private static List<byte[]> decodeAggregate3(String result, int expected) {
+        byte[] data = Numeric.hexStringToByteArray(result);
+        if (data.length == 0) {
+            throw new ContractCallException("Multicall returned no data, is Multicall3 deployed?");
+        }
+        int arrayStart = offset(data, 0);
+        int count = offset(data, arrayStart);
+        if (count != expected) {
+            throw new ContractCallException("Multicall returned " + count + " results for " + expected + " calls");
+        }
+        int elements = arrayStart + AbiBytes.WORD;
+        List<byte[]> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int tuple = elements + offset(data, elements + i * AbiBytes.WORD);
+            int bytesStart = tuple + offset(data, tuple + AbiBytes.WORD);
+            boolean success = data[tuple + AbiBytes.WORD - 1] != 0;
+            int length = offset(data, bytesStart);
+            if (bytesStart + AbiBytes.WORD + length > data.length) {
+                throw new ContractCallException("Malformed multicall result: call " + i + " runs past the end");
+            }
+            results.add(success
+                    ? Arrays.copyOfRange(data, bytesStart + AbiBytes.WORD, bytesStart + AbiBytes.WORD + length)
+                    : null);
+        }
+        return results;
+    }
+
+    /**
+     * Read an offset or length word, checking that both the word and the position it names
+     * lie within the data
+     */
+    private static int offset(byte[] data, int at) {
+        if (at < 0 || at + AbiBytes.WORD > data.length) {
+            throw new ContractCallException("Malformed multicall result: no word at " + at);
+        }
+        for (int i = at; i < at + AbiBytes.WORD - 4; i++) {
+            if (data[i] != 0) {
+                throw new ContractCallException("Malformed multicall result: word at " + at + " is out of range");
+            }
+        }
+        int value = AbiBytes.readInt(data, at);
+        if (value < 0 || value > data.length) {
+            throw new ContractCallException("Malformed multicall result: word at " + at + " is out of range");
+        }
+        return value;
+    }
+
+    private static String requireResult(EthCall ethCall) {
+        if (ethCall.hasError()) {
+            throw new ContractCallException("Multicall failed: " + ethCall.getError().getMessage());
+        }
+        if (ethCall.isReverted()) {
+            throw new ContractCallException("Multicall reverted: " + ethCall.getRevertReason());
+        }
+        return ethCall.getValue();
+    }
+
+    /**
+     * A single view call inside an aggregate
+     * @param target the 20 address bytes of the contract to call
+     * @param callData the encoded function call
+     */
+    public record Call(byte[] target, byte[] callData) {
+    }
+}
@@ -0,0 +1,98 @@
+package com.wetech.demo.web3j.rpc;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.RemoteCall;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The executors that drive node I/O and blocking waits. With
+ * {@code spring.threads.virtual.enabled=true} both are virtual-thread-per-task executors,
+ * the same switch that moves Tomcat request handling onto virtual threads; otherwise node
+ * I/O runs on a fixed pool of {@code web3j.node.max-concurrency} platform threads and
+ * blocking waits on a cached pool, as web3j's own {@code Async} does.
+ */
+@Slf4j
+@Component
+public class Web3jExecutors implements DisposableBean {
+
+    @Getter
+    private final boolean virtual;
+    @Getter
+    private final int maxConcurrency;
+    private final ExecutorService io;
+    private final ExecutorService blocking;
+
+    public Web3jExecutors(Environment environment,
+                          @Value("${web3j.node.max-concurrency:64}") int maxConcurrency) {
+        this.virtual = Threading.VIRTUAL.isActive(environment);
+        this.maxConcurrency = maxConcurrency;
+        if (virtual) {
+            io = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("web3j-io-", 0).factory());
+            blocking = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("web3j-wait-", 0).factory());
+        } else {
+            io = Executors.newFixedThreadPool(maxConcurrency, daemon("web3j-io-"));
+            blocking = Executors.newCachedThreadPool(daemon("web3j-wait-"));
+        }
+        log.info("Running web3j I/O on {} threads, at most {} requests in flight to the node",
+                virtual ? "virtual" : "platform", maxConcurrency);
+    }
+
+    /**
+     * Get the executor that sends requests to the node and completes their futures
+     * @return the I/O executor
+     */
+    public ExecutorService io() {
+        return io;
+    }
+
+    /**
+     * Get the unbounded executor for work that blocks a thread while waiting on other tasks
+     * @return the blocking executor
+     */
+    public ExecutorService blocking() {
+        return blocking;
+    }
+
+    /**
+     * Run a call that blocks until it is mined, such as a contract deployment
+     * @param call the call
+     * @param <T> the result type
+     * @return the result
+     */
+    public <T> CompletableFuture<T> supplyBlocking(RemoteCall<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.send();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, blocking);
+    }
+
+    @Override
+    public void destroy() {
+        io.shutdownNow();
+        blocking.shutdownNow();
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,233 @@
+package com.wetech.demo.web3j.service;
+
+import com.wetech.demo.web3j.abi.ContractCodec;
+import com.wetech.demo.web3j.abi.ContractSignatures;
+import com.wetech.demo.web3j.chain.ChainHeadMonitor;
+import com.wetech.demo.web3j.indexer.EventIndexer;
+import com.wetech.demo.web3j.indexer.EventStore;
+import com.wetech.demo.web3j.rpc.CallCoalescer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.web3j.exceptions.MessageDecodingException;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.tx.exceptions.ContractCallException;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Contract state as of a given block, for audits and reconciliation. Reads of
+ * {@code get}, {@code balanceOf} and {@code totalSupply} at a confirmed block of an indexed
+ * contract are answered from the {@link EventStore}; anything else is an {@code eth_call}
+ * pinned to the block, which needs an archive node once the block is old. Results for blocks
+ * at least {@code web3j.indexer.confirmations} behind the head never change and are cached
+ * for good; reads of newer blocks are not cached, as a reorg may still replace them.
+ */
+@Service
+public class HistoricalStateService {
+
+    private final Web3j web3j;
+    private final CallCoalescer coalescer;
+    private final EventIndexer eventIndexer;
+    private final EventStore eventStore;
+    private final ChainHeadMonitor chainHeadMonitor;
+    private final int maxSize;
+    private final Map<Key, BigInteger> finalized;
+    private final Counter cacheHits;
+    private final Counter indexReads;
+    private final Counter nodeReads;
+
+    public HistoricalStateService(Web3j web3j, CallCoalescer coalescer, EventIndexer eventIndexer,
+                                  EventStore eventStore, ChainHeadMonitor chainHeadMonitor, MeterRegistry meterRegistry,
+                                  @Value("${web3j.history.max-size:100000}") int maxSize) {
+        this.web3j = web3j;
+        this.coalescer = coalescer;
+        this.eventIndexer = eventIndexer;
+        this.eventStore = eventStore;
+        this.chainHeadMonitor = chainHeadMonitor;
+        this.maxSize = maxSize;
+        this.finalized = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, BigInteger> eldest) {
+                return size() > HistoricalStateService.this.maxSize;
+            }
+        };
+        this.cacheHits = counter(meterRegistry, "cache", "Historical reads answered from finalized results");
+        this.indexReads = counter(meterRegistry, "index", "Historical reads answered from the event index");
+        this.nodeReads = counter(meterRegistry, "node", "Historical reads sent to the node as block-pinned calls");
+        Gauge.builder("web3j.history.size", this, HistoricalStateService::size)
+                .description("Cached historical read results").register(meterRegistry);
+    }
+
+    /**
+     * Resolve a block number or tag against the current chain head
+     * @param block a decimal or {@code 0x}-prefixed block number, or {@code latest},
+     *              {@code safe}, {@code finalized} or {@code earliest}
+     * @return the block number
+     */
+    public long resolveBlock(String block) {
+        String tag = block.trim().toLowerCase(Locale.ROOT);
+        long number = switch (tag) {
+            case "latest" -> head();
+            case "safe", "finalized" -> Math.max(0, head() - eventIndexer.getConfirmations());
+            case "earliest" -> 0;
+            default -> parseBlock(block, tag);
+        };
+        if (number < 0) {
+            throw new IllegalArgumentException("Invalid block " + block);
+        }
+        return number;
+    }
+
+    /**
+     * Check whether a block is deep enough that its state will not change
+     * @param block the block number
+     * @return true if the block is at least the confirmation depth behind the head
+     */
+    public boolean isFinalized(long block) {
+        long head = chainHeadMonitor.getHead();
+        return head >= 0 && block <= head - eventIndexer.getConfirmations();
+    }
+
+    /**
+     * Get the value a SimpleStorage contract held at a block
+     * @param contractAddress the address of the contract
+     * @param block the block number
+     * @return the stored value
+     */
+    public CompletableFuture<BigInteger> getValue(String contractAddress, long block) {
+        String data = ContractCodec.local().get().toHex();
+        return read(contractAddress, data, block, () -> eventStore.getStoredValue(contractAddress, block));
+    }
+
+    /**
+     * Get the ZHX balance of a holder at a block
+     * @param tokenAddress the ZHX contract address
+     * @param holder the holder address
+     * @param block the block number
+     * @return the balance
+     */
+    public CompletableFuture<BigInteger> getBalance(String tokenAddress, String holder, long block) {
+        String data = ContractCodec.local().balanceOf(holder).toHex();
+        return read(tokenAddress, data, block, () -> eventStore.getBalance(tokenAddress, holder, block));
+    }
+
+    /**
+     * Get the ZHX total supply at a block
+     * @param tokenAddress the ZHX contract address
+     * @param block the block number
+     * @return the total supply
+     */
+    public CompletableFuture<BigInteger> getTotalSupply(String tokenAddress, long block) {
+        return read(tokenAddress, ContractSignatures.TOTAL_SUPPLY, block,
+                () -> eventStore.getTotalSupply(tokenAddress, block));
+    }
+
+    /**
+     * Get a ZHX allowance at a block. {@code transferFrom} spends allowances without an event,
+     * so these always come from the node.
+     * @param tokenAddress the ZHX contract address
+     * @param owner the owner address
+     * @param spender the spender address
+     * @param block the block number
+     * @return the allowance
+     */
+    public CompletableFuture<BigInteger> getAllowance(String tokenAddress, String owner, String spender, long block) {
+        String data = ContractCodec.local().allowance(owner, spender).toHex();
+        return read(tokenAddress, data, block, null);
+    }
+
+    /**
+     * Get the number of cached results
+     * @return the cache size
+     */
+    public int size() {
+        synchronized (finalized) {
+            return finalized.size();
+        }
+    }
+
+    private CompletableFuture<BigInteger> read(String contractAddress, String data, long block,
+                                               Supplier<BigInteger> fromIndex) {
+        Key key = new Key(contractAddress, data, block);
+        BigInteger cached;
+        synchronized (finalized) {
+            cached = finalized.get(key);
+        }
+        if (cached != null) {
+            cacheHits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+        if (fromIndex != null && eventIndexer.covers(contractAddress, block)) {
+            indexReads.increment();
+            // the index only holds confirmed blocks
+            return CompletableFuture.completedFuture(store(key, fromIndex.get()));
+        }
+        nodeReads.increment();
+        return coalescer.call(contractAddress, data, DefaultBlockParameter.valueOf(BigInteger.valueOf(block)))
+                .thenApply(ethCall -> {
+                    if (ethCall.hasError()) {
+                        throw new ContractCallException(ethCall.getError().getMessage());
+                    }
+                    if (ethCall.isReverted()) {
+                        throw new ContractCallException(ethCall.getRevertReason());
+                    }
+                    if (Numeric.cleanHexPrefix(ethCall.getValue()).isEmpty()) {
+                        throw new ContractCallException("No contract at " + contractAddress + " in block " + block);
+                    }
+                    BigInteger value = ContractCodec.decodeUint256(ethCall.getValue());
+                    return isFinalized(block) ? store(key, value) : value;
+                });
+    }
+
+    private BigInteger store(Key key, BigInteger value) {
+        synchronized (finalized) {
+            finalized.put(key, value);
+        }
+        return value;
+    }
+
+    private static long parseBlock(String block, String tag) {
+        try {
+            return tag.startsWith("0x") ? Numeric.decodeQuantity(tag).longValueExact() : Long.parseLong(tag);
+        } catch (NumberFormatException | ArithmeticException | MessageDecodingException e) {
+            throw new IllegalArgumentException("Invalid block " + block, e);
+        }
+    }
+
+    private long head() {
+        long head = chainHeadMonitor.getHead();
+        if (head >= 0) {
+            return head;
+        }
+        try {
+            return web3j.ethBlockNumber().send().getBlockNumber().longValueExact();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String source, String description) {
+        return Counter.builder("web3j.history.reads").tag("source", source)
+                .description(description).register(meterRegistry);
+    }
+
+    private record Key(String address, String data, long block) {
+
+        private Key {
+            address = address.toLowerCase(Locale.ROOT);
+            data = data.toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -1,17 +1,28 @@
 package com.wetech.demo.web3j.service;
 
+import com.wetech.demo.web3j.abi.AbiBytes;
+import com.wetech.demo.web3j.abi.ContractCodec;
+import com.wetech.demo.web3j.abi.ContractSignatures;
+import com.wetech.demo.web3j.cache.ContractReadCache;
 import com.wetech.demo.web3j.contracts.simplestorage.SimpleStorage;
-import lombok.Getter;
+import com.wetech.demo.web3j.rpc.Web3jExecutors;
+import com.wetech.demo.web3j.tx.PipelinedTransactionManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.web3j.crypto.Credentials;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.core.methods.response.TransactionReceipt;
 import org.web3j.tx.gas.ContractGasProvider;
+import org.web3j.utils.Numeric;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
@@ -19,67 +30,98 @@ import java.util.concurrent.CompletableFuture;
 public class SimpleStorageService {
 
     private final Web3j web3j;
-    private final Credentials credentials;
+    private final PipelinedTransactionManager transactionManager;
     private final ContractGasProvider gasProvider;
-    
-    private SimpleStorage contract;
-    /**
-     * -- GETTER --
-     *  Get the address of the currently loaded contract
-     *
-     * @return the contract address
-     */
-    @Getter
-    private String contractAddress;
+    private final ContractReadCache readCache;
+    private final Web3jExecutors executors;
+    private final MeterRegistry meterRegistry;
 
     /**
-     * Deploy the SimpleStorage contract to the blockchain
+     * Deploy the SimpleStorage contract to the blockchain. Deployment blocks until the
+     * receipt arrives, so it runs on the blocking executor rather than an I/O thread.
      * @return the address of the deployed contract
      */
     public CompletableFuture<String> deployContract() {
         log.info("Deploying SimpleStorage contract...");
-        return SimpleStorage.deploy(web3j, credentials, gasProvider)
-                .sendAsync()
+        return timed("none", "constructor",
+                () -> executors.supplyBlocking(SimpleStorage.deploy(web3j, transactionManager, gasProvider)))
                 .thenApply(contract -> {
-                    this.contract = contract;
-                    this.contractAddress = contract.getContractAddress();
-                    log.info("SimpleStorage contract deployed to: {}", contractAddress);
-                    return contractAddress;
+                    log.info("SimpleStorage contract deployed to: {}", contract.getContractAddress());
+                    return contract.getContractAddress();
                 });
     }
 
     /**
-     * Load an existing contract from the blockchain
-     * @param contractAddress the address of the contract to load
+     * Get the current value stored in a contract. The result is served from the
+     * read cache until a {@code DataChanged} event for the contract is observed.
+     * @param contractAddress the address of the contract
+     * @return the stored value
+     * @throws IllegalArgumentException if the address is not valid
      */
-    public void loadContract(String contractAddress) {
-        log.info("Loading SimpleStorage contract from address: {}", contractAddress);
-        this.contract = SimpleStorage.load(contractAddress, web3j, credentials, gasProvider);
-        this.contractAddress = contractAddress;
+    public CompletableFuture<BigInteger> getValue(String contractAddress) {
+        log.info("Getting value from contract at address: {}", contractAddress);
+        String address = normalize(contractAddress);
+        return timed(address, ContractSignatures.GET,
+                () -> readCache.call(address, ContractCodec.local().get().toHex()))
+                .thenApply(ContractCodec::decodeUint256);
     }
 
     /**
-     * Get the current value stored in the contract
-     * @return the stored value
+     * Get the values stored in many contracts. Cached values are answered at once, and the
+     * remaining calls go out together in the next JSON-RPC batch.
+     * @param contractAddresses the addresses of the contracts
+     * @return the stored value of each contract in order, or {@code null} where the address is
+     *         not valid or the call failed
      */
-    public CompletableFuture<BigInteger> getValue() {
-        if (contract == null) {
-            throw new IllegalStateException("Contract not deployed or loaded");
+    public CompletableFuture<List<BigInteger>> getValues(List<String> contractAddresses) {
+        log.info("Getting values from {} contracts", contractAddresses.size());
+        String data = ContractCodec.local().get().toHex();
+        List<CompletableFuture<BigInteger>> values = new ArrayList<>(contractAddresses.size());
+        for (String contractAddress : contractAddresses) {
+            String address;
+            try {
+                address = normalize(contractAddress);
+            } catch (IllegalArgumentException e) {
+                values.add(CompletableFuture.completedFuture(null));
+                continue;
+            }
+            values.add(timed(address, ContractSignatures.GET, () -> readCache.call(address, data))
+                    .thenApply(ContractCodec::decodeUint256)
+                    .exceptionally(error -> null));
         }
-        log.info("Getting value from contract at address: {}", contractAddress);
-        return contract.get().sendAsync();
+        return CompletableFuture.allOf(values.toArray(CompletableFuture[]::new)).thenApply(done -> {
+            List<BigInteger> results = new ArrayList<>(values.size());
+            values.forEach(value -> results.add(value.join()));
+            return results;
+        });
     }
 
     /**
-     * Set a new value in the contract
+     * Set a new value in a contract. The transaction is broadcast immediately with a
+     * locally allocated nonce, so concurrent calls are pipelined rather than serialized.
+     * @param contractAddress the address of the contract
      * @param value the new value to store
      * @return the transaction receipt
+     * @throws IllegalArgumentException if the address is not valid
      */
-    public CompletableFuture<TransactionReceipt> setValue(BigInteger value) {
-        if (contract == null) {
-            throw new IllegalStateException("Contract not deployed or loaded");
-        }
+    public CompletableFuture<TransactionReceipt> setValue(String contractAddress, BigInteger value) {
         log.info("Setting value {} in contract at address: {}", value, contractAddress);
-        return contract.set(value).sendAsync();
+        String address = normalize(contractAddress);
+        return timed(address, ContractSignatures.SET, () -> transactionManager.submit(address,
+                ContractCodec.local().set(value).toHex(), BigInteger.ZERO, gasProvider));
+    }
+
+    private static String normalize(String contractAddress) {
+        return Numeric.toHexString(AbiBytes.address(contractAddress));
+    }
+
+    private <T> CompletableFuture<T> timed(String contract, String selector, Supplier<CompletableFuture<T>> call) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return call.get().whenComplete((result, error) -> sample.stop(Timer.builder("web3j.contract.calls")
+                .description("Latency of SimpleStorage calls as seen by callers, including cached reads")
+                .tag("contract", contract.toLowerCase(Locale.ROOT))
+                .tag("selector", selector)
+                .tag("outcome", error == null ? "success" : "failure")
+                .register(meterRegistry)));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,148 @@
+package com.wetech.demo.web3j.service;
+
+import com.wetech.demo.web3j.abi.AbiBytes;
+import com.wetech.demo.web3j.abi.ContractCodec;
+import com.wetech.demo.web3j.dto.AllowanceQuery;
+import com.wetech.demo.web3j.indexer.ContractEvent;
+import com.wetech.demo.web3j.indexer.EventIndexer;
+import com.wetech.demo.web3j.indexer.EventStore;
+import com.wetech.demo.web3j.indexer.HolderProjection;
+import com.wetech.demo.web3j.rpc.MulticallClient;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ZhxService {
+
+    private final MulticallClient multicallClient;
+    private final EventIndexer eventIndexer;
+    private final EventStore eventStore;
+    private final HolderProjection holderProjection;
+
+    /**
+     * Get the ZHX balances of many holders using aggregated calls
+     * @param tokenAddress the ZHX contract address
+     * @param holders the holder addresses
+     * @return the balance of each holder in order, or {@code null} where the call failed
+     */
+    public CompletableFuture<List<BigInteger>> getBalances(String tokenAddress, List<String> holders) {
+        log.info("Getting {} balances from ZHX contract at address: {}", holders.size(), tokenAddress);
+        byte[] token = AbiBytes.address(tokenAddress);
+        ContractCodec codec = ContractCodec.local();
+        List<MulticallClient.Call> calls = new ArrayList<>(holders.size());
+        for (String holder : holders) {
+            calls.add(new MulticallClient.Call(token, codec.balanceOf(holder).toBytes()));
+        }
+        return multicallClient.aggregate(calls).thenApply(ZhxService::toUint256s);
+    }
+
+    /**
+     * Get the ZHX allowances of many owner/spender pairs using aggregated calls
+     * @param tokenAddress the ZHX contract address
+     * @param queries the owner/spender pairs
+     * @return the allowance of each pair in order, or {@code null} where the call failed
+     */
+    public CompletableFuture<List<BigInteger>> getAllowances(String tokenAddress, List<AllowanceQuery> queries) {
+        log.info("Getting {} allowances from ZHX contract at address: {}", queries.size(), tokenAddress);
+        byte[] token = AbiBytes.address(tokenAddress);
+        ContractCodec codec = ContractCodec.local();
+        List<MulticallClient.Call> calls = new ArrayList<>(queries.size());
+        for (AllowanceQuery query : queries) {
+            calls.add(new MulticallClient.Call(token, codec.allowance(query.getOwner(), query.getSpender()).toBytes()));
+        }
+        return multicallClient.aggregate(calls).thenApply(ZhxService::toUint256s);
+    }
+
+    /**
+     * Get the balance of a holder from the local event index
+     * @param tokenAddress the ZHX contract address
+     * @param holder the holder address
+     * @return the balance as of the last projected block
+     */
+    public BigInteger getIndexedBalance(String tokenAddress, String holder) {
+        requireIndexer();
+        return holderProjection.getBalance(tokenAddress, holder);
+    }
+
+    /**
+     * Get the total supply from the local event index
+     * @param tokenAddress the ZHX contract address
+     * @return the total supply as of the last projected block
+     */
+    public BigInteger getIndexedTotalSupply(String tokenAddress) {
+        requireIndexer();
+        return holderProjection.getTotalSupply(tokenAddress);
+    }
+
+    /**
+     * Get the largest holders from the local event index
+     * @param tokenAddress the ZHX contract address
+     * @param limit the maximum number of holders
+     * @return holder/balance pairs, largest balance first
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    public List<Map.Entry<String, BigInteger>> getTopHolders(String tokenAddress, int limit) {
+        requireIndexer();
+        requirePositive(limit);
+        return holderProjection.getTopHolders(tokenAddress, limit);
+    }
+
+    /**
+     * Get the transfers and approvals involving an address from the local event index
+     * @param tokenAddress the ZHX contract address
+     * @param address the address to look up
+     * @param limit the maximum number of events
+     * @return the events, newest first
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    public List<ContractEvent> getHistory(String tokenAddress, String address, int limit) {
+        requireIndexer();
+        requirePositive(limit);
+        return eventStore.getHistory(tokenAddress, address, limit);
+    }
+
+    /**
+     * Get the last confirmed block covered by the local event index
+     * @return the block number, or -1 if nothing has been indexed
+     */
+    public long getLastIndexedBlock() {
+        return eventStore.getLastIndexedBlock();
+    }
+
+    /**
+     * Get the last block applied to the indexed balances, which may not be confirmed yet
+     * @return the block number, or -1 if nothing has been indexed
+     */
+    public long getProjectedBlock() {
+        return holderProjection.getBlock();
+    }
+
+    private void requireIndexer() {
+        if (!eventIndexer.isEnabled()) {
+            throw new IllegalStateException("Event indexer is not enabled");
+        }
+    }
+
+    private static void requirePositive(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Invalid limit " + limit);
+        }
+    }
+
+    private static List<BigInteger> toUint256s(List<byte[]> results) {
+        List<BigInteger> values = new ArrayList<>(results.size());
+        for (byte[] result : results) {
+            values.add(result == null || result.length < AbiBytes.WORD ? null : AbiBytes.readUint256(result, 0));
+        }
+        return values;
+    }
+}
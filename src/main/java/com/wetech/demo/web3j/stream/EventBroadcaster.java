@@ -0,0 +1,219 @@
+package com.wetech.demo.web3j.stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wetech.demo.web3j.chain.LogFeed;
+import com.wetech.demo.web3j.chain.LogListener;
+import com.wetech.demo.web3j.indexer.ContractEvent;
+import com.wetech.demo.web3j.rpc.Web3jExecutors;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams live contract events from the {@link LogFeed} to Server-Sent Events clients. Each
+ * log is decoded and serialized once and the frame is shared by every client whose filter
+ * matches, so a client costs no RPC traffic and almost no work per event.
+ *
+ * <p>Every client has a buffer of {@code web3j.events.client-buffer} frames, drained by a send
+ * task of its own; a client that reads slower than events arrive loses the overflow and is told
+ * how many it missed in a {@code lagged} event, without holding back anyone else. A comment is
+ * sent every {@code web3j.events.heartbeat-millis} so that closed connections are noticed.
+ */
+@Slf4j
+@Service
+public class EventBroadcaster implements LogListener {
+
+    private final LogFeed logFeed;
+    private final ObjectMapper objectMapper;
+    private final Executor executor;
+    private final int maxClients;
+    private final int clientBuffer;
+    private final long heartbeatMillis;
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    private final Counter dropped;
+    private ScheduledExecutorService heartbeat;
+
+    public EventBroadcaster(LogFeed logFeed, ObjectMapper objectMapper, Web3jExecutors executors,
+                            MeterRegistry meterRegistry,
+                            @Value("${web3j.events.max-clients:10000}") int maxClients,
+                            @Value("${web3j.events.client-buffer:256}") int clientBuffer,
+                            @Value("${web3j.events.heartbeat-millis:15000}") long heartbeatMillis) {
+        this.logFeed = logFeed;
+        this.objectMapper = objectMapper;
+        this.executor = executors.blocking();
+        this.maxClients = maxClients;
+        this.clientBuffer = clientBuffer;
+        this.heartbeatMillis = heartbeatMillis;
+        this.dropped = Counter.builder("web3j.events.dropped")
+                .description("Events dropped because a streaming client's buffer was full")
+                .register(meterRegistry);
+        Gauge.builder("web3j.events.clients", clients, List::size)
+                .description("Connected event streaming clients").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-stream-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleWithFixedDelay(() -> {
+            Set<ResponseBodyEmitter.DataWithMediaType> ping = SseEmitter.event().comment("").build();
+            clients.forEach(client -> client.offer(ping, false));
+        }, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        heartbeat.shutdownNow();
+        clients.forEach(client -> client.emitter.complete());
+    }
+
+    /**
+     * Open a stream of the events matching a filter
+     * @param filter the events the client wants
+     * @return the emitter to return from the request, or empty if events are not fed or too many clients are connected
+     */
+    public Optional<SseEmitter> subscribe(EventFilter filter) {
+        if (!logFeed.isEnabled() || clients.size() >= maxClients) {
+            return Optional.empty();
+        }
+        SseEmitter emitter = new SseEmitter(0L);
+        Client client = new Client(emitter, filter, new ArrayBlockingQueue<>(clientBuffer));
+        emitter.onCompletion(() -> clients.remove(client));
+        emitter.onTimeout(() -> clients.remove(client));
+        emitter.onError(error -> clients.remove(client));
+        clients.add(client);
+        return Optional.of(emitter);
+    }
+
+    /**
+     * Get the number of connected clients
+     * @return the client count
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    @Override
+    public void onLogs(List<Log> logs) {
+        if (clients.isEmpty()) {
+            return;
+        }
+        for (Log entry : logs) {
+            ContractEvent event = ContractEvent.decode(entry);
+            if (event == null) {
+                continue;
+            }
+            Set<ResponseBodyEmitter.DataWithMediaType> frame;
+            try {
+                frame = frame(event, entry.isRemoved());
+            } catch (JsonProcessingException e) {
+                log.warn("Failed to serialize event {}: {}", event, e.getMessage());
+                continue;
+            }
+            for (Client client : clients) {
+                if (client.filter.matches(event)) {
+                    client.offer(frame, true);
+                }
+            }
+        }
+    }
+
+    private Set<ResponseBodyEmitter.DataWithMediaType> frame(ContractEvent event, boolean removed)
+            throws JsonProcessingException {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("type", event.type().name());
+        data.put("contract", event.contract());
+        data.put("blockNumber", event.blockNumber());
+        data.put("logIndex", event.logIndex());
+        data.put("transactionHash", event.transactionHash());
+        data.put("from", event.from());
+        data.put("to", event.to());
+        data.put("value", event.value().toString());
+        data.put("removed", removed);
+        return SseEmitter.event()
+                .id(event.blockNumber() + "-" + event.logIndex())
+                .name(event.type().name().toLowerCase(Locale.ROOT))
+                .data(objectMapper.writeValueAsString(data), MediaType.APPLICATION_JSON)
+                .build();
+    }
+
+    private final class Client {
+        private final SseEmitter emitter;
+        private final EventFilter filter;
+        private final BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicLong missed = new AtomicLong();
+
+        private Client(SseEmitter emitter, EventFilter filter,
+                       BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> queue) {
+            this.emitter = emitter;
+            this.filter = filter;
+            this.queue = queue;
+        }
+
+        private void offer(Set<ResponseBodyEmitter.DataWithMediaType> frame, boolean event) {
+            if (!queue.offer(frame) && event) {
+                missed.incrementAndGet();
+                dropped.increment();
+            }
+            if (draining.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                while (true) {
+                    long lost = missed.getAndSet(0);
+                    if (lost > 0) {
+                        emitter.send(SseEmitter.event().name("lagged").data(Map.of("missed", lost)));
+                    }
+                    Set<ResponseBodyEmitter.DataWithMediaType> frame = queue.poll();
+                    if (frame == null) {
+                        draining.set(false);
+                        // an offer may have come in after the poll but before the flag was cleared
+                        if (queue.isEmpty() || !draining.compareAndSet(false, true)) {
+                            return;
+                        }
+                        continue;
+                    }
+                    emitter.send(frame);
+                }
+            } catch (IOException | IllegalStateException e) {
+                // the client went away; completing the emitter removes it
+                clients.remove(this);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
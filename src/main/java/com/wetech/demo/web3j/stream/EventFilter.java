@@ -0,0 +1,50 @@
+package com.wetech.demo.web3j.stream;
+
+import com.wetech.demo.web3j.indexer.ContractEvent;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The events a streaming client asked for. An empty set matches everything; {@code addresses}
+ * match either side of a transfer or approval.
+ */
+public record EventFilter(Set<String> contracts, Set<String> addresses, Set<ContractEvent.Type> types) {
+
+    /**
+     * Build a filter from request parameters
+     * @param contracts contract addresses, or null for all
+     * @param addresses account addresses, or null for all
+     * @param types event types such as {@code transfer} or {@code data_changed}, or null for all
+     * @return the filter
+     */
+    public static EventFilter of(Collection<String> contracts, Collection<String> addresses,
+                                 Collection<String> types) {
+        Set<ContractEvent.Type> typeSet = EnumSet.noneOf(ContractEvent.Type.class);
+        if (types != null) {
+            types.forEach(type -> typeSet.add(
+                    ContractEvent.Type.valueOf(type.trim().toUpperCase(Locale.ROOT).replace('-', '_'))));
+        }
+        return new EventFilter(normalize(contracts), normalize(addresses), typeSet);
+    }
+
+    /**
+     * Check whether an event is wanted
+     * @param event the decoded event
+     * @return true if it passes every part of the filter
+     */
+    public boolean matches(ContractEvent event) {
+        return (types.isEmpty() || types.contains(event.type()))
+                && (contracts.isEmpty() || contracts.contains(event.contract()))
+                && (addresses.isEmpty() || addresses.contains(event.from()) || addresses.contains(event.to()));
+    }
+
+    private static Set<String> normalize(Collection<String> addresses) {
+        return addresses == null ? Set.of() : addresses.stream()
+                .map(address -> address.trim().toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+}
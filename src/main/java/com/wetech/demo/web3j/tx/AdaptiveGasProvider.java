@@ -0,0 +1,251 @@
+package com.wetech.demo.web3j.tx;
+
+import com.wetech.demo.web3j.chain.BlockListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthChainId;
+import org.web3j.protocol.core.methods.response.EthEstimateGas;
+import org.web3j.protocol.core.methods.response.EthFeeHistory;
+import org.web3j.protocol.core.methods.response.EthGasPrice;
+import org.web3j.tx.ChainIdLong;
+import org.web3j.tx.gas.ContractEIP1559GasProvider;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Prices transactions from the node's recent fee market instead of fixed values. The fee
+ * history and gas price are sampled in one batch per new block and cached until the next,
+ * so pricing a transaction never costs an RPC round-trip.
+ *
+ * <p>When the node reports a base fee, transactions are priced as EIP-1559 with the median
+ * priority fee of the sampled blocks and a fee cap of the next base fee times
+ * {@code web3j.gas.base-fee-multiplier} plus that tip. Otherwise {@link #getChainId()} is
+ * {@link ChainIdLong#NONE} and the {@link PipelinedTransactionManager} falls back to legacy
+ * transactions at {@link #getGasPrice()}, which the {@link TransactionSigner} still signs with
+ * the chain id. Until the first sample, {@code web3j.gas-price} is used.
+ *
+ * <p>Gas limits come from {@code eth_estimateGas}, cached per contract and function selector
+ * and raised by a margin plus a fixed headroom for storage writes the estimated call did not
+ * make. {@code web3j.gas-limit} caps every limit and is used when estimation fails.
+ */
+@Slf4j
+@Component
+public class AdaptiveGasProvider implements ContractEIP1559GasProvider, BlockListener {
+
+    private static final int SELECTOR_HEX_LENGTH = 10;
+
+    private final Web3j web3j;
+    private final BigInteger gasLimit;
+    private final boolean eip1559;
+    private final int feeHistoryBlocks;
+    private final double rewardPercentile;
+    private final int baseFeeMultiplier;
+    private final BigInteger maxPrice;
+    private final int limitMarginPercent;
+    private final BigInteger limitHeadroom;
+
+    private final ConcurrentMap<String, BigInteger> estimates = new ConcurrentHashMap<>();
+    private volatile long chainId;
+    private volatile Fees fees;
+    private boolean feeHistorySupported = true;
+
+    public AdaptiveGasProvider(Web3j web3j,
+                               @Value("${web3j.gas-price:20000000000}") BigInteger fallbackGasPrice,
+                               @Value("${web3j.gas-limit:6721975}") BigInteger gasLimit,
+                               @Value("${web3j.chain-id:-1}") long chainId,
+                               @Value("${web3j.gas.eip1559:true}") boolean eip1559,
+                               @Value("${web3j.gas.fee-history-blocks:10}") int feeHistoryBlocks,
+                               @Value("${web3j.gas.reward-percentile:50}") double rewardPercentile,
+                               @Value("${web3j.gas.base-fee-multiplier:2}") int baseFeeMultiplier,
+                               @Value("${web3j.gas.max-price:500000000000}") BigInteger maxPrice,
+                               @Value("${web3j.gas.limit-margin-percent:20}") int limitMarginPercent,
+                               @Value("${web3j.gas.limit-headroom:25000}") BigInteger limitHeadroom) {
+        this.web3j = web3j;
+        this.gasLimit = gasLimit;
+        this.chainId = chainId;
+        this.eip1559 = eip1559;
+        this.feeHistoryBlocks = feeHistoryBlocks;
+        this.rewardPercentile = rewardPercentile;
+        this.baseFeeMultiplier = baseFeeMultiplier;
+        this.maxPrice = maxPrice;
+        this.limitMarginPercent = limitMarginPercent;
+        this.limitHeadroom = limitHeadroom;
+        this.fees = new Fees(fallbackGasPrice, null, null);
+    }
+
+    @Override
+    public void onBlocks(long fromBlock, long toBlock) {
+        try {
+            BatchRequest batch = web3j.newBatch().add(web3j.ethGasPrice());
+            boolean sampleFeeHistory = eip1559 && feeHistorySupported;
+            if (sampleFeeHistory) {
+                batch.add(web3j.ethFeeHistory(feeHistoryBlocks, DefaultBlockParameterName.LATEST,
+                        List.of(rewardPercentile)));
+            }
+            boolean fetchChainId = sampleFeeHistory && chainId <= ChainIdLong.NONE;
+            if (fetchChainId) {
+                batch.add(web3j.ethChainId());
+            }
+            List<? extends Response<?>> responses = batch.send().getResponses();
+            EthGasPrice gasPrice = (EthGasPrice) responses.get(0);
+            BigInteger legacyPrice = gasPrice.hasError() ? fees.gasPrice() : cap(gasPrice.getGasPrice());
+            BigInteger maxFee = null;
+            BigInteger priorityFee = null;
+            if (sampleFeeHistory) {
+                EthFeeHistory feeHistory = (EthFeeHistory) responses.get(1);
+                if (fetchChainId && !responses.get(2).hasError()) {
+                    chainId = ((EthChainId) responses.get(2)).getChainId().longValueExact();
+                }
+                if (feeHistory.hasError() || feeHistory.getFeeHistory() == null) {
+                    log.info("Node does not report fee history ({}), pricing legacy transactions",
+                            feeHistory.hasError() ? feeHistory.getError().getMessage() : "no result");
+                    feeHistorySupported = false;
+                } else {
+                    List<BigInteger> baseFees = feeHistory.getFeeHistory().getBaseFeePerGas();
+                    if (baseFees != null && !baseFees.isEmpty()) {
+                        // the last entry is the base fee of the block after the newest sampled one
+                        BigInteger nextBaseFee = baseFees.get(baseFees.size() - 1);
+                        priorityFee = cap(medianReward(feeHistory.getFeeHistory().getReward()));
+                        maxFee = cap(nextBaseFee.multiply(BigInteger.valueOf(baseFeeMultiplier)).add(priorityFee));
+                    }
+                }
+            }
+            fees = new Fees(legacyPrice, maxFee, priorityFee);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to sample gas prices at block {}: {}", toBlock, e.getMessage());
+        }
+    }
+
+    /**
+     * Get the legacy gas price sampled at the last block
+     * @return the gas price in wei
+     */
+    @Override
+    public BigInteger getGasPrice() {
+        return fees.gasPrice();
+    }
+
+    /**
+     * Get a gas limit for a transaction from the cached estimate of its function
+     * @param transaction the transaction, with its sender, recipient and data
+     * @return the estimate with margin and headroom, capped at {@code web3j.gas-limit}
+     */
+    @Override
+    public BigInteger getGasLimit(Transaction transaction) {
+        String key = key(transaction);
+        BigInteger estimate = key == null ? null : estimates.get(key);
+        if (estimate == null) {
+            estimate = estimate(transaction);
+            if (estimate == null) {
+                return gasLimit;
+            }
+            if (key != null) {
+                estimates.merge(key, estimate, BigInteger::max);
+            }
+        }
+        BigInteger limit = estimate.multiply(BigInteger.valueOf(100L + limitMarginPercent))
+                .divide(BigInteger.valueOf(100)).add(limitHeadroom);
+        return limit.min(gasLimit);
+    }
+
+    @Override
+    public BigInteger getGasLimit() {
+        return gasLimit;
+    }
+
+    /**
+     * Get the chain id for EIP-1559 transactions
+     * @return the chain id, or {@link ChainIdLong#NONE} while transactions should be priced as legacy
+     */
+    @Override
+    public long getChainId() {
+        return fees.maxFeePerGas() != null ? chainId : ChainIdLong.NONE;
+    }
+
+    /**
+     * Get the fee cap sampled at the last block
+     * @return the maximum fee per gas in wei, or the legacy gas price without EIP-1559 pricing
+     */
+    @Override
+    public BigInteger getMaxFeePerGas() {
+        Fees current = fees;
+        return current.maxFeePerGas() != null ? current.maxFeePerGas() : current.gasPrice();
+    }
+
+    /**
+     * Get the priority fee sampled at the last block
+     * @return the maximum priority fee per gas in wei, or the legacy gas price without EIP-1559 pricing
+     */
+    @Override
+    public BigInteger getMaxPriorityFeePerGas() {
+        Fees current = fees;
+        return current.maxPriorityFeePerGas() != null ? current.maxPriorityFeePerGas() : current.gasPrice();
+    }
+
+    /**
+     * Get the highest fee the provider will ever offer, for stuck transaction replacement
+     * @return the price cap in wei
+     */
+    public BigInteger getMaxPrice() {
+        return maxPrice;
+    }
+
+    private BigInteger estimate(Transaction transaction) {
+        try {
+            EthEstimateGas response = web3j.ethEstimateGas(transaction).send();
+            if (response.hasError()) {
+                log.debug("Gas estimation failed for {}: {}", transaction.getTo(), response.getError().getMessage());
+                return null;
+            }
+            return response.getAmountUsed();
+        } catch (IOException e) {
+            log.warn("Gas estimation failed for {}: {}", transaction.getTo(), e.getMessage());
+            return null;
+        }
+    }
+
+    private BigInteger medianReward(List<List<BigInteger>> rewards) {
+        List<BigInteger> sampled = new ArrayList<>();
+        if (rewards != null) {
+            for (List<BigInteger> blockRewards : rewards) {
+                if (blockRewards != null && !blockRewards.isEmpty()) {
+                    sampled.add(blockRewards.get(0));
+                }
+            }
+        }
+        if (sampled.isEmpty()) {
+            return BigInteger.ZERO;
+        }
+        sampled.sort(null);
+        return sampled.get(sampled.size() / 2);
+    }
+
+    private BigInteger cap(BigInteger price) {
+        return price.min(maxPrice);
+    }
+
+    private static String key(Transaction transaction) {
+        // deployments have no recipient and a different cost every time
+        String data = transaction.getData();
+        if (transaction.getTo() == null || data == null || data.length() < SELECTOR_HEX_LENGTH) {
+            return null;
+        }
+        return transaction.getTo().toLowerCase(Locale.ROOT) + data.substring(0, SELECTOR_HEX_LENGTH)
+                .toLowerCase(Locale.ROOT);
+    }
+
+    private record Fees(BigInteger gasPrice, BigInteger maxFeePerGas, BigInteger maxPriorityFeePerGas) {
+    }
+}
@@ -0,0 +1,234 @@
+package com.wetech.demo.web3j.tx;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.response.EthGetTransactionCount;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out transaction nonces from a local per-account counter so that signed
+ * transactions can be broadcast back-to-back without an RPC round-trip per send.
+ * The counter is seeded from the node's pending transaction count on first use and only
+ * ever moves forward: on a nonce conflict it is advanced to the node's pending count, never
+ * set back below nonces that are signed and still on their way to the node.
+ *
+ * <p>A nonce that was handed out but never reached the node, because its transaction was
+ * rejected or could not be signed or sent, is released and handed out again before the
+ * counter moves on, so the transactions signed after it are not stuck behind the gap. If no
+ * transaction takes it within {@code web3j.nonce.gap-fill-delay-millis}, the gap is filled with
+ * a zero-value transfer to the account itself.
+ */
+@Slf4j
+@Component
+public class NonceManager {
+
+    private static final BigInteger TRANSFER_GAS = BigInteger.valueOf(21_000);
+    private static final int MAX_FILL_ATTEMPTS = 5;
+
+    private final Web3j web3j;
+    private final TransactionSigner signer;
+    private final long gapFillDelayMillis;
+    private final Counter gaps;
+    private final Counter filled;
+
+    private final ConcurrentMap<String, Account> accounts = new ConcurrentHashMap<>();
+
+    public NonceManager(Web3j web3j, TransactionSigner signer, MeterRegistry meterRegistry,
+                        @Value("${web3j.nonce.gap-fill-delay-millis:2000}") long gapFillDelayMillis) {
+        this.web3j = web3j;
+        this.signer = signer;
+        this.gapFillDelayMillis = gapFillDelayMillis;
+        this.gaps = Counter.builder("web3j.tx.nonce.gaps")
+                .description("Nonces handed out that never reached the node, released to be reused")
+                .register(meterRegistry);
+        this.filled = Counter.builder("web3j.tx.nonce.filled")
+                .description("Released nonces filled with a zero-value self-transfer")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Allocate the next nonce for an account
+     * @param address the sending account
+     * @return the lowest released nonce, or else a nonce no other caller has been given
+     * @throws IOException if the initial nonce cannot be fetched from the node
+     */
+    public BigInteger next(String address) throws IOException {
+        Account account = account(address);
+        Long released = account.released.pollFirst();
+        return BigInteger.valueOf(released != null ? released : account.next.getAndIncrement());
+    }
+
+    /**
+     * Reserve a contiguous range of nonces, e.g. to sign a batch of transactions up front
+     * @param address the sending account
+     * @param count the number of nonces
+     * @return the first nonce of the range
+     * @throws IOException if the initial nonce cannot be fetched from the node
+     */
+    public long reserve(String address, int count) throws IOException {
+        return account(address).next.getAndAdd(count);
+    }
+
+    /**
+     * Make sure a nonce is never handed out again, e.g. one signed into a transaction
+     * persisted before a restart that the node may not have seen yet
+     * @param address the sending account
+     * @param nonce the nonce already in use
+     * @throws IOException if the initial nonce cannot be fetched from the node
+     */
+    public void advancePast(String address, long nonce) throws IOException {
+        Account account = account(address);
+        account.next.accumulateAndGet(nonce + 1, Math::max);
+        account.released.remove(nonce);
+    }
+
+    /**
+     * Give back a nonce whose transaction never reached the node, so the next transaction
+     * takes it instead of leaving a gap
+     * @param address the sending account
+     * @param nonce the unused nonce
+     */
+    public void release(String address, long nonce) {
+        if (release(address, nonce, 0)) {
+            gaps.increment();
+            log.debug("Released nonce {} of {}", nonce, address);
+        }
+    }
+
+    /**
+     * Catch up with the node after a nonce conflict: the counter is advanced to the node's
+     * pending transaction count if that is ahead, and released nonces the node has since
+     * seen are dropped. The counter never moves back.
+     * @param address the sending account
+     * @return completes once the counter is updated
+     */
+    public CompletableFuture<Void> resync(String address) {
+        return web3j.ethGetTransactionCount(address, DefaultBlockParameterName.PENDING).sendAsync()
+                .thenAccept(count -> {
+                    if (count.hasError()) {
+                        throw new CompletionException(new IOException(
+                                "Failed to fetch nonce for " + address + ": " + count.getError().getMessage()));
+                    }
+                    long pending = count.getTransactionCount().longValueExact();
+                    Account account = accounts.computeIfAbsent(key(address), k -> new Account(pending));
+                    long local = account.next.getAndAccumulate(pending, Math::max);
+                    account.released.headSet(pending).clear();
+                    if (pending > local) {
+                        log.info("Advanced nonce for {} from {} to {}", address, local, pending);
+                    }
+                });
+    }
+
+    /**
+     * Peek at the nonce the next call to {@link #next(String)} would return
+     * @param address the sending account
+     * @return the next nonce, or -1 if the account has not been used yet
+     */
+    public long peek(String address) {
+        Account account = accounts.get(key(address));
+        return account == null ? -1 : account.next.get();
+    }
+
+    private boolean release(String address, long nonce, int attempt) {
+        Account account = accounts.get(key(address));
+        if (account == null || nonce >= account.next.get() || !account.released.add(nonce)) {
+            return false;
+        }
+        if (gapFillDelayMillis > 0 && attempt < MAX_FILL_ATTEMPTS && key(address).equals(key(signer.getAddress()))) {
+            CompletableFuture.runAsync(() -> fill(address, account, nonce, attempt),
+                    CompletableFuture.delayedExecutor(gapFillDelayMillis * (attempt + 1), TimeUnit.MILLISECONDS));
+        }
+        return true;
+    }
+
+    private void fill(String address, Account account, long nonce, int attempt) {
+        if (!account.released.remove(nonce)) {
+            // a transaction took it in the meantime
+            return;
+        }
+        web3j.ethGasPrice().sendAsync().thenCompose(gasPrice -> {
+            if (gasPrice.hasError()) {
+                throw new CompletionException(new IOException(gasPrice.getError().getMessage()));
+            }
+            return signer.signAsync(RawTransaction.createEtherTransaction(BigInteger.valueOf(nonce),
+                    gasPrice.getGasPrice(), TRANSFER_GAS, address, BigInteger.ZERO));
+        }).thenCompose(signed -> web3j.ethSendRawTransaction(signed).sendAsync()).whenComplete((response, error) -> {
+            String message = error != null ? error.getMessage()
+                    : response.hasError() ? response.getError().getMessage() : null;
+            if (message == null) {
+                filled.increment();
+                log.info("Filled nonce gap {} of {} with {}", nonce, address, response.getTransactionHash());
+            } else if (PipelinedTransactionManager.isNonceConflict(message)
+                    || PipelinedTransactionManager.isAlreadyKnown(message)) {
+                log.debug("Nonce {} of {} is already taken on the node", nonce, address);
+            } else {
+                // transport failures are retried for as long as they last, rejections a few times
+                int attempts = error != null ? attempt : attempt + 1;
+                if (attempts >= MAX_FILL_ATTEMPTS) {
+                    log.warn("Failed to fill nonce gap {} of {}, leaving it to the next transaction: {}",
+                            nonce, address, message);
+                }
+                release(address, nonce, attempts);
+            }
+        });
+    }
+
+    private Account account(String address) throws IOException {
+        String key = key(address);
+        Account account = accounts.get(key);
+        if (account != null) {
+            return account;
+        }
+        synchronized (accounts) {
+            account = accounts.get(key);
+            if (account == null) {
+                account = new Account(fetchPendingNonce(address));
+                accounts.put(key, account);
+            }
+            return account;
+        }
+    }
+
+    private long fetchPendingNonce(String address) throws IOException {
+        EthGetTransactionCount count = web3j
+                .ethGetTransactionCount(address, DefaultBlockParameterName.PENDING)
+                .send();
+        if (count.hasError()) {
+            throw new IOException("Failed to fetch nonce for " + address + ": " + count.getError().getMessage());
+        }
+        return count.getTransactionCount().longValueExact();
+    }
+
+    private static String key(String address) {
+        return address.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The next fresh nonce of an account and the released ones below it.
+     */
+    private static final class Account {
+        private final AtomicLong next;
+        private final NavigableSet<Long> released = new ConcurrentSkipListSet<>();
+
+        private Account(long next) {
+            this.next = new AtomicLong(next);
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.wetech.demo.web3j.tx;
+
+import lombok.extern.slf4j.Slf4j;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.TransactionDecoder;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthCall;
+import org.web3j.protocol.core.methods.response.EthGetCode;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.protocol.exceptions.TransactionException;
+import org.web3j.tx.ChainIdLong;
+import org.web3j.tx.TransactionManager;
+import org.web3j.tx.exceptions.ContractCallException;
+import org.web3j.tx.gas.ContractEIP1559GasProvider;
+import org.web3j.tx.gas.ContractGasProvider;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * A {@link TransactionManager} that signs locally on the {@link TransactionSigner} pool with
+ * nonces from a {@link NonceManager} and broadcasts without waiting for earlier transactions
+ * to be mined, so many writes from the same account can land in a single block. Transactions
+ * it broadcasts are handed to the {@link TransactionReplacer} in case they get stuck and to
+ * the {@link TransactionMetrics}. Every signed transaction is written to the
+ * {@link TransactionOutbox} before it is broadcast.
+ */
+@Slf4j
+public class PipelinedTransactionManager extends TransactionManager {
+
+    private static final int MAX_SEND_ATTEMPTS = 3;
+
+    private final Web3j web3j;
+    private final TransactionSigner signer;
+    private final NonceManager nonceManager;
+    private final ReceiptTracker receiptTracker;
+    private final TransactionReplacer replacer;
+    private final TransactionMetrics metrics;
+    private final TransactionOutbox outbox;
+
+    public PipelinedTransactionManager(Web3j web3j, TransactionSigner signer, NonceManager nonceManager,
+                                       ReceiptTracker receiptTracker, TransactionReplacer replacer,
+                                       TransactionMetrics metrics, TransactionOutbox outbox) {
+        super(new TrackedReceiptProcessor(web3j, receiptTracker), signer.getAddress());
+        this.web3j = web3j;
+        this.signer = signer;
+        this.nonceManager = nonceManager;
+        this.receiptTracker = receiptTracker;
+        this.replacer = replacer;
+        this.metrics = metrics;
+        this.outbox = outbox;
+    }
+
+    /**
+     * Sign and broadcast a contract call, then wait for its receipt on the shared receipt tracker
+     * @param to the contract address
+     * @param data the encoded function call
+     * @param value the wei value to send
+     * @param gasProvider the gas provider pricing the transaction
+     * @return the receipt of the mined transaction
+     */
+    public CompletableFuture<TransactionReceipt> submit(String to, String data, BigInteger value,
+                                                        ContractGasProvider gasProvider) {
+        return broadcast(to, data, value, gasProvider)
+                .thenCompose(receiptTracker::track)
+                .thenApply(PipelinedTransactionManager::requireSuccess);
+    }
+
+    /**
+     * Sign and broadcast a contract call without waiting for it to be mined
+     * @param to the contract address
+     * @param data the encoded function call
+     * @param value the wei value to send
+     * @param gasProvider the gas provider pricing the transaction
+     * @return the transaction hash
+     */
+    public CompletableFuture<String> broadcast(String to, String data, BigInteger value,
+                                               ContractGasProvider gasProvider) {
+        return send(unsigned(to, data, value, gasProvider), MAX_SEND_ATTEMPTS, System.nanoTime()).thenCompose(response ->
+                response.hasError()
+                        ? CompletableFuture.failedFuture(new TransactionException(
+                                "Error processing transaction request: " + response.getError().getMessage()))
+                        : CompletableFuture.completedFuture(response.getTransactionHash()));
+    }
+
+    /**
+     * Build an unsigned contract call with a nonce the caller has reserved, to be signed
+     * with the {@link TransactionSigner} and sent with {@link #sendSigned}
+     * @param to the contract address
+     * @param data the encoded function call
+     * @param value the wei value to send
+     * @param gasProvider the gas provider pricing the transaction
+     * @param nonce the nonce, e.g. from {@link NonceManager#reserve}
+     * @return the unsigned transaction
+     */
+    public RawTransaction createTransaction(String to, String data, BigInteger value,
+                                            ContractGasProvider gasProvider, BigInteger nonce) {
+        return unsigned(to, data, value, gasProvider).apply(nonce);
+    }
+
+    /**
+     * Broadcast a transaction that was signed earlier. Sending the same payload again is
+     * harmless: a node that already has it answers "already known", and a mined nonce
+     * cannot be reused.
+     * @param signedTransaction the signed transaction as hex
+     * @return the transaction hash
+     */
+    public CompletableFuture<String> sendSigned(String signedTransaction) {
+        long submittedAt = System.nanoTime();
+        return web3j.ethSendRawTransaction(signedTransaction).sendAsync().thenCompose(response -> {
+            if (!response.hasError() || isAlreadyKnown(response.getError().getMessage())) {
+                metrics.phase(TransactionPhase.SUBMISSION, submittedAt);
+            }
+            if (!response.hasError()) {
+                metrics.broadcast(TransactionDecoder.decode(signedTransaction), response.getTransactionHash(),
+                        submittedAt);
+                return CompletableFuture.completedFuture(response.getTransactionHash());
+            }
+            if (isAlreadyKnown(response.getError().getMessage())) {
+                metrics.broadcast(TransactionDecoder.decode(signedTransaction), Hash.sha3(signedTransaction),
+                        submittedAt);
+                return CompletableFuture.completedFuture(Hash.sha3(signedTransaction));
+            }
+            return CompletableFuture.failedFuture(new TransactionException(
+                    "Error processing transaction request: " + response.getError().getMessage()));
+        });
+    }
+
+    @Override
+    public EthSendTransaction sendTransaction(BigInteger gasPrice, BigInteger gasLimit, String to, String data,
+                                              BigInteger value, boolean constructor) throws IOException {
+        return join(send(nonce -> RawTransaction.createTransaction(nonce, gasPrice, gasLimit, to, value, data),
+                MAX_SEND_ATTEMPTS, System.nanoTime()));
+    }
+
+    @Override
+    public EthSendTransaction sendEIP1559Transaction(long chainId, BigInteger maxPriorityFeePerGas,
+                                                     BigInteger maxFeePerGas, BigInteger gasLimit, String to,
+                                                     String data, BigInteger value, boolean constructor)
+            throws IOException {
+        if (chainId <= ChainIdLong.NONE) {
+            // the gas provider has no EIP-1559 pricing for this node
+            return sendTransaction(maxFeePerGas, gasLimit, to, data, value, constructor);
+        }
+        return join(send(nonce -> RawTransaction.createTransaction(chainId, nonce, gasLimit, to, value, data,
+                maxPriorityFeePerGas, maxFeePerGas), MAX_SEND_ATTEMPTS, System.nanoTime()));
+    }
+
+    @Override
+    public String sendCall(String to, String data, DefaultBlockParameter defaultBlockParameter) throws IOException {
+        EthCall ethCall = web3j.ethCall(
+                        Transaction.createEthCallTransaction(getFromAddress(), to, data), defaultBlockParameter)
+                .send();
+        if (ethCall.isReverted()) {
+            throw new ContractCallException(String.format(REVERT_ERR_STR, ethCall.getRevertReason()));
+        }
+        return ethCall.getValue();
+    }
+
+    @Override
+    public EthGetCode getCode(String contractAddress, DefaultBlockParameter defaultBlockParameter)
+            throws IOException {
+        return web3j.ethGetCode(contractAddress, defaultBlockParameter).send();
+    }
+
+    private Function<BigInteger, RawTransaction> unsigned(String to, String data, BigInteger value,
+                                                          ContractGasProvider gasProvider) {
+        BigInteger gasLimit = gasProvider.getGasLimit(
+                Transaction.createFunctionCallTransaction(getFromAddress(), null, null, null, to, value, data));
+        if (gasProvider instanceof ContractEIP1559GasProvider eip1559 && eip1559.getChainId() > ChainIdLong.NONE) {
+            return nonce -> RawTransaction.createTransaction(eip1559.getChainId(), nonce, gasLimit, to, value,
+                    data, eip1559.getMaxPriorityFeePerGas(), eip1559.getMaxFeePerGas());
+        }
+        BigInteger gasPrice = gasProvider.getGasPrice();
+        return nonce -> RawTransaction.createTransaction(nonce, gasPrice, gasLimit, to, value, data);
+    }
+
+    private CompletableFuture<EthSendTransaction> send(Function<BigInteger, RawTransaction> unsigned,
+                                                       int attemptsLeft, long submittedAt) {
+        RawTransaction rawTransaction;
+        try {
+            rawTransaction = unsigned.apply(nonceManager.next(getFromAddress()));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        long nonce = rawTransaction.getNonce().longValueExact();
+        long signingAt = System.nanoTime();
+        CompletableFuture<String> persisted = signer.signAsync(rawTransaction).thenCompose(signed -> {
+            long writingAt = metrics.phase(TransactionPhase.SIGNING, signingAt);
+            return outbox.write(signed, nonce).thenApply(written -> {
+                metrics.phase(TransactionPhase.OUTBOX, writingAt);
+                return signed;
+            });
+        });
+        return persisted.whenComplete((signed, error) -> {
+            if (error != null) {
+                // nothing was sent with this nonce
+                nonceManager.release(getFromAddress(), nonce);
+            }
+        }).thenCompose(signed -> sendRaw(signed, unsigned, attemptsLeft, rawTransaction, submittedAt,
+                System.nanoTime()));
+    }
+
+    private CompletableFuture<EthSendTransaction> sendRaw(String signed, Function<BigInteger, RawTransaction> unsigned,
+                                                          int attemptsLeft, RawTransaction rawTransaction,
+                                                          long submittedAt, long sendingAt) {
+        return web3j.ethSendRawTransaction(signed).sendAsync()
+                .exceptionallyCompose(error -> afterSendFailure(signed, rawTransaction, error, MAX_SEND_ATTEMPTS))
+                .thenCompose(response -> {
+                    if (!response.hasError()) {
+                        metrics.phase(TransactionPhase.SUBMISSION, sendingAt);
+                        accepted(rawTransaction, response.getTransactionHash(), submittedAt);
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    String message = response.getError().getMessage();
+                    if (isAlreadyKnown(message)) {
+                        // the exact same signed payload is already in the pool
+                        response.setError(null);
+                        response.setResult(Hash.sha3(signed));
+                        metrics.phase(TransactionPhase.SUBMISSION, sendingAt);
+                        accepted(rawTransaction, response.getTransactionHash(), submittedAt);
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    outbox.rejected(Hash.sha3(signed));
+                    if (!isNonceConflict(message)) {
+                        // the node did not take the nonce, so the next transaction fills it
+                        nonceManager.release(getFromAddress(), rawTransaction.getNonce().longValueExact());
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    // another transaction holds the nonce: catch up with the node before retrying
+                    return nonceManager.resync(getFromAddress()).handle((synced, error) -> {
+                        if (error != null) {
+                            log.warn("Failed to resync nonce for {}: {}", getFromAddress(), error.getMessage());
+                        }
+                        return null;
+                    }).thenCompose(synced -> {
+                        if (attemptsLeft > 1) {
+                            log.debug("Nonce {} rejected ({}), retrying", rawTransaction.getNonce(), message);
+                            return send(unsigned, attemptsLeft - 1, submittedAt);
+                        }
+                        return CompletableFuture.completedFuture(response);
+                    });
+                });
+    }
+
+    /**
+     * Find out whether a transaction whose send failed in transport reached the node. The same
+     * payload is sent again, which a node that already has it answers with "already known";
+     * once the attempts run out, the node is asked for the transaction by hash. If it does not
+     * have it, the nonce is released so the gap gets filled; if the node cannot be asked, the
+     * transaction is kept as if it had been sent.
+     */
+    private CompletableFuture<EthSendTransaction> afterSendFailure(String signed, RawTransaction rawTransaction,
+                                                                   Throwable error, int attemptsLeft) {
+        if (attemptsLeft > 1) {
+            log.debug("Sending transaction at nonce {} failed ({}), sending it again", rawTransaction.getNonce(),
+                    error.getMessage());
+            return web3j.ethSendRawTransaction(signed).sendAsync()
+                    .exceptionallyCompose(retryError -> afterSendFailure(signed, rawTransaction, retryError,
+                            attemptsLeft - 1));
+        }
+        String hash = Hash.sha3(signed);
+        return web3j.ethGetTransactionByHash(hash).sendAsync().handle((lookup, lookupError) -> {
+            if (lookupError != null || lookup.hasError()) {
+                // the node cannot say: the nonce stays taken and the outbox entry open, and the
+                // transaction is watched so it is mined, replaced, or sent again on the next start
+                log.warn("Could not find out whether transaction {} at nonce {} reached the node: {}", hash,
+                        rawTransaction.getNonce(), lookupError != null ? lookupError.getMessage()
+                                : lookup.getError().getMessage());
+                replacer.watch(rawTransaction, hash);
+                outbox.sent(hash);
+                throw completion(error);
+            }
+            if (lookup.getTransaction().isEmpty()) {
+                outbox.rejected(hash);
+                nonceManager.release(getFromAddress(), rawTransaction.getNonce().longValueExact());
+                throw completion(error);
+            }
+            EthSendTransaction response = new EthSendTransaction();
+            response.setResult(hash);
+            return response;
+        });
+    }
+
+    private void accepted(RawTransaction rawTransaction, String transactionHash, long submittedAt) {
+        replacer.watch(rawTransaction, transactionHash);
+        metrics.broadcast(rawTransaction, transactionHash, submittedAt);
+        outbox.sent(transactionHash);
+    }
+
+    private static TransactionReceipt requireSuccess(TransactionReceipt receipt) {
+        if (!receipt.isStatusOK()) {
+            throw new CompletionException(new TransactionException(String.format(
+                    "Transaction %s has failed with status: %s. Gas used: %s. Revert reason: '%s'.",
+                    receipt.getTransactionHash(), receipt.getStatus(), receipt.getGasUsedRaw() != null
+                            ? receipt.getGasUsed().toString() : "unknown",
+                    receipt.getRevertReason()), receipt));
+        }
+        return receipt;
+    }
+
+    static boolean isNonceConflict(String message) {
+        String lower = message == null ? "" : message.toLowerCase(Locale.ROOT);
+        return lower.contains("nonce too low")
+                || lower.contains("replacement transaction underpriced")
+                || lower.contains("nonce has already been used")
+                || lower.contains("invalid nonce");
+    }
+
+    static boolean isAlreadyKnown(String message) {
+        String lower = message == null ? "" : message.toLowerCase(Locale.ROOT);
+        return lower.contains("already known") || lower.contains("known transaction");
+    }
+
+    private static CompletionException completion(Throwable error) {
+        return error instanceof CompletionException completion ? completion : new CompletionException(error);
+    }
+
+    private static EthSendTransaction join(CompletableFuture<EthSendTransaction> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.wetech.demo.web3j.tx;
+
+import com.wetech.demo.web3j.chain.BlockListener;
+import com.wetech.demo.web3j.chain.ChainHeadMonitor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthGetBlockReceipts;
+import org.web3j.protocol.core.methods.response.EthGetTransactionReceipt;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.protocol.exceptions.ClientConnectionException;
+import org.web3j.protocol.exceptions.TransactionException;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Resolves transaction receipts for every pending transaction from the shared
+ * {@link ChainHeadMonitor}. The receipts of all new blocks are fetched in one JSON-RPC
+ * batch, so RPC traffic grows with the block rate rather than with the number of
+ * transactions waiting to be mined.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReceiptTracker implements BlockListener {
+
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final int MAX_CATCH_UP_BLOCKS = 32;
+    private static final int METHOD_NOT_FOUND = -32601;
+
+    private final Web3j web3j;
+
+    @Value("${web3j.receipts.timeout:600000}")
+    private long timeout;
+
+    private final ConcurrentMap<String, Pending> pending = new ConcurrentHashMap<>();
+    private final Queue<String> fresh = new ConcurrentLinkedQueue<>();
+    private boolean blockReceiptsSupported = true;
+    private volatile long blockSeenAt;
+    private long unscannedFrom = -1;
+
+    /**
+     * Wait for the receipt of a transaction
+     * @param transactionHash the hash of a broadcast transaction
+     * @return a future completed once the transaction is mined
+     */
+    public CompletableFuture<TransactionReceipt> track(String transactionHash) {
+        return pending.computeIfAbsent(key(transactionHash), hash -> {
+            fresh.add(hash);
+            return new Pending(hash, System.currentTimeMillis());
+        }).future;
+    }
+
+    /**
+     * Complete the receipt future of a pending transaction when either it or a replacement
+     * with the same nonce is mined
+     * @param transactionHash the hash of a tracked transaction
+     * @param replacementHash the hash of the transaction replacing it
+     */
+    public void alias(String transactionHash, String replacementHash) {
+        Pending entry = pending.get(key(transactionHash));
+        String replacement = key(replacementHash);
+        if (entry != null && pending.putIfAbsent(replacement, entry) == null) {
+            entry.hashes.add(replacement);
+            fresh.add(replacement);
+        }
+    }
+
+    /**
+     * Get the number of transactions still waiting for a receipt
+     * @return the pending transaction count
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Get when the blocks being handled were first seen. Receipts complete while their block is
+     * handled, so this tells receipt callbacks how long resolving the receipt took.
+     * @return the {@link System#nanoTime()} at which the latest blocks were handed to the tracker
+     */
+    public long getBlockSeenAt() {
+        return blockSeenAt;
+    }
+
+    @Override
+    public void onBlocks(long fromBlock, long toBlock) {
+        blockSeenAt = System.nanoTime();
+        if (pending.isEmpty()) {
+            unscannedFrom = -1;
+            return;
+        }
+        long from = unscannedFrom >= 0 ? Math.min(unscannedFrom, fromBlock) : fromBlock;
+        // hashes registered since the last block may already be in a block we scanned
+        List<String> lookups = drainFresh();
+        try {
+            if (toBlock - from >= MAX_CATCH_UP_BLOCKS || !scanBlocks(from, toBlock)) {
+                lookups = new ArrayList<>(pending.keySet());
+            }
+            lookUp(lookups);
+            unscannedFrom = -1;
+        } catch (IOException | ClientConnectionException e) {
+            // scan the blocks and look the hashes up again with the next block
+            log.warn("Failed to resolve receipts for blocks {}-{}: {}", from, toBlock, e.getMessage());
+            unscannedFrom = from;
+            fresh.addAll(lookups);
+        }
+        expire();
+    }
+
+    private boolean scanBlocks(long from, long to) throws IOException {
+        if (!blockReceiptsSupported) {
+            return false;
+        }
+        BatchRequest batch = web3j.newBatch();
+        for (long number = from; number <= to; number++) {
+            batch.add(web3j.ethGetBlockReceipts(DefaultBlockParameter.valueOf(BigInteger.valueOf(number))));
+        }
+        for (Response<?> response : batch.send().getResponses()) {
+            if (response.hasError()) {
+                if (response.getError().getCode() == METHOD_NOT_FOUND) {
+                    log.info("Node does not support eth_getBlockReceipts, falling back to batched receipt lookups");
+                    blockReceiptsSupported = false;
+                }
+                return false;
+            }
+            ((EthGetBlockReceipts) response).getBlockReceipts()
+                    .ifPresent(receipts -> receipts.forEach(this::complete));
+        }
+        return true;
+    }
+
+    private void lookUp(List<String> transactionHashes) throws IOException {
+        List<String> stillPending = transactionHashes.stream().filter(pending::containsKey).toList();
+        for (int start = 0; start < stillPending.size(); start += MAX_BATCH_SIZE) {
+            List<String> hashes = stillPending.subList(start, Math.min(start + MAX_BATCH_SIZE, stillPending.size()));
+            BatchRequest batch = web3j.newBatch();
+            hashes.forEach(hash -> batch.add(web3j.ethGetTransactionReceipt(hash)));
+            List<? extends Response<?>> responses = batch.send().getResponses();
+            for (int i = 0; i < responses.size(); i++) {
+                if (responses.get(i).hasError()) {
+                    // its block may already be scanned, so look it up again with the next block
+                    fresh.add(hashes.get(i));
+                } else {
+                    ((EthGetTransactionReceipt) responses.get(i)).getTransactionReceipt().ifPresent(this::complete);
+                }
+            }
+        }
+    }
+
+    private void complete(TransactionReceipt receipt) {
+        Pending entry = pending.remove(key(receipt.getTransactionHash()));
+        if (entry != null) {
+            entry.hashes.forEach(hash -> pending.remove(hash, entry));
+            entry.future.complete(receipt);
+        }
+    }
+
+    private void expire() {
+        long deadline = System.currentTimeMillis() - timeout;
+        Iterator<Map.Entry<String, Pending>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Pending> entry = iterator.next();
+            if (entry.getValue().createdAt < deadline) {
+                iterator.remove();
+                entry.getValue().future.completeExceptionally(new TransactionException(
+                        "Transaction receipt was not generated after " + timeout / 1000
+                                + " seconds for transaction: " + entry.getKey(), entry.getKey()));
+            }
+        }
+    }
+
+    private List<String> drainFresh() {
+        List<String> drained = new ArrayList<>();
+        String hash;
+        while ((hash = fresh.poll()) != null) {
+            drained.add(hash);
+        }
+        return drained;
+    }
+
+    private static String key(String transactionHash) {
+        return transactionHash.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Pending {
+        private final List<String> hashes = new CopyOnWriteArrayList<>();
+        private final long createdAt;
+        private final CompletableFuture<TransactionReceipt> future = new CompletableFuture<>();
+
+        private Pending(String hash, long createdAt) {
+            this.hashes.add(hash);
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.wetech.demo.web3j.tx;
+
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.protocol.exceptions.TransactionException;
+import org.web3j.tx.response.TransactionReceiptProcessor;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Adapts the {@link ReceiptTracker} to web3j's blocking {@link TransactionReceiptProcessor}
+ * so generated contract wrappers wait on the shared tracker instead of polling per transaction.
+ */
+public class TrackedReceiptProcessor extends TransactionReceiptProcessor {
+
+    private final ReceiptTracker receiptTracker;
+
+    public TrackedReceiptProcessor(Web3j web3j, ReceiptTracker receiptTracker) {
+        super(web3j);
+        this.receiptTracker = receiptTracker;
+    }
+
+    @Override
+    public TransactionReceipt waitForTransactionReceipt(String transactionHash)
+            throws IOException, TransactionException {
+        try {
+            return receiptTracker.track(transactionHash).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for receipt of " + transactionHash, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TransactionException transactionException) {
+                throw transactionException;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+}
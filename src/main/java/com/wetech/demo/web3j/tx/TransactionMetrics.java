@@ -0,0 +1,114 @@
+package com.wetech.demo.web3j.tx;
+
+import com.wetech.demo.web3j.abi.ContractSignatures;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.web3j.crypto.RawTransaction;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records what happens to transactions after they are broadcast: the time from submission to
+ * receipt as {@code web3j.tx.confirmation} (tagged with the receipt status, or {@code timeout})
+ * and the gas used as {@code web3j.tx.gas.used}, both tagged by contract and function selector,
+ * plus the transactions still waiting for a receipt as {@code web3j.tx.pending}. The time spent
+ * in each {@link TransactionPhase} is recorded as {@code web3j.tx.phase} and passed on to any
+ * {@link TransactionPhaseListener} beans.
+ */
+@Component
+public class TransactionMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final ReceiptTracker receiptTracker;
+    private final ObjectProvider<TransactionPhaseListener> listenerProvider;
+    private final Map<TransactionPhase, Timer> phaseTimers = new EnumMap<>(TransactionPhase.class);
+    private volatile List<TransactionPhaseListener> listeners;
+
+    public TransactionMetrics(MeterRegistry meterRegistry, ReceiptTracker receiptTracker,
+                              ObjectProvider<TransactionPhaseListener> listenerProvider) {
+        this.meterRegistry = meterRegistry;
+        this.receiptTracker = receiptTracker;
+        this.listenerProvider = listenerProvider;
+        Gauge.builder("web3j.tx.pending", receiptTracker, ReceiptTracker::getPendingCount)
+                .description("Broadcast transactions waiting for a receipt").register(meterRegistry);
+        for (TransactionPhase phase : TransactionPhase.values()) {
+            phaseTimers.put(phase, Timer.builder("web3j.tx.phase")
+                    .description("Time transactions spend in each phase from signing to receipt")
+                    .tag("phase", phase.tag())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Record the end of a transaction phase
+     * @param phase the phase
+     * @param startedAt when it started, from {@link System#nanoTime()}
+     * @return the current {@link System#nanoTime()}, where the next phase starts
+     */
+    public long phase(TransactionPhase phase, long startedAt) {
+        long now = System.nanoTime();
+        record(phase, Math.max(0, now - startedAt));
+        return now;
+    }
+
+    private void record(TransactionPhase phase, long nanos) {
+        phaseTimers.get(phase).record(nanos, TimeUnit.NANOSECONDS);
+        List<TransactionPhaseListener> current = listeners;
+        if (current == null) {
+            // resolved on first use, since listeners may depend on beans that depend on this one
+            current = listenerProvider.orderedStream().toList();
+            listeners = current;
+        }
+        for (TransactionPhaseListener listener : current) {
+            listener.onPhase(phase, nanos);
+        }
+    }
+
+    /**
+     * Follow a broadcast transaction until its receipt arrives
+     * @param rawTransaction the transaction that was broadcast
+     * @param transactionHash its hash
+     * @param submittedAt when it was submitted, from {@link System#nanoTime()}
+     */
+    public void broadcast(RawTransaction rawTransaction, String transactionHash, long submittedAt) {
+        boolean deployment = rawTransaction.getTo() == null || rawTransaction.getTo().length() <= 2;
+        String contract = deployment ? "none" : rawTransaction.getTo().toLowerCase(Locale.ROOT);
+        String selector = deployment ? "constructor" : ContractSignatures.selectorOf(rawTransaction.getData());
+        long acceptedAt = System.nanoTime();
+        receiptTracker.track(transactionHash).whenComplete((receipt, error) -> {
+            if (error == null) {
+                // receipts complete on the tracker thread while it handles the block they were found in
+                long blockSeenAt = Math.max(acceptedAt, receiptTracker.getBlockSeenAt());
+                record(TransactionPhase.INCLUSION, blockSeenAt - acceptedAt);
+                phase(TransactionPhase.RECEIPT, blockSeenAt);
+            }
+            String status = error != null ? "timeout" : receipt.isStatusOK() ? "success" : "reverted";
+            Timer.builder("web3j.tx.confirmation")
+                    .description("Time from submitting a transaction to its receipt")
+                    .tag("contract", contract)
+                    .tag("selector", selector)
+                    .tag("status", status)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+            if (receipt != null && receipt.getGasUsedRaw() != null) {
+                DistributionSummary.builder("web3j.tx.gas.used")
+                        .description("Gas used by mined transactions")
+                        .baseUnit("gas")
+                        .tag("contract", contract)
+                        .tag("selector", selector)
+                        .register(meterRegistry)
+                        .record(receipt.getGasUsed().doubleValue());
+            }
+        });
+    }
+}
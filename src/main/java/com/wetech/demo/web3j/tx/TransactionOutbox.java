@@ -0,0 +1,413 @@
+package com.wetech.demo.web3j.tx;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wetech.demo.web3j.chain.BlockListener;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.TransactionDecoder;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthGetTransactionCount;
+import org.web3j.protocol.core.methods.response.EthGetTransactionReceipt;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An append-only JSON-lines file of every signed transaction, written before it is broadcast
+ * and closed once the transaction is mined or rejected. Writes are group-committed: one writer
+ * thread appends everything queued since its last pass with a single {@code force}, so under
+ * load the cost of durability is shared by all transactions signed meanwhile.
+ *
+ * <p>On startup the transactions left open are reconciled with the node: those mined, or whose
+ * nonce has since been used, are closed, and the rest are broadcast again (the same payload, so
+ * a transaction the node already has is never duplicated) and tracked as usual. The nonce
+ * counter is moved past them first. If the node cannot be reached, reconciliation is retried on
+ * every new head. The file is rewritten with only the open transactions once it grows past
+ * {@code web3j.outbox.compact-bytes}. Bulk jobs keep their own journal and do not use it.
+ */
+@Slf4j
+@Component
+public class TransactionOutbox implements BlockListener {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int MAX_GROUP_SIZE = 4096;
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private final Web3j web3j;
+    private final TransactionSigner signer;
+    private final NonceManager nonceManager;
+    private final ReceiptTracker receiptTracker;
+    private final TransactionReplacer replacer;
+    private final String file;
+    private final long compactBytes;
+
+    private final Queue<Write> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private ExecutorService writer;
+    private volatile boolean recovered;
+
+    // confined to the writer thread once it is started
+    private Path path;
+    private FileChannel channel;
+    private final Map<String, Entry> open = new LinkedHashMap<>();
+    private long openBytes;
+
+    public TransactionOutbox(Web3j web3j, TransactionSigner signer, NonceManager nonceManager,
+                             ReceiptTracker receiptTracker, TransactionReplacer replacer,
+                             @Value("${web3j.outbox.file:data/outbox.jsonl}") String file,
+                             @Value("${web3j.outbox.compact-bytes:67108864}") long compactBytes) {
+        this.web3j = web3j;
+        this.signer = signer;
+        this.nonceManager = nonceManager;
+        this.receiptTracker = receiptTracker;
+        this.replacer = replacer;
+        this.file = file;
+        this.compactBytes = compactBytes;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (file.isBlank()) {
+            recovered = true;
+            return;
+        }
+        path = Path.of(file);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        if (Files.exists(path)) {
+            load();
+            // drop the closed transactions and any line cut short by a crash
+            rewrite();
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tx-outbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+        recover();
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        if (writer != null) {
+            writer.shutdown();
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+            channel.close();
+        }
+    }
+
+    /**
+     * Persist a signed transaction before it is broadcast
+     * @param signedTransaction the signed transaction as hex
+     * @param nonce its nonce
+     * @return a future completed once the transaction is on disk
+     */
+    public CompletableFuture<Void> write(String signedTransaction, long nonce) {
+        if (writer == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String hash = Hash.sha3(signedTransaction).toLowerCase(Locale.ROOT);
+        String line = line(MAPPER.createObjectNode().put("t", "signed").put("hash", hash).put("nonce", nonce)
+                .put("raw", signedTransaction));
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        enqueue(new Write(line, hash, new Entry(nonce, signedTransaction, line), durable));
+        return durable;
+    }
+
+    /**
+     * Close a persisted transaction once it is mined. A transaction that is never mined stays
+     * open and is reconciled on the next start.
+     * @param transactionHash the hash of a broadcast transaction, or of one that may have reached the node
+     */
+    public void sent(String transactionHash) {
+        if (writer != null) {
+            receiptTracker.track(transactionHash).thenRun(() -> close(transactionHash));
+        }
+    }
+
+    /**
+     * Close a persisted transaction the node rejected
+     * @param transactionHash the transaction hash
+     */
+    public void rejected(String transactionHash) {
+        if (writer != null) {
+            close(transactionHash);
+        }
+    }
+
+    @Override
+    public void onBlocks(long fromBlock, long toBlock) {
+        if (!recovered) {
+            recover();
+        }
+    }
+
+    private void close(String transactionHash) {
+        String hash = transactionHash.toLowerCase(Locale.ROOT);
+        enqueue(new Write(line(MAPPER.createObjectNode().put("t", "done").put("hash", hash)), hash, null, null));
+    }
+
+    private void enqueue(Write write) {
+        queue.add(write);
+        if (flushing.compareAndSet(false, true)) {
+            try {
+                writer.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                flushing.set(false);
+                fail(new IOException("Transaction outbox is closed"));
+            }
+        }
+    }
+
+    private void flush() {
+        List<Write> group = new ArrayList<>();
+        Write write;
+        while (group.size() < MAX_GROUP_SIZE && (write = queue.poll()) != null) {
+            group.add(write);
+        }
+        StringBuilder lines = new StringBuilder();
+        boolean force = false;
+        for (Write item : group) {
+            lines.append(item.line).append('\n');
+            if (item.entry != null) {
+                Entry previous = open.put(item.hash, item.entry);
+                openBytes += item.line.length() - (previous == null ? -1 : previous.line.length());
+                force = true;
+            } else {
+                Entry closed = open.remove(item.hash);
+                if (closed != null) {
+                    openBytes -= closed.line.length() + 1;
+                }
+            }
+        }
+        try {
+            append(channel, lines);
+            if (force) {
+                channel.force(false);
+            }
+            group.forEach(item -> {
+                if (item.durable != null) {
+                    item.durable.complete(null);
+                }
+            });
+            if (channel.size() > compactBytes && openBytes < compactBytes / 2) {
+                compact();
+            }
+        } catch (IOException e) {
+            log.error("Failed to write the transaction outbox {}: {}", path, e.getMessage());
+            group.forEach(item -> {
+                if (item.durable != null) {
+                    item.durable.completeExceptionally(e);
+                }
+            });
+        }
+        flushing.set(false);
+        if (!queue.isEmpty() && flushing.compareAndSet(false, true)) {
+            writer.execute(this::flush);
+        }
+    }
+
+    private void compact() throws IOException {
+        channel.close();
+        rewrite();
+        channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        log.debug("Compacted the transaction outbox to {} open transactions", open.size());
+    }
+
+    private void rewrite() throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            StringBuilder lines = new StringBuilder();
+            open.values().forEach(entry -> lines.append(entry.line).append('\n'));
+            append(out, lines);
+            out.force(false);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void load() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonNode node;
+                try {
+                    node = MAPPER.readTree(line);
+                } catch (JsonProcessingException e) {
+                    // a crash may have cut the last line short; its transaction was never broadcast
+                    log.warn("Skipping unreadable line in transaction outbox {}", path);
+                    continue;
+                }
+                String hash = node.path("hash").asText();
+                switch (node.path("t").asText()) {
+                    case "signed" -> {
+                        Entry previous = open.put(hash, new Entry(node.get("nonce").asLong(), node.get("raw").asText(),
+                                line));
+                        openBytes += line.length() - (previous == null ? -1 : previous.line.length());
+                    }
+                    case "done" -> {
+                        Entry closed = open.remove(hash);
+                        if (closed != null) {
+                            openBytes -= closed.line.length() + 1;
+                        }
+                    }
+                    default -> log.warn("Skipping unknown record in transaction outbox {}: {}", path, line);
+                }
+            }
+        }
+    }
+
+    private synchronized void recover() {
+        if (recovered) {
+            return;
+        }
+        Map<String, Entry> pending;
+        try {
+            pending = CompletableFuture.supplyAsync(() -> new LinkedHashMap<>(open), writer).join();
+        } catch (RuntimeException e) {
+            return;
+        }
+        try {
+            if (!pending.isEmpty()) {
+                reconcile(pending);
+            }
+            recovered = true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to reconcile {} transactions in the outbox, retrying on the next block: {}",
+                    pending.size(), e.getMessage());
+        }
+    }
+
+    private void reconcile(Map<String, Entry> pending) throws IOException {
+        String address = signer.getAddress();
+        Set<String> mined = new HashSet<>();
+        List<String> hashes = new ArrayList<>(pending.keySet());
+        for (int start = 0; start < hashes.size(); start += MAX_BATCH_SIZE) {
+            BatchRequest batch = web3j.newBatch();
+            for (String hash : hashes.subList(start, Math.min(start + MAX_BATCH_SIZE, hashes.size()))) {
+                batch.add(web3j.ethGetTransactionReceipt(hash));
+            }
+            for (Response<?> response : batch.send().getResponses()) {
+                if (response.hasError()) {
+                    throw new IOException(response.getError().getMessage());
+                }
+                ((EthGetTransactionReceipt) response).getTransactionReceipt()
+                        .ifPresent(receipt -> mined.add(receipt.getTransactionHash().toLowerCase(Locale.ROOT)));
+            }
+        }
+        EthGetTransactionCount count = web3j.ethGetTransactionCount(address, DefaultBlockParameterName.LATEST).send();
+        if (count.hasError()) {
+            throw new IOException(count.getError().getMessage());
+        }
+        long minedNonce = count.getTransactionCount().longValueExact();
+
+        // of several copies of a nonce (replacements), the last one written pays the most
+        TreeMap<Long, String> unmined = new TreeMap<>();
+        int settled = 0;
+        for (Map.Entry<String, Entry> entry : pending.entrySet()) {
+            long nonce = entry.getValue().nonce;
+            if (mined.contains(entry.getKey()) || nonce < minedNonce) {
+                close(entry.getKey());
+                settled++;
+                continue;
+            }
+            String replaced = unmined.put(nonce, entry.getKey());
+            if (replaced != null) {
+                close(replaced);
+                settled++;
+            }
+        }
+        if (unmined.isEmpty()) {
+            log.info("Reconciled {} transactions in the outbox, all mined", settled);
+            return;
+        }
+        nonceManager.advancePast(address, unmined.lastKey());
+        int rejected = 0;
+        for (String hash : unmined.values()) {
+            String raw = pending.get(hash).raw;
+            EthSendTransaction response = web3j.ethSendRawTransaction(raw).send();
+            if (!response.hasError() || PipelinedTransactionManager.isAlreadyKnown(response.getError().getMessage())) {
+                replacer.watch(TransactionDecoder.decode(raw), hash);
+                sent(hash);
+            } else {
+                log.warn("Outbox transaction {} at nonce {} rejected on re-send: {}", hash, pending.get(hash).nonce,
+                        response.getError().getMessage());
+                rejected(hash);
+                // the counter is already past it, so the next transaction has to fill the gap
+                nonceManager.release(address, pending.get(hash).nonce);
+                rejected++;
+            }
+        }
+        log.info("Reconciled {} transactions in the outbox: {} mined or replaced, {} re-sent, {} rejected",
+                pending.size(), settled, unmined.size() - rejected, rejected);
+    }
+
+    private void fail(IOException error) {
+        Write write;
+        while ((write = queue.poll()) != null) {
+            if (write.durable != null) {
+                write.durable.completeExceptionally(error);
+            }
+        }
+    }
+
+    private static void append(FileChannel channel, CharSequence lines) throws IOException {
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(lines.toString());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static String line(JsonNode node) {
+        try {
+            return MAPPER.writeValueAsString(node);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Entry(long nonce, String raw, String line) {
+    }
+
+    private record Write(String line, String hash, Entry entry, CompletableFuture<Void> durable) {
+    }
+}
@@ -0,0 +1,28 @@
+package com.wetech.demo.web3j.tx;
+
+import java.util.Locale;
+
+/**
+ * The stages a transaction goes through between a write request and its receipt.
+ */
+public enum TransactionPhase {
+
+    /** Waiting for and running a signer worker */
+    SIGNING,
+    /** Forcing the signed transaction to the {@link TransactionOutbox} */
+    OUTBOX,
+    /** The {@code eth_sendRawTransaction} round trip that the node accepted */
+    SUBMISSION,
+    /** From acceptance by the node until the application sees the block that includes it */
+    INCLUSION,
+    /** From seeing that block until the receipt is resolved */
+    RECEIPT;
+
+    /**
+     * Get the name used in metric tags and reports
+     * @return the lowercase phase name
+     */
+    public String tag() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
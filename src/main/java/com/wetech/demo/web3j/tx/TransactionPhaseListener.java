@@ -0,0 +1,15 @@
+package com.wetech.demo.web3j.tx;
+
+/**
+ * Receives the duration of every {@link TransactionPhase} from the {@link TransactionMetrics},
+ * e.g. for a load generator that keeps its own histograms.
+ */
+public interface TransactionPhaseListener {
+
+    /**
+     * Called on the thread that finished the phase, so implementations must be fast and thread-safe
+     * @param phase the phase
+     * @param nanos its duration in nanoseconds
+     */
+    void onPhase(TransactionPhase phase, long nanos);
+}
@@ -0,0 +1,165 @@
+package com.wetech.demo.web3j.tx;
+
+import com.wetech.demo.web3j.chain.BlockListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.transaction.type.ITransaction;
+import org.web3j.crypto.transaction.type.LegacyTransaction;
+import org.web3j.crypto.transaction.type.Transaction1559;
+import org.web3j.protocol.Web3j;
+import org.web3j.tx.gas.ContractEIP1559GasProvider;
+import org.web3j.tx.gas.ContractGasProvider;
+
+import java.math.BigInteger;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Replaces transactions that stay unmined for {@code web3j.gas.bump-after-blocks} blocks with
+ * a copy at the same nonce and fees raised by {@code web3j.gas.bump-percent} (at least the
+ * current market price), up to {@code web3j.gas.max-price}. The {@link ReceiptTracker} keeps
+ * waiting on every hash of the transaction, so callers get the receipt of whichever copy is
+ * mined. Set {@code web3j.gas.bump-after-blocks} to 0 to disable replacement.
+ */
+@Slf4j
+@Component
+public class TransactionReplacer implements BlockListener {
+
+    private final Web3j web3j;
+    private final TransactionSigner signer;
+    private final ReceiptTracker receiptTracker;
+    private final ContractGasProvider gasProvider;
+    private final ObjectProvider<TransactionOutbox> outbox;
+    private final long bumpAfterBlocks;
+    private final int bumpPercent;
+    private final BigInteger maxPrice;
+
+    private final ConcurrentMap<String, Watched> watched = new ConcurrentHashMap<>();
+    private volatile long head = -1;
+
+    public TransactionReplacer(Web3j web3j, TransactionSigner signer, ReceiptTracker receiptTracker,
+                               ContractGasProvider gasProvider, ObjectProvider<TransactionOutbox> outbox,
+                               @Value("${web3j.gas.bump-after-blocks:5}") long bumpAfterBlocks,
+                               @Value("${web3j.gas.bump-percent:15}") int bumpPercent,
+                               @Value("${web3j.gas.max-price:500000000000}") BigInteger maxPrice) {
+        this.web3j = web3j;
+        this.signer = signer;
+        this.receiptTracker = receiptTracker;
+        this.gasProvider = gasProvider;
+        // the outbox re-watches the transactions it recovers, so it is looked up lazily
+        this.outbox = outbox;
+        this.bumpAfterBlocks = bumpAfterBlocks;
+        // nodes only accept a replacement paying at least 10% more
+        this.bumpPercent = Math.max(bumpPercent, 10);
+        this.maxPrice = maxPrice;
+    }
+
+    /**
+     * Watch a broadcast transaction until it is mined, replacing it if it gets stuck
+     * @param rawTransaction the unsigned transaction that was broadcast
+     * @param transactionHash its hash
+     */
+    public void watch(RawTransaction rawTransaction, String transactionHash) {
+        if (bumpAfterBlocks <= 0 || rawTransaction.getType().isEip4844()) {
+            return;
+        }
+        String key = transactionHash.toLowerCase(Locale.ROOT);
+        if (watched.putIfAbsent(key, new Watched(rawTransaction, head)) == null) {
+            receiptTracker.track(transactionHash).whenComplete((receipt, error) -> watched.remove(key));
+        }
+    }
+
+    @Override
+    public void onBlocks(long fromBlock, long toBlock) {
+        head = toBlock;
+        watched.forEach((hash, entry) -> {
+            if (entry.sinceBlock < 0) {
+                entry.sinceBlock = toBlock;
+            } else if (toBlock - entry.sinceBlock >= bumpAfterBlocks && entry.replacing.compareAndSet(false, true)) {
+                replace(hash, entry, toBlock);
+            }
+        });
+    }
+
+    private void replace(String hash, Watched entry, long block) {
+        RawTransaction replacement = bump(entry.rawTransaction);
+        if (replacement == null) {
+            log.warn("Transaction {} is stuck at the fee cap of {} wei", hash, maxPrice);
+            watched.remove(hash);
+            return;
+        }
+        TransactionOutbox transactionOutbox = outbox.getObject();
+        signer.signAsync(replacement)
+                .thenCompose(signed -> transactionOutbox.write(signed, replacement.getNonce().longValueExact())
+                        .thenCompose(written -> web3j.ethSendRawTransaction(signed).sendAsync())
+                        .whenComplete((response, error) -> {
+                            if (response != null && response.hasError()) {
+                                transactionOutbox.rejected(Hash.sha3(signed));
+                            }
+                        }))
+                .whenComplete((response, error) -> {
+                    if (error != null || response.hasError()) {
+                        // "nonce too low" means a copy was mined and its receipt is on the way
+                        log.debug("Replacement of {} at nonce {} not accepted: {}", hash, replacement.getNonce(),
+                                error != null ? error.getMessage() : response.getError().getMessage());
+                    } else {
+                        log.info("Replaced stuck transaction {} at nonce {} with {}", hash, replacement.getNonce(),
+                                response.getTransactionHash());
+                        receiptTracker.alias(hash, response.getTransactionHash());
+                        transactionOutbox.sent(response.getTransactionHash());
+                        entry.rawTransaction = replacement;
+                    }
+                    entry.sinceBlock = block;
+                    entry.replacing.set(false);
+                });
+    }
+
+    private RawTransaction bump(RawTransaction rawTransaction) {
+        ITransaction transaction = rawTransaction.getTransaction();
+        if (transaction instanceof Transaction1559 eip1559) {
+            BigInteger marketTip = gasProvider instanceof ContractEIP1559GasProvider provider
+                    ? provider.getMaxPriorityFeePerGas() : BigInteger.ZERO;
+            BigInteger marketFee = gasProvider instanceof ContractEIP1559GasProvider provider
+                    ? provider.getMaxFeePerGas() : gasProvider.getGasPrice();
+            BigInteger tip = bump(eip1559.getMaxPriorityFeePerGas(), marketTip);
+            BigInteger maxFee = bump(eip1559.getMaxFeePerGas(), marketFee).max(tip);
+            if (maxFee.compareTo(maxPrice) > 0) {
+                return null;
+            }
+            return RawTransaction.createTransaction(eip1559.getChainId(), eip1559.getNonce(), eip1559.getGasLimit(),
+                    eip1559.getTo(), eip1559.getValue(), eip1559.getData(), tip, maxFee);
+        }
+        if (transaction instanceof LegacyTransaction legacy) {
+            BigInteger gasPrice = bump(legacy.getGasPrice(), gasProvider.getGasPrice());
+            if (gasPrice.compareTo(maxPrice) > 0) {
+                return null;
+            }
+            return RawTransaction.createTransaction(legacy.getNonce(), gasPrice, legacy.getGasLimit(),
+                    legacy.getTo(), legacy.getValue(), legacy.getData());
+        }
+        return null;
+    }
+
+    private BigInteger bump(BigInteger fee, BigInteger market) {
+        BigInteger bumped = fee.multiply(BigInteger.valueOf(100L + bumpPercent)).add(BigInteger.valueOf(99))
+                .divide(BigInteger.valueOf(100));
+        return bumped.max(fee.add(BigInteger.ONE)).max(market);
+    }
+
+    private static final class Watched {
+        private final AtomicBoolean replacing = new AtomicBoolean();
+        private volatile RawTransaction rawTransaction;
+        private volatile long sinceBlock;
+
+        private Watched(RawTransaction rawTransaction, long sinceBlock) {
+            this.rawTransaction = rawTransaction;
+            this.sinceBlock = sinceBlock;
+        }
+    }
+}
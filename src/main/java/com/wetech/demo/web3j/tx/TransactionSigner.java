@@ -0,0 +1,222 @@
+package com.wetech.demo.web3j.tx;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.params.ECDomainParameters;
+import org.bouncycastle.crypto.signers.HMacDSAKCalculator;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
+import org.bouncycastle.util.BigIntegers;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.Sign;
+import org.web3j.crypto.TransactionEncoder;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.methods.response.EthChainId;
+import org.web3j.tx.ChainIdLong;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The signing stage in front of the broadcast path. Transactions are signed on a pool of
+ * {@code web3j.signer.threads} workers (one per core by default), singly or as batches split
+ * across all workers.
+ *
+ * <p>Signatures are byte-for-byte those of {@link TransactionEncoder#signMessage}, but
+ * computed with the secp256k1 primitives directly: the recovery id comes from the parity of
+ * the signature point instead of recovering the public key up to four times, the base-point
+ * multiplication table is built once at startup, and each worker reuses its RFC 6979 nonce
+ * generator for the key.
+ */
+@Slf4j
+@Component
+public class TransactionSigner implements DisposableBean {
+
+    private static final ECDomainParameters CURVE = new ECDomainParameters(Sign.CURVE_PARAMS.getCurve(),
+            Sign.CURVE_PARAMS.getG(), Sign.CURVE_PARAMS.getN(), Sign.CURVE_PARAMS.getH());
+    private static final BigInteger HALF_ORDER = CURVE.getN().shiftRight(1);
+    private static final FixedPointCombMultiplier MULTIPLIER = new FixedPointCombMultiplier();
+
+    private final Credentials credentials;
+    private final Web3j web3j;
+    private final BigInteger privateKey;
+    private volatile long chainId;
+    private final int threads;
+    private final ThreadPoolExecutor workers;
+    private final ThreadLocal<HMacDSAKCalculator> kCalculator =
+            ThreadLocal.withInitial(() -> new HMacDSAKCalculator(new SHA256Digest()));
+    private final Timer latency;
+
+    public TransactionSigner(Credentials credentials, Web3j web3j, MeterRegistry meterRegistry,
+                             @Value("${web3j.chain-id:-1}") long chainId,
+                             @Value("${web3j.signer.threads:0}") int threads) {
+        this.credentials = credentials;
+        this.web3j = web3j;
+        this.privateKey = credentials.getEcKeyPair().getPrivateKey();
+        this.chainId = chainId;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(this.threads, this.threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "tx-signer-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // builds the comb table cached on the base point, shared by every later signature
+        MULTIPLIER.multiply(CURVE.getG(), BigInteger.ONE);
+        this.latency = Timer.builder("web3j.signer.latency")
+                .description("Time to sign one transaction on a signer worker").register(meterRegistry);
+        Gauge.builder("web3j.signer.queue", workers, pool -> pool.getQueue().size())
+                .description("Signing tasks waiting for a worker").register(meterRegistry);
+        log.info("Signing transactions for {} on {} threads", credentials.getAddress(), this.threads);
+    }
+
+    /**
+     * Get the address of the signing account
+     * @return the {@code 0x}-prefixed address
+     */
+    public String getAddress() {
+        return credentials.getAddress();
+    }
+
+    /**
+     * Get the chain id legacy transactions are replay-protected with. Without
+     * {@code web3j.chain-id} it is fetched from the node once, on first use.
+     * @return the chain id
+     * @throws UncheckedIOException if the chain id cannot be fetched
+     */
+    public long getChainId() {
+        long id = chainId;
+        if (id > ChainIdLong.NONE) {
+            return id;
+        }
+        synchronized (this) {
+            if (chainId <= ChainIdLong.NONE) {
+                EthChainId response;
+                try {
+                    response = web3j.ethChainId().send();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to fetch chain id", e);
+                }
+                if (response.hasError()) {
+                    throw new UncheckedIOException(new IOException(
+                            "Failed to fetch chain id: " + response.getError().getMessage()));
+                }
+                chainId = response.getChainId().longValueExact();
+                log.info("Signing legacy transactions for chain id {}", chainId);
+            }
+            return chainId;
+        }
+    }
+
+    /**
+     * Sign a transaction on a worker
+     * @param rawTransaction the unsigned transaction
+     * @return the signed transaction as hex
+     */
+    public CompletableFuture<String> signAsync(RawTransaction rawTransaction) {
+        return CompletableFuture.supplyAsync(() -> sign(rawTransaction), workers);
+    }
+
+    /**
+     * Sign a batch of transactions, split into one contiguous slice per worker
+     * @param rawTransactions the unsigned transactions
+     * @return the signed transactions as hex, in the same order
+     */
+    public CompletableFuture<List<String>> signAll(List<RawTransaction> rawTransactions) {
+        String[] signed = new String[rawTransactions.size()];
+        int slice = Math.max(1, (rawTransactions.size() + threads - 1) / threads);
+        List<CompletableFuture<Void>> slices = new ArrayList<>();
+        for (int start = 0; start < rawTransactions.size(); start += slice) {
+            int from = start;
+            int to = Math.min(start + slice, rawTransactions.size());
+            slices.add(CompletableFuture.runAsync(() -> {
+                for (int i = from; i < to; i++) {
+                    signed[i] = sign(rawTransactions.get(i));
+                }
+            }, workers));
+        }
+        return CompletableFuture.allOf(slices.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> Arrays.asList(signed));
+    }
+
+    /**
+     * Sign a transaction on the calling thread. Legacy transactions are always replay-protected
+     * with the chain id (EIP-155); typed transactions carry it themselves.
+     * @param rawTransaction the unsigned transaction
+     * @return the signed transaction as hex
+     * @throws UncheckedIOException if a legacy transaction is signed before the chain id is known
+     *         and it cannot be fetched
+     */
+    public String sign(RawTransaction rawTransaction) {
+        long start = System.nanoTime();
+        byte[] signedMessage;
+        if (rawTransaction.getType().isEip4844()) {
+            signedMessage = TransactionEncoder.signMessage(rawTransaction, credentials);
+        } else if (rawTransaction.getType().isLegacy()) {
+            long id = getChainId();
+            Sign.SignatureData signature = sign(TransactionEncoder.encode(rawTransaction, id));
+            signedMessage = TransactionEncoder.encode(rawTransaction,
+                    TransactionEncoder.createEip155SignatureData(signature, id));
+        } else {
+            signedMessage = TransactionEncoder.encode(rawTransaction, sign(TransactionEncoder.encode(rawTransaction)));
+        }
+        latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return Numeric.toHexString(signedMessage);
+    }
+
+    @Override
+    public void destroy() {
+        workers.shutdownNow();
+    }
+
+    private Sign.SignatureData sign(byte[] message) {
+        byte[] hash = Hash.sha3(message);
+        BigInteger n = CURVE.getN();
+        BigInteger e = new BigInteger(1, hash);
+        HMacDSAKCalculator k = kCalculator.get();
+        k.init(n, privateKey, hash);
+        BigInteger r;
+        BigInteger s;
+        ECPoint point;
+        // the same steps as ECDSASigner, keeping the point so the recovery id is known
+        do {
+            BigInteger nonce;
+            do {
+                nonce = k.nextK();
+                point = MULTIPLIER.multiply(CURVE.getG(), nonce).normalize();
+                r = point.getAffineXCoord().toBigInteger().mod(n);
+            } while (r.signum() == 0);
+            s = BigIntegers.modOddInverse(n, nonce).multiply(e.add(privateKey.multiply(r))).mod(n);
+        } while (s.signum() == 0);
+        int recId = point.getAffineYCoord().toBigInteger().testBit(0) ? 1 : 0;
+        if (point.getAffineXCoord().toBigInteger().compareTo(n) >= 0) {
+            recId |= 2;
+        }
+        if (s.compareTo(HALF_ORDER) > 0) {
+            // canonical low-s form negates the point, flipping the parity of y
+            s = n.subtract(s);
+            recId ^= 1;
+        }
+        return new Sign.SignatureData((byte) (27 + recId), Numeric.toBytesPadded(r, 32),
+                Numeric.toBytesPadded(s, 32));
+    }
+}
@@ -0,0 +1,97 @@
+package com.wetech.demo.web3j.indexer;
+
+import org.junit.jupiter.api.Test;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AddressBalanceMapTest {
+
+    private static final BigInteger MODULUS = BigInteger.ONE.shiftLeft(256);
+    private static final BigInteger MAX = MODULUS.subtract(BigInteger.ONE);
+    private static final BigInteger LIMB = BigInteger.ONE.shiftLeft(64);
+
+    private static final List<BigInteger> EDGES = List.of(
+            BigInteger.ZERO,
+            BigInteger.ONE,
+            LIMB.subtract(BigInteger.ONE),
+            LIMB,
+            LIMB.pow(2).subtract(BigInteger.ONE),
+            LIMB.pow(3).subtract(BigInteger.ONE),
+            LIMB.pow(3),
+            BigInteger.ONE.shiftLeft(255),
+            MAX);
+
+    @Test
+    void carriesAcrossEveryLimb() {
+        AddressBalanceMap balances = new AddressBalanceMap(16);
+        byte[] holder = address(1);
+        balances.add(holder, AddressBalanceMap.limbs(LIMB.pow(3).subtract(BigInteger.ONE)));
+        balances.add(holder, AddressBalanceMap.limbs(BigInteger.ONE));
+        assertEquals(LIMB.pow(3), balances.get(holder));
+    }
+
+    @Test
+    void borrowsAcrossEveryLimb() {
+        AddressBalanceMap balances = new AddressBalanceMap(16);
+        byte[] holder = address(1);
+        balances.add(holder, AddressBalanceMap.limbs(LIMB.pow(3)));
+        balances.subtract(holder, AddressBalanceMap.limbs(BigInteger.ONE));
+        assertEquals(LIMB.pow(3).subtract(BigInteger.ONE), balances.get(holder));
+    }
+
+    @Test
+    void wrapsModulo2To256() {
+        AddressBalanceMap balances = new AddressBalanceMap(16);
+        byte[] holder = address(1);
+        balances.subtract(holder, AddressBalanceMap.limbs(BigInteger.ONE));
+        assertEquals(MAX, balances.get(holder));
+        balances.add(holder, AddressBalanceMap.limbs(BigInteger.TWO));
+        assertEquals(BigInteger.ONE, balances.get(holder));
+    }
+
+    @Test
+    void matchesBigIntegerArithmetic() {
+        Random random = new Random(1);
+        AddressBalanceMap balances = new AddressBalanceMap(4);
+        BigInteger[] expected = new BigInteger[40];
+        Arrays.fill(expected, BigInteger.ZERO);
+        for (int i = 0; i < 20_000; i++) {
+            int holder = random.nextInt(expected.length);
+            BigInteger amount = random.nextInt(3) == 0
+                    ? EDGES.get(random.nextInt(EDGES.size()))
+                    : new BigInteger(1 + random.nextInt(256), random);
+            if (random.nextBoolean()) {
+                balances.add(address(holder), AddressBalanceMap.limbs(amount));
+                expected[holder] = expected[holder].add(amount).mod(MODULUS);
+            } else {
+                balances.subtract(address(holder), AddressBalanceMap.limbs(amount));
+                expected[holder] = expected[holder].subtract(amount).mod(MODULUS);
+            }
+            assertEquals(expected[holder], balances.get(address(holder)), "holder " + holder + " step " + i);
+        }
+        assertEquals(expected.length, balances.size());
+    }
+
+    @Test
+    void convertsRawWordsLikeBigIntegers() {
+        for (BigInteger value : EDGES) {
+            long[] limbs = new long[4];
+            AddressBalanceMap.limbs(Numeric.toBytesPadded(value, 32), limbs);
+            assertArrayEquals(AddressBalanceMap.limbs(value), limbs);
+        }
+    }
+
+    private static byte[] address(int n) {
+        byte[] address = new byte[20];
+        address[0] = (byte) 0xaa;
+        address[19] = (byte) n;
+        return address;
+    }
+}
@@ -0,0 +1,138 @@
+package com.wetech.demo.web3j.indexer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventLogTest {
+
+    private static final String CONTRACT = "0x77b8ecf36a2d3436f07a20c9d11aa77d1bebb216";
+    private static final String HOLDER = "0x00000000000000000000000000000000000000aa";
+
+    // segment header offsets, see EventLog
+    private static final int COUNT_OFFSET = 16;
+    private static final int CHECKPOINT_OFFSET = 24;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void scansWhatWasAppendedAcrossSegments() throws IOException {
+        EventLog eventLog = new EventLog(directory, 100);
+        eventLog.open();
+        List<ContractEvent> appended = new ArrayList<>();
+        // appends of uneven size, so segment boundaries fall inside an append
+        long block = 1;
+        for (int batch = 0; batch < 7; batch++) {
+            List<ContractEvent> events = new ArrayList<>();
+            for (int i = 0; i < 37; i++) {
+                events.add(event(block + i / 10, i % 10, BigInteger.valueOf(appended.size() + events.size())));
+            }
+            block += 4;
+            eventLog.append(events, block - 1);
+            appended.addAll(events);
+        }
+
+        assertEquals(appended.size(), eventLog.size());
+        assertEquals(block - 1, eventLog.getCheckpoint());
+        assertEquals(appended, scan(eventLog, 0, Long.MAX_VALUE));
+        assertEquals(between(appended, 9, 12), scan(eventLog, 9, 12));
+
+        EventLog reopened = new EventLog(directory, 10);
+        reopened.open();
+        assertEquals(appended.size(), reopened.size());
+        assertEquals(block - 1, reopened.getCheckpoint());
+        assertEquals(appended, scan(reopened, 0, Long.MAX_VALUE));
+    }
+
+    @Test
+    void dropsRecordsPastTheCheckpointOfAPartlyUpdatedHeader() throws IOException {
+        EventLog eventLog = new EventLog(directory, 100);
+        eventLog.open();
+        List<ContractEvent> first = events(1, 8, 10);
+        eventLog.append(first, 8);
+        // spans the end of segment 0 and the start of segment 1
+        List<ContractEvent> second = events(9, 12, 10);
+        eventLog.append(second, 12);
+
+        // a crash after the header of segment 0 was updated but before that of segment 1
+        writeHeader(directory.resolve("0000000001.seg"), 0, -1);
+
+        EventLog reopened = new EventLog(directory, 100);
+        reopened.open();
+        assertEquals(first.size(), reopened.size());
+        assertEquals(8, reopened.getCheckpoint());
+        assertEquals(first, scan(reopened, 0, Long.MAX_VALUE));
+
+        // the indexer fetches the lost blocks again
+        reopened.append(second, 12);
+        List<ContractEvent> all = new ArrayList<>(first);
+        all.addAll(second);
+        assertEquals(all, scan(reopened, 0, Long.MAX_VALUE));
+    }
+
+    @Test
+    void scanStartsAtTheFirstEventOfABlockWithManyEvents() throws IOException {
+        EventLog eventLog = new EventLog(directory, 128);
+        eventLog.open();
+        List<ContractEvent> events = new ArrayList<>(events(1, 3, 30));
+        // records 90 to 239: more than one index stride, and across a segment boundary
+        events.addAll(events(4, 4, 150));
+        events.addAll(events(5, 5, 5));
+        eventLog.append(events, 5);
+
+        for (long from = 1; from <= 5; from++) {
+            for (long to = from; to <= 5; to++) {
+                assertEquals(between(events, from, to), scan(eventLog, from, to), "blocks " + from + "-" + to);
+            }
+        }
+        assertTrue(scan(eventLog, 6, Long.MAX_VALUE).isEmpty());
+    }
+
+    private static List<ContractEvent> scan(EventLog eventLog, long fromBlock, long toBlock) {
+        List<ContractEvent> events = new ArrayList<>();
+        long visited = eventLog.scan(fromBlock, toBlock, record -> events.add(record.toEvent()));
+        assertEquals(events.size(), visited);
+        return events;
+    }
+
+    private static List<ContractEvent> between(List<ContractEvent> events, long fromBlock, long toBlock) {
+        return events.stream()
+                .filter(event -> event.blockNumber() >= fromBlock && event.blockNumber() <= toBlock)
+                .toList();
+    }
+
+    private static List<ContractEvent> events(long fromBlock, long toBlock, int perBlock) {
+        List<ContractEvent> events = new ArrayList<>();
+        for (long block = fromBlock; block <= toBlock; block++) {
+            for (int i = 0; i < perBlock; i++) {
+                events.add(event(block, i, BigInteger.valueOf(block * 1000 + i)));
+            }
+        }
+        return events;
+    }
+
+    private static ContractEvent event(long block, int logIndex, BigInteger value) {
+        String transactionHash = String.format("0x%032x%032x", block, logIndex);
+        return new ContractEvent(ContractEvent.Type.TRANSFER, block, logIndex, transactionHash,
+                CONTRACT, ContractEvent.ZERO_ADDRESS, HOLDER, value);
+    }
+
+    private static void writeHeader(Path segment, long count, long checkpoint) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, count), COUNT_OFFSET);
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, checkpoint), CHECKPOINT_OFFSET);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.wetech.demo.web3j.indexer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EventStoreTest {
+
+    private static final String CONTRACT = "0x77b8ecf36a2d3436f07a20c9d11aa77d1bebb216";
+    private static final BigInteger LIMB = BigInteger.ONE.shiftLeft(64);
+    private static final BigInteger ZERO = BigInteger.ZERO;
+
+    // amounts whose sums and differences carry and borrow across limbs
+    private static final List<BigInteger> MINTS = List.of(
+            LIMB.subtract(BigInteger.ONE),
+            LIMB.pow(2).subtract(BigInteger.ONE),
+            LIMB.pow(3).subtract(BigInteger.ONE),
+            LIMB.pow(3).add(BigInteger.ONE),
+            BigInteger.ONE.shiftLeft(240));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void balancesMatchBigIntegerArithmeticAtEveryBlock() throws IOException {
+        Random random = new Random(7);
+        List<String> holders = List.of(ContractEvent.ZERO_ADDRESS,
+                "0x00000000000000000000000000000000000000a1",
+                "0x00000000000000000000000000000000000000a2",
+                "0x00000000000000000000000000000000000000a3");
+        Map<String, BigInteger> balances = new HashMap<>();
+        holders.forEach(holder -> balances.put(holder, ZERO));
+        // balances at the end of each block, the zero address going negative by what was minted
+        List<Map<String, BigInteger>> expected = new ArrayList<>();
+        expected.add(Map.copyOf(balances));
+
+        EventStore store = new EventStore(directory.toString(), 100);
+        store.open();
+        int blocks = 80;
+        for (long block = 1; block <= blocks; block++) {
+            List<ContractEvent> events = new ArrayList<>();
+            for (int logIndex = 0; logIndex < 8; logIndex++) {
+                String from = holders.get(random.nextInt(holders.size()));
+                String to = holders.get(random.nextInt(holders.size()));
+                BigInteger value;
+                if (from.equals(ContractEvent.ZERO_ADDRESS)) {
+                    value = MINTS.get(random.nextInt(MINTS.size()));
+                } else {
+                    BigInteger available = balances.get(from);
+                    value = available.signum() == 0 ? ZERO
+                            : new BigInteger(available.bitLength(), random).mod(available.add(BigInteger.ONE));
+                }
+                balances.merge(from, value.negate(), BigInteger::add);
+                balances.merge(to, value, BigInteger::add);
+                events.add(new ContractEvent(ContractEvent.Type.TRANSFER, block, logIndex,
+                        String.format("0x%032x%032x", block, logIndex), CONTRACT, from, to, value));
+            }
+            store.append(events, block);
+            expected.add(Map.copyOf(balances));
+        }
+
+        assertBalances(store, holders, expected);
+
+        EventStore reopened = new EventStore(directory.toString(), 100);
+        reopened.open();
+        assertBalances(reopened, holders, expected);
+    }
+
+    private static void assertBalances(EventStore store, List<String> holders, List<Map<String, BigInteger>> expected) {
+        for (int block = 0; block < expected.size(); block++) {
+            for (String holder : holders) {
+                assertEquals(expected.get(block).get(holder), store.getBalance(CONTRACT, holder, block),
+                        holder + " at block " + block);
+            }
+            assertEquals(expected.get(block).get(ContractEvent.ZERO_ADDRESS).negate(),
+                    store.getTotalSupply(CONTRACT, block), "total supply at block " + block);
+        }
+    }
+}